@@ -119,8 +119,7 @@ public final class PCMComplex implements PlanCodeManager {
         int numOfFields = component.getFields().size();
         if (numOfFields == 1) {
             TypeName complexType = extractCCGeneric(component.getComponent());
-            DeclaredType declType = MoreTypes.asDeclared(component.getFields().get(0).asType());
-            TypeName typeOfFields = TypeName.get(declType.getTypeArguments().get(0));
+            TypeName typeOfFields = TypeName.get(component.getFieldValueType(component.getFields().get(0)));
             if (complexType.equals(typeOfFields)) {
                 return false;
             }
@@ -183,4 +182,23 @@ public final class PCMComplex implements PlanCodeManager {
         cb.endControlFlow();
         return cb.build();
     }
+
+    @Override
+    public CodeBlock generateBatchAssignment(String entitiesArg, String assocArg, TypeName source, PlanComponent component) {
+        CodeBlock.Builder cb = CodeBlock.builder();
+        cb.beginControlFlow("if ($L)", useComplexFieldName(component.getName()));
+        cb.beginControlFlow("for (int e : $L)", entitiesArg);
+        cb.addNamed("$source:T.$field:L().set($assoc:L, e, this.$value:L);\n", ImmutableMap.of(
+                "assoc", assocArg,
+                "source", source,
+                "field", component.getName(),
+                "value", fieldName(component.getName(), "complex")));
+        cb.endControlFlow();
+        if (needSimpleParts(component)) {
+            cb.nextControlFlow("else");
+            cb.add(simpleDelegate.generateBatchAssignment(entitiesArg, assocArg, source, component));
+        }
+        cb.endControlFlow();
+        return cb.build();
+    }
 }
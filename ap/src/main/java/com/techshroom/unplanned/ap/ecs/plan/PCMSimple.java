@@ -32,15 +32,14 @@ import java.util.function.UnaryOperator;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.Modifier;
-import javax.lang.model.type.DeclaredType;
 
-import com.google.auto.common.MoreTypes;
 import com.google.common.collect.ImmutableMap;
 import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.TypeName;
 import com.techshroom.unplanned.core.util.UDStrings;
+import com.techshroom.unplanned.ecs.FieldAccessor;
 
 public final class PCMSimple implements PlanCodeManager {
 
@@ -62,10 +61,9 @@ public final class PCMSimple implements PlanCodeManager {
     public List<FieldSpec> generateFields(PlanComponent component) {
         return component.getFields().stream().map(compField -> {
             // compfield is like ComponentField<XYZ> nameOfField;
-            DeclaredType declType = MoreTypes.asDeclared(compField.asType());
             // we pull out the XYZ and the nameOfField
             return FieldSpec.builder(
-                    TypeName.get(declType.getTypeArguments().get(0)),
+                    TypeName.get(component.getFieldValueType(compField)),
                     fieldName(component.getName(), compField.getSimpleName().toString()),
                     Modifier.PRIVATE).build();
         }).collect(toImmutableList());
@@ -75,7 +73,6 @@ public final class PCMSimple implements PlanCodeManager {
     public List<MethodSpec> generateBuilderSetters(UnaryOperator<MethodSpec.Builder> config, PlanComponent component) {
         return component.getFields().stream().map(compField -> {
             // compfield is like ComponentField<XYZ> nameOfField;
-            DeclaredType declType = MoreTypes.asDeclared(compField.asType());
             // we pull out the XYZ and the nameOfField
             // then we merge it to create a name like $COMP_NAME$NAME_OF_FIELD
             // ex: gridPositionX
@@ -83,7 +80,7 @@ public final class PCMSimple implements PlanCodeManager {
             String name = setterName(component.getName(), nameOfField);
             return config.apply(MethodSpec.methodBuilder(name)
                     .addModifiers(Modifier.PUBLIC)
-                    .addParameter(TypeName.get(declType.getTypeArguments().get(0)), nameOfField)
+                    .addParameter(TypeName.get(component.getFieldValueType(compField)), nameOfField)
                     .addStatement("this.$L = $L", fieldName(component.getName(), nameOfField), nameOfField)).build();
         }).collect(toImmutableList());
     }
@@ -106,4 +103,28 @@ public final class PCMSimple implements PlanCodeManager {
         });
         return cb.build();
     }
+
+    @Override
+    public CodeBlock generateBatchAssignment(String entitiesArg, String assocArg, TypeName source, PlanComponent component) {
+        CodeBlock.Builder cb = CodeBlock.builder();
+        component.getFields().forEach(compField -> {
+            String fieldName = fieldName(component.getName(), compField.getSimpleName().toString());
+            TypeName valueType = TypeName.get(component.getFieldValueType(compField));
+            cb.beginControlFlow("if ($L != null)", fieldName);
+            // bind the field once for all entities
+            cb.addNamed("$accessor:T<$type:T> accessor = $assoc:L.accessor($source:T.$comp:L().<$type:T>getField($name:S));\n", new ImmutableMap.Builder<String, Object>()
+                    .put("accessor", FieldAccessor.class)
+                    .put("type", valueType)
+                    .put("assoc", assocArg)
+                    .put("source", source)
+                    .put("comp", component.getName())
+                    .put("name", compField.getSimpleName().toString())
+                    .build());
+            cb.beginControlFlow("for (int e : $L)", entitiesArg);
+            cb.addStatement("accessor.set(e, this.$L)", fieldName);
+            cb.endControlFlow();
+            cb.endControlFlow();
+        });
+        return cb.build();
+    }
 }
@@ -41,4 +41,11 @@ public interface PlanCodeManager {
 
     CodeBlock generateAssignment(String entityArg, String assocArg, TypeName source, PlanComponent component);
 
+    /**
+     * Like {@link #generateAssignment(String, String, TypeName, PlanComponent)},
+     * but for an {@code int[]} of entities. Field lookups should happen once,
+     * outside of the loop over the entities.
+     */
+    CodeBlock generateBatchAssignment(String entitiesArg, String assocArg, TypeName source, PlanComponent component);
+
 }
@@ -33,8 +33,10 @@ import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
 
 import com.google.auto.common.MoreElements;
+import com.google.auto.common.MoreTypes;
 import com.google.auto.value.AutoValue;
 import com.google.auto.value.extension.memoized.Memoized;
 import com.techshroom.unplanned.ecs.ComplexComponent;
@@ -67,6 +69,24 @@ public abstract class PlanComponent {
                 .collect(toImmutableList());
     }
 
+    /**
+     * Finds the value type of a field, i.e. the {@code T} in
+     * {@code ComponentField<T>}. This walks the supertypes so that handles
+     * such as {@code IntComponentField} resolve too.
+     */
+    public TypeMirror getFieldValueType(VariableElement field) {
+        Types types = getEnv().getTypeUtils();
+        TypeMirror compFieldType = types.erasure(getEnv().getElementUtils().getTypeElement(ComponentField.class.getCanonicalName()).asType());
+        TypeMirror type = field.asType();
+        while (!types.isSameType(types.erasure(type), compFieldType)) {
+            type = types.directSupertypes(type).stream()
+                    .filter(sup -> types.isAssignable(sup, compFieldType))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("Not a ComponentField: " + field));
+        }
+        return MoreTypes.asDeclared(type).getTypeArguments().get(0);
+    }
+
     @Memoized
     public PlanCodeManager getCodeManager() {
         TypeMirror compComponent = getEnv().getElementUtils().getTypeElement(ComplexComponent.class.getCanonicalName()).asType();
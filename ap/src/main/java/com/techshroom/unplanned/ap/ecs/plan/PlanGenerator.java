@@ -42,7 +42,9 @@ import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
+import com.techshroom.unplanned.ecs.CommandBuffer;
 import com.techshroom.unplanned.ecs.CompEntAssoc;
+import com.techshroom.unplanned.ecs.Prefab;
 
 public class PlanGenerator {
 
@@ -92,6 +94,38 @@ public class PlanGenerator {
                 .returns(int.class)
                 .build());
 
+        // public int build(CommandBuffer commands) { ... }
+        spec.addMethod(MethodSpec.methodBuilder("build")
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(CommandBuffer.class, "commands")
+                .addCode(generateDeferredBuildCode())
+                .returns(int.class)
+                .build());
+
+        // public int[] buildMany(CEA assoc, int count) { ... }
+        spec.addMethod(MethodSpec.methodBuilder("buildMany")
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(CompEntAssoc.class, "assoc")
+                .addParameter(int.class, "count")
+                .addCode(generateBuildManyCode())
+                .returns(int[].class)
+                .build());
+
+        // public Prefab toPrefab() { ... }
+        spec.addMethod(MethodSpec.methodBuilder("toPrefab")
+                .addModifiers(Modifier.PUBLIC)
+                .addStatement("return $T.compile(this::assign, $L)", Prefab.class, getComponentArgList())
+                .returns(Prefab.class)
+                .build());
+
+        // private void assign(int e, CEA assoc) { ... }
+        spec.addMethod(MethodSpec.methodBuilder("assign")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(int.class, "e")
+                .addParameter(CompEntAssoc.class, "assoc")
+                .addCode(generateAssignCode())
+                .build());
+
         return JavaFile.builder(className.packageName(), spec.build())
                 .addFileComment("Generated on $L by $L.",
                         DateTimeFormatter.ISO_INSTANT.format(Instant.now()),
@@ -121,15 +155,56 @@ public class PlanGenerator {
         // get a new entity made of our components
         cb.addStatement("int e = assoc.newEntity($L)", getComponentArgList());
 
+        cb.addStatement("assign(e, assoc)");
+
+        // return entity
+        cb.addStatement("return e");
+
+        return cb.build();
+    }
+
+    private CodeBlock generateDeferredBuildCode() {
+        CodeBlock.Builder cb = CodeBlock.builder();
+
+        // reserve an entity, it's created at playback
+        cb.addStatement("int e = commands.create($L)", getComponentArgList());
+
+        // assignments also run at playback
+        cb.addStatement("commands.defer(assoc -> assign(e, assoc))");
+
+        // return entity
+        cb.addStatement("return e");
+
+        return cb.build();
+    }
+
+    private CodeBlock generateBuildManyCode() {
+        CodeBlock.Builder cb = CodeBlock.builder();
+
+        // create all entities at once
+        cb.addStatement("int[] es = assoc.newEntities(count, $L)", getComponentArgList());
+
+        // run through all assignments, a field at a time
+        for (PlanComponent c : components) {
+            cb.add(c.getCodeManager().generateBatchAssignment("es", "assoc", source, c));
+            cb.add("\n");
+        }
+
+        // return entities
+        cb.addStatement("return es");
+
+        return cb.build();
+    }
+
+    private CodeBlock generateAssignCode() {
+        CodeBlock.Builder cb = CodeBlock.builder();
+
         // run through all assignments
         for (PlanComponent c : components) {
             cb.add(c.getCodeManager().generateAssignment("e", "assoc", source, c));
             cb.add("\n");
         }
 
-        // return entity
-        cb.addStatement("return e");
-
         return cb.build();
     }
 
@@ -0,0 +1,174 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ap.ecs.query;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.lang.model.element.Modifier;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeSpec;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+import com.techshroom.unplanned.ecs.SystemProfiler;
+
+public class QueryGenerator {
+
+    private static String localName(QueryParameter param) {
+        return "field_" + param.getName();
+    }
+
+    private final ClassName system;
+    private final String method;
+    private final List<QueryParameter> parameters;
+
+    public QueryGenerator(ClassName system, String method, List<QueryParameter> parameters) {
+        this.system = system;
+        this.method = method;
+        this.parameters = parameters;
+    }
+
+    public JavaFile generate(ClassName className) {
+        ClassName bindings = className.nestedClass("Bindings");
+        TypeSpec.Builder spec = TypeSpec.classBuilder(className)
+                .addJavadoc("Runs {@link $T#$L} for a system. Each system should keep one instance,\n"
+                        + "which binds the fields once per CEA.\n", system, method)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL);
+
+        spec.addType(generateBindings(bindings));
+
+        spec.addField(system, "system", Modifier.PRIVATE, Modifier.FINAL);
+        // the CEA last processed, a system usually only has one
+        spec.addField(bindings, "bindings", Modifier.PRIVATE, Modifier.VOLATILE);
+
+        // public X(S system)
+        spec.addMethod(MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(system, "system")
+                .addStatement("this.system = system")
+                .build());
+
+        // private Bindings bind(CEA assoc)
+        spec.addMethod(MethodSpec.methodBuilder("bind")
+                .addModifiers(Modifier.PRIVATE)
+                .returns(bindings)
+                .addParameter(CompEntAssoc.class, "assoc")
+                .addStatement("$T b = bindings", bindings)
+                .beginControlFlow("if (b == null || b.assoc != assoc)")
+                .addStatement("b = new $T(assoc)", bindings)
+                .addStatement("bindings = b")
+                .endControlFlow()
+                .addStatement("return b")
+                .build());
+
+        // public void processList(CEA assoc, long nanoDiff)
+        spec.addMethod(MethodSpec.methodBuilder("processList")
+                .addJavadoc("Calls {@link $T#$L} for every entity matching the system's components.\n",
+                        system, method)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(CompEntAssoc.class, "assoc")
+                .addParameter(long.class, "nanoDiff")
+                .addStatement("$T b = bind(assoc)", bindings)
+                .addStatement("int[] processed = { 0 }")
+                .addCode("assoc.forEachEntity(system.getComponents(), e -> {\n$>")
+                .addStatement("system.$L($L)", method, getArgList("e"))
+                .addStatement("processed[0]++")
+                .addCode("$<});\n")
+                .addStatement("$T.countProcessed(processed[0])", SystemProfiler.class)
+                .build());
+
+        // public void process(int entityId, CEA assoc, long nanoDiff)
+        spec.addMethod(MethodSpec.methodBuilder("process")
+                .addJavadoc("Calls {@link $T#$L} for one entity.\n", system, method)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(int.class, "entityId")
+                .addParameter(CompEntAssoc.class, "assoc")
+                .addParameter(long.class, "nanoDiff")
+                .addStatement("$T b = bind(assoc)", bindings)
+                .addStatement("system.$L($L)", method, getArgList("entityId"))
+                .build());
+
+        return JavaFile.builder(className.packageName(), spec.build())
+                .addFileComment("Generated on $L by $L.",
+                        DateTimeFormatter.ISO_INSTANT.format(Instant.now()),
+                        getClass().getName())
+                .indent("    ")
+                .build();
+    }
+
+    private TypeSpec generateBindings(ClassName bindings) {
+        TypeSpec.Builder spec = TypeSpec.classBuilder(bindings)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .addField(CompEntAssoc.class, "assoc", Modifier.FINAL);
+        MethodSpec.Builder ctor = MethodSpec.constructorBuilder()
+                .addParameter(CompEntAssoc.class, "assoc")
+                .addStatement("this.assoc = assoc");
+        // fields are resolved once per CEA, not per entity
+        for (QueryParameter param : parameters) {
+            if (param.getKind() != QueryParameter.Kind.FIELD) {
+                continue;
+            }
+            spec.addField(param.getAccessorType(), localName(param), Modifier.FINAL);
+            ctor.addStatement("this.$L = assoc.$L($T.INSTANCE.<$T>getField($S))",
+                    localName(param), param.getAccessorMethod(),
+                    param.getComponent(), param.getValueType(), param.getFieldName());
+        }
+        return spec.addMethod(ctor.build()).build();
+    }
+
+    private CodeBlock getArgList(String entityArg) {
+        CodeBlock.Builder cb = CodeBlock.builder();
+        for (Iterator<QueryParameter> iterator = parameters.iterator(); iterator.hasNext();) {
+            QueryParameter param = iterator.next();
+            switch (param.getKind()) {
+                case ENTITY:
+                    cb.add("$L", entityArg);
+                    break;
+                case NANO_DIFF:
+                    cb.add("nanoDiff");
+                    break;
+                case ASSOC:
+                    cb.add("assoc");
+                    break;
+                case FIELD:
+                    cb.add("b.$L", localName(param));
+                    break;
+                default:
+                    throw new AssertionError("Unknown kind " + param.getKind());
+            }
+            if (iterator.hasNext()) {
+                cb.add(", ");
+            }
+        }
+        return cb.build();
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ap.ecs.query;
+
+import javax.annotation.Nullable;
+
+import com.google.auto.value.AutoValue;
+import com.squareup.javapoet.TypeName;
+
+/**
+ * A parameter of a {@link SystemQuery} method, and what to pass for it.
+ */
+@AutoValue
+public abstract class QueryParameter {
+
+    public enum Kind {
+        ENTITY, NANO_DIFF, ASSOC, FIELD
+    }
+
+    public static QueryParameter of(Kind kind, String name) {
+        return new AutoValue_QueryParameter(kind, name, null, null, null, null, null);
+    }
+
+    public static QueryParameter field(String name, TypeName accessorType, String accessorMethod,
+            TypeName component, String fieldName, TypeName valueType) {
+        return new AutoValue_QueryParameter(Kind.FIELD, name, accessorType, accessorMethod, component, fieldName,
+                valueType);
+    }
+
+    public abstract Kind getKind();
+
+    public abstract String getName();
+
+    @Nullable
+    public abstract TypeName getAccessorType();
+
+    /**
+     * @return the {@code CompEntAssoc} method that makes the accessor, e.g.
+     *         {@code intAccessor}
+     */
+    @Nullable
+    public abstract String getAccessorMethod();
+
+    @Nullable
+    public abstract TypeName getComponent();
+
+    @Nullable
+    public abstract String getFieldName();
+
+    @Nullable
+    public abstract TypeName getValueType();
+
+}
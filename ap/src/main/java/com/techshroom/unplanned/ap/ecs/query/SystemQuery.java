@@ -0,0 +1,50 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ap.ecs.query;
+
+/**
+ * Marks the per-entity method of a {@code CSystem}. A
+ * {@code <System>Query} class is generated next to the system, with a
+ * {@code processList} that calls the method for every matching entity, and a
+ * matching {@code process} for single entities. The system should keep one
+ * instance, made with {@code new <System>Query(this)}, and delegate both to
+ * it. The method's fields are bound once per CEA and reused by both.
+ * 
+ * <p>
+ * The method may not be private, static or return anything. Its parameters
+ * can be, in any order:
+ * </p>
+ * <ul>
+ * <li>an {@code int}, the entity ID, which is required</li>
+ * <li>a {@code long}, the nanoseconds since the last tick</li>
+ * <li>a {@code CompEntAssoc}, the CEA being processed</li>
+ * <li>a {@code FieldAccessor} or one of its primitive variants annotated
+ * with {@link QueryField}, bound to that field</li>
+ * </ul>
+ */
+public @interface SystemQuery {
+
+}
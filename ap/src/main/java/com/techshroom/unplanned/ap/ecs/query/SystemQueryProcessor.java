@@ -0,0 +1,258 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ap.ecs.query;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+
+import com.google.auto.common.AnnotationMirrors;
+import com.google.auto.common.BasicAnnotationProcessor;
+import com.google.auto.common.MoreElements;
+import com.google.auto.common.MoreTypes;
+import com.google.auto.service.AutoService;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.SetMultimap;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.TypeName;
+import com.techshroom.unplanned.ap.AbortProcessingException;
+import com.techshroom.unplanned.ap.MissingTypeException;
+import com.techshroom.unplanned.ap.ecs.plan.PlanComponent;
+import com.techshroom.unplanned.ecs.CSystem;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+import com.techshroom.unplanned.ecs.FieldAccessor;
+
+@AutoService(Processor.class)
+public class SystemQueryProcessor extends BasicAnnotationProcessor {
+
+    private static final class GenerationStep implements ProcessingStep {
+
+        // primitive accessor types and the methods that make them, by boxed
+        // value type
+        private static final ImmutableMap<Class<?>, Class<?>> PRIMITIVE_ACCESSORS = ImmutableMap.of(
+                Boolean.class, FieldAccessor.OfBoolean.class,
+                Byte.class, FieldAccessor.OfByte.class,
+                Short.class, FieldAccessor.OfShort.class,
+                Integer.class, FieldAccessor.OfInt.class,
+                Long.class, FieldAccessor.OfLong.class);
+        private static final ImmutableMap<Class<?>, String> ACCESSOR_METHODS = ImmutableMap.of(
+                Boolean.class, "booleanAccessor",
+                Byte.class, "byteAccessor",
+                Short.class, "shortAccessor",
+                Integer.class, "intAccessor",
+                Long.class, "longAccessor");
+
+        private final ProcessingEnvironment env;
+        private final Set<TypeElement> generated = new HashSet<>();
+
+        public GenerationStep(ProcessingEnvironment env) {
+            this.env = env;
+        }
+
+        @Override
+        public Set<? extends Class<? extends Annotation>> annotations() {
+            return ImmutableSet.of(SystemQuery.class);
+        }
+
+        @Override
+        public Set<Element> process(SetMultimap<Class<? extends Annotation>, Element> elementsByAnnotation) {
+            ImmutableSet.Builder<Element> unproc = ImmutableSet.builder();
+            for (Element e : elementsByAnnotation.get(SystemQuery.class)) {
+                try {
+                    process(MoreElements.asExecutable(e));
+                } catch (AbortProcessingException | MissingTypeException ex) {
+                    unproc.add(e);
+                }
+            }
+            return unproc.build();
+        }
+
+        private TypeMirror erasedType(Class<?> clazz) {
+            return env.getTypeUtils().erasure(
+                    env.getElementUtils().getTypeElement(clazz.getCanonicalName()).asType());
+        }
+
+        private void error(String message, Element e) {
+            env.getMessager().printMessage(Kind.ERROR, message, e);
+        }
+
+        private void process(ExecutableElement method) {
+            TypeElement system = MoreElements.asType(method.getEnclosingElement());
+            if (!generated.add(system)) {
+                error("Only one @SystemQuery method is allowed per system", method);
+                return;
+            }
+            if (!env.getTypeUtils().isAssignable(system.asType(), erasedType(CSystem.class))) {
+                error("@SystemQuery methods must be in a CSystem", method);
+                return;
+            }
+            if (!system.getTypeParameters().isEmpty()) {
+                error("@SystemQuery systems may not be generic", method);
+                return;
+            }
+            if (method.getModifiers().contains(Modifier.PRIVATE) || method.getModifiers().contains(Modifier.STATIC)) {
+                error("@SystemQuery methods may not be private or static", method);
+                return;
+            }
+            if (method.getReturnType().getKind() != TypeKind.VOID) {
+                error("@SystemQuery methods must return void", method);
+                return;
+            }
+            ImmutableList.Builder<QueryParameter> params = ImmutableList.builder();
+            int entityParams = 0;
+            for (VariableElement param : method.getParameters()) {
+                QueryParameter qp = loadParameter(param);
+                if (qp == null) {
+                    return;
+                }
+                if (qp.getKind() == QueryParameter.Kind.ENTITY) {
+                    entityParams++;
+                }
+                params.add(qp);
+            }
+            if (entityParams != 1) {
+                error("@SystemQuery methods need exactly one int parameter for the entity", method);
+                return;
+            }
+
+            ClassName name = ClassName.get(system);
+            ClassName className = name.peerClass(name.simpleName() + "Query");
+            JavaFile file = new QueryGenerator(name, method.getSimpleName().toString(), params.build())
+                    .generate(className);
+            try {
+                file.writeTo(env.getFiler());
+            } catch (IOException ex) {
+                env.getMessager()
+                        .printMessage(Kind.ERROR, "Error writing generated class: " + ex.getMessage(), method);
+                throw new AbortProcessingException();
+            }
+        }
+
+        private QueryParameter loadParameter(VariableElement param) {
+            String name = param.getSimpleName().toString();
+            TypeMirror type = param.asType();
+            AnnotationMirror fieldAnnotation = MoreElements.getAnnotationMirror(param, QueryField.class).orNull();
+            if (fieldAnnotation != null) {
+                return loadField(param, fieldAnnotation);
+            }
+            if (type.getKind() == TypeKind.INT) {
+                return QueryParameter.of(QueryParameter.Kind.ENTITY, name);
+            }
+            if (type.getKind() == TypeKind.LONG) {
+                return QueryParameter.of(QueryParameter.Kind.NANO_DIFF, name);
+            }
+            if (env.getTypeUtils().isSameType(type, erasedType(CompEntAssoc.class))) {
+                return QueryParameter.of(QueryParameter.Kind.ASSOC, name);
+            }
+            error("Unsupported @SystemQuery parameter, fields need @QueryField", param);
+            return null;
+        }
+
+        private QueryParameter loadField(VariableElement param, AnnotationMirror annotation) {
+            Types types = env.getTypeUtils();
+            DeclaredType component = MoreTypes.asDeclared(
+                    (TypeMirror) AnnotationMirrors.getAnnotationValue(annotation, "component").getValue());
+            String fieldName = (String) AnnotationMirrors.getAnnotationValue(annotation, "value").getValue();
+
+            boolean hasInstance = component.asElement().getEnclosedElements().stream()
+                    .anyMatch(e -> e.getKind() == ElementKind.FIELD
+                            && e.getModifiers().contains(Modifier.STATIC)
+                            && e.getSimpleName().contentEquals("INSTANCE"));
+            if (!hasInstance) {
+                error(component + " has no static INSTANCE", param);
+                return null;
+            }
+            PlanComponent pc = PlanComponent.from(env, component,
+                    component.asElement().getSimpleName().toString());
+            VariableElement field = pc.getFields().stream()
+                    .filter(f -> f.getSimpleName().contentEquals(fieldName))
+                    .findFirst().orElse(null);
+            if (field == null) {
+                error(component + " has no field " + fieldName, param);
+                return null;
+            }
+            TypeMirror valueType = pc.getFieldValueType(field);
+
+            // the generic accessor works for any field, primitive ones only for
+            // their own type
+            TypeMirror paramType = param.asType();
+            String accessorMethod = null;
+            if (types.isSameType(types.erasure(paramType), erasedType(FieldAccessor.class))) {
+                TypeMirror arg = MoreTypes.asDeclared(paramType).getTypeArguments().stream()
+                        .findFirst().orElse(null);
+                if (arg != null && types.isSameType(arg, valueType)) {
+                    accessorMethod = "accessor";
+                }
+            } else {
+                for (Class<?> boxed : PRIMITIVE_ACCESSORS.keySet()) {
+                    if (types.isSameType(paramType, erasedType(PRIMITIVE_ACCESSORS.get(boxed)))
+                            && types.isSameType(valueType, erasedType(boxed))) {
+                        accessorMethod = ACCESSOR_METHODS.get(boxed);
+                    }
+                }
+            }
+            if (accessorMethod == null) {
+                error("Field " + fieldName + " of " + component + " holds " + valueType
+                        + ", which can't be accessed through " + paramType, param);
+                return null;
+            }
+            return QueryParameter.field(param.getSimpleName().toString(), TypeName.get(paramType), accessorMethod,
+                    ClassName.get(MoreTypes.asTypeElement(component)), fieldName, TypeName.get(valueType));
+        }
+
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    protected Iterable<? extends ProcessingStep> initSteps() {
+        return ImmutableList.of(new GenerationStep(processingEnv));
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ap.ecs.query;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import javax.tools.JavaFileObject;
+
+import org.junit.Test;
+
+import com.google.common.io.CharStreams;
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.CompilationSubject;
+import com.google.testing.compile.Compiler;
+import com.google.testing.compile.JavaFileObjects;
+
+public class SystemQueryCompileTest {
+
+    private JavaFileObject readSrcResource(String name, String res) throws IOException {
+        try (Reader r = Files.newBufferedReader(Paths.get("src/test/resources", res))) {
+            String data = CharStreams.toString(r);
+            return JavaFileObjects.forSourceString(name, data);
+        }
+    }
+
+    @Test
+    public void testCompile() throws Exception {
+        Compilation compile = Compiler.javac().withProcessors(new SystemQueryProcessor())
+                .compile(readSrcResource("test.FadeSystem", "java/FadeSystem.java.txt"));
+        CompilationSubject.assertThat(compile).succeededWithoutWarnings();
+        CompilationSubject.assertThat(compile).generatedSourceFile("test.FadeSystemQuery");
+    }
+
+    @Test
+    public void testMismatchedAccessor() throws Exception {
+        Compilation compile = Compiler.javac().withProcessors(new SystemQueryProcessor())
+                .compile(readSrcResource("test.BadQuerySystem", "java/BadQuerySystem.java.txt"));
+        CompilationSubject.assertThat(compile).hadErrorContaining("can't be accessed through");
+    }
+
+}
@@ -48,19 +48,26 @@ final class FileStbImageLoader implements FileTextureLoader {
             IntBuffer channels = stack.mallocInt(1);
             ByteBuffer data = stbi_load(source.toAbsolutePath().toString(), xBuf, yBuf, channels, 4);
 
-            if (data == null) {
-                String why = stbi_failure_reason();
-                throw new IllegalArgumentException("Image " + source + " could not be loaded: " + why);
-            }
-
-            // Copy into our own bytebuffer, so it frees cleanly.
-            ByteBuffer copy = BufferUtils.createByteBuffer(data.remaining());
-            copy.put(data).flip();
-            data.rewind();
-            stbi_image_free(data);
+            return finish(source, data, xBuf, yBuf);
+        }
+    }
 
-            return TextureData.wrap(xBuf.get(0), yBuf.get(0), copy, TextureFormat.RGBA);
+    /**
+     * Copies a decoded image out of stb's memory and frees it.
+     */
+    static TextureData finish(Object source, ByteBuffer data, IntBuffer xBuf, IntBuffer yBuf) {
+        if (data == null) {
+            String why = stbi_failure_reason();
+            throw new IllegalArgumentException("Image " + source + " could not be loaded: " + why);
         }
+
+        // Copy into our own bytebuffer, so it frees cleanly.
+        ByteBuffer copy = BufferUtils.createByteBuffer(data.remaining());
+        copy.put(data).flip();
+        data.rewind();
+        stbi_image_free(data);
+
+        return TextureData.wrap(xBuf.get(0), yBuf.get(0), copy, TextureFormat.RGBA);
     }
 
 }
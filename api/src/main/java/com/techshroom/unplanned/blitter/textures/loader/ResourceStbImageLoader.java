@@ -0,0 +1,60 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.blitter.textures.loader;
+
+import com.techshroom.unplanned.blitter.textures.TextureData;
+import com.techshroom.unplanned.rp.RawResource;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.system.MemoryStack;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import static org.lwjgl.stb.STBImage.stbi_load_from_memory;
+
+final class ResourceStbImageLoader implements ResourceTextureLoader {
+
+    @Override
+    public TextureData load(RawResource source) {
+        return source.useBuffer(encoded -> {
+            // stb needs a direct buffer, mapped resources already are one
+            if (!encoded.isDirect()) {
+                ByteBuffer direct = BufferUtils.createByteBuffer(encoded.remaining());
+                direct.put(encoded).flip();
+                encoded = direct;
+            }
+            try (MemoryStack stack = MemoryStack.stackPush()) {
+                IntBuffer xBuf = stack.mallocInt(1);
+                IntBuffer yBuf = stack.mallocInt(1);
+                IntBuffer channels = stack.mallocInt(1);
+                ByteBuffer data = stbi_load_from_memory(encoded, xBuf, yBuf, channels, 4);
+
+                return FileStbImageLoader.finish(source, data, xBuf, yBuf);
+            }
+        });
+    }
+
+}
@@ -31,6 +31,11 @@ public final class StandardTextureLoaders {
      * Loads using stb_image from LWJGL, from a file on disk.
      */
     public static final FileTextureLoader FILE_STB_IMAGE_LOADER = new FileStbImageLoader();
+    /**
+     * Loads using stb_image from LWJGL, from a resource. Resources from
+     * memory-mapped packs are decoded in place.
+     */
+    public static final ResourceTextureLoader RESOURCE_STB_IMAGE_LOADER = new ResourceStbImageLoader();
     /**
      * Loads using RGBA color vector and size.
      */
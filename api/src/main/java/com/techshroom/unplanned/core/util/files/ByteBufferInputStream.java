@@ -0,0 +1,94 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.core.util.files;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Stream over the remaining content of a buffer. Reading moves a private view
+ * of the buffer, so the original buffer's position is left alone.
+ */
+public final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer view;
+
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        this.view = buffer.asReadOnlyBuffer();
+    }
+
+    @Override
+    public int read() {
+        if (!view.hasRemaining()) {
+            return -1;
+        }
+        return view.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!view.hasRemaining()) {
+            return -1;
+        }
+        int realLen = Math.min(len, view.remaining());
+        view.get(b, off, realLen);
+        return realLen;
+    }
+
+    @Override
+    public long skip(long n) {
+        if (n <= 0) {
+            return 0;
+        }
+        int actualSkip = (int) Math.min(n, view.remaining());
+        view.position(view.position() + actualSkip);
+        return actualSkip;
+    }
+
+    @Override
+    public int available() {
+        return view.remaining();
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        view.mark();
+    }
+
+    @Override
+    public synchronized void reset() {
+        view.reset();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.core.util.files;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of direct buffers for short-lived data, such as decompressed
+ * resources. Buffers are pooled by power of two capacity, and released
+ * buffers are kept until their total capacity reaches a budget. Safe to use
+ * from many threads at once.
+ * 
+ * <p>
+ * Buffers that are never released are simply collected, so handing one off
+ * to code that keeps it is fine.
+ * </p>
+ */
+public final class DirectBufferPool {
+
+    // 4 KiB up to 1 GiB, anything larger is allocated as-is
+    private static final int MIN_SHIFT = 12;
+    private static final int MAX_SHIFT = 30;
+
+    public static DirectBufferPool create(long maxRetainedBytes) {
+        checkArgument(maxRetainedBytes >= 0, "budget must not be negative");
+        return new DirectBufferPool(maxRetainedBytes);
+    }
+
+    private static int shift(int size) {
+        return Math.max(MIN_SHIFT, 32 - Integer.numberOfLeadingZeros(size - 1));
+    }
+
+    private final long maxRetainedBytes;
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final Queue<ByteBuffer>[] free;
+
+    private DirectBufferPool(long maxRetainedBytes) {
+        this.maxRetainedBytes = maxRetainedBytes;
+        @SuppressWarnings("unchecked")
+        Queue<ByteBuffer>[] free = new Queue[MAX_SHIFT - MIN_SHIFT + 1];
+        for (int i = 0; i < free.length; i++) {
+            free[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.free = free;
+    }
+
+    /**
+     * Takes a buffer from the pool, or allocates one if there are none of the
+     * right capacity.
+     * 
+     * @param size
+     *            - the size needed
+     * @return a direct, big-endian buffer with position 0 and limit
+     *         {@code size}. The content is undefined.
+     */
+    public ByteBuffer take(int size) {
+        checkArgument(size >= 0, "size must not be negative");
+        int shift = shift(size);
+        if (shift > MAX_SHIFT) {
+            return ByteBuffer.allocateDirect(size);
+        }
+        ByteBuffer buffer = free[shift - MIN_SHIFT].poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(1 << shift);
+        } else {
+            retainedBytes.addAndGet(-buffer.capacity());
+        }
+        buffer.clear().limit(size);
+        return buffer.order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Returns a buffer taken from this pool. It must not be used afterwards.
+     * 
+     * @param buffer
+     *            - the buffer to return
+     */
+    public void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (!buffer.isDirect() || buffer.isReadOnly() || Integer.bitCount(capacity) != 1) {
+            return;
+        }
+        int shift = Integer.numberOfTrailingZeros(capacity);
+        if (shift < MIN_SHIFT || shift > MAX_SHIFT) {
+            return;
+        }
+        if (retainedBytes.addAndGet(capacity) > maxRetainedBytes) {
+            // over budget, let it be collected
+            retainedBytes.addAndGet(-capacity);
+            return;
+        }
+        free[shift - MIN_SHIFT].add(buffer);
+    }
+
+    /**
+     * @return the total capacity of the buffers waiting in the pool
+     */
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+}
@@ -26,6 +26,7 @@
 package com.techshroom.unplanned.core.util.files;
 
 import java.io.BufferedInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
@@ -62,76 +63,67 @@ public class FileRetentionPolicies {
 
     private static final class SingleMMapPolicy implements FileRetentionPolicy {
 
-        private Path mmapped;
-        private MappedByteBuffer mmapData;
+        private static final class Mapping {
 
-        @Override
-        public InputStream openStream(Path file) throws IOException {
-            if (!file.toAbsolutePath().equals(mmapped)) {
-                mapFile(file);
-            }
-            return new ByteBufStream(mmapData);
-        }
+            private final Path file;
+            private final MappedByteBuffer data;
 
-        private void mapFile(Path file) throws IOException {
-            try (FileChannel fc = FileChannel.open(file)) {
-                mmapData = fc.map(MapMode.READ_ONLY, 0, fc.size());
+            Mapping(Path file, MappedByteBuffer data) {
+                this.file = file;
+                this.data = data;
             }
-            mmapped = file.toAbsolutePath();
+
         }
 
-        private static final class ByteBufStream extends InputStream {
+        // swapped as a whole, so concurrent opens never see a torn pair
+        private volatile Mapping mapping;
 
-            private final ByteBuffer mmapView;
+        @Override
+        public InputStream openStream(Path file) throws IOException {
+            return new ByteBufferInputStream(map(file));
+        }
 
-            private ByteBufStream(ByteBuffer original) {
-                mmapView = original.asReadOnlyBuffer();
-            }
+        @Override
+        public ByteBuffer openBuffer(Path file, long offset, int size) throws IOException {
+            return region(map(file), file, offset, size);
+        }
 
-            @Override
-            public int read() throws IOException {
-                if (!mmapView.hasRemaining()) {
-                    return -1;
+        private MappedByteBuffer map(Path file) throws IOException {
+            Path key = file.toAbsolutePath();
+            Mapping m = mapping;
+            if (m == null || !m.file.equals(key)) {
+                try (FileChannel fc = FileChannel.open(key)) {
+                    m = new Mapping(key, fc.map(MapMode.READ_ONLY, 0, fc.size()));
                 }
-                return mmapView.get();
-            }
-
-            @Override
-            public int read(byte[] b, int off, int len) throws IOException {
-                int realLen = Math.min(len, mmapView.remaining());
-                mmapView.get(b, off, realLen);
-                return realLen;
-            }
-
-            @Override
-            public long skip(long n) throws IOException {
-                long actualSkip = Math.min(n, mmapView.remaining());
-                mmapView.position(mmapView.position() + (int) actualSkip);
-                return actualSkip;
-            }
-
-            @Override
-            public int available() throws IOException {
-                return mmapView.remaining();
-            }
-
-            @Override
-            public synchronized void mark(int readlimit) {
-                mmapView.mark();
+                mapping = m;
             }
+            return m.data;
+        }
 
-            @Override
-            public synchronized void reset() throws IOException {
-                mmapView.reset();
-            }
+    }
 
-            @Override
-            public boolean markSupported() {
-                return true;
-            }
+    /**
+     * Policy that keeps the most recently used files mmap'd, up to
+     * {@code maxMappedBytes} in total. Use this when reads jump between
+     * files, e.g. FF2 parts.
+     * 
+     * @param maxMappedBytes
+     *            - the mapped size budget
+     */
+    public static LruMappedFilesPolicy lruMemoryMappedFiles(long maxMappedBytes) {
+        return new LruMappedFilesPolicy(maxMappedBytes);
+    }
 
+    /**
+     * @return a read-only slice of a mapped file
+     */
+    static ByteBuffer region(MappedByteBuffer data, Path file, long offset, int size) throws EOFException {
+        if (offset < 0 || offset + size > data.capacity()) {
+            throw new EOFException("Region " + offset + "+" + size + " is outside of " + file);
         }
-
+        ByteBuffer view = data.asReadOnlyBuffer();
+        view.position((int) offset).limit((int) offset + size);
+        return view.slice();
     }
 
     private FileRetentionPolicies() {
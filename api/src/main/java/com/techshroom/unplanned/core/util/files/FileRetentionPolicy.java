@@ -25,8 +25,11 @@
 
 package com.techshroom.unplanned.core.util.files;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 
 /**
@@ -43,4 +46,30 @@ public interface FileRetentionPolicy {
      */
     InputStream openStream(Path file) throws IOException;
 
+    /**
+     * Opens a read-only buffer over part of the file content. Policies that
+     * keep the file mapped return a slice of the mapping without copying, by
+     * default the region is read into a new heap buffer.
+     * 
+     * @param file
+     *            - the path to read from
+     * @param offset
+     *            - the offset of the region in the file
+     * @param size
+     *            - the size of the region
+     * @return a buffer holding exactly the region
+     */
+    default ByteBuffer openBuffer(Path file, long offset, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        try (FileChannel fc = FileChannel.open(file)) {
+            while (buffer.hasRemaining()) {
+                if (fc.read(buffer, offset + buffer.position()) < 0) {
+                    throw new EOFException("Region " + offset + "+" + size + " is outside of " + file);
+                }
+            }
+        }
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
 }
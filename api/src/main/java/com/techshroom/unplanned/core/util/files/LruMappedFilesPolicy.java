@@ -0,0 +1,142 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.core.util.files;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Policy that keeps several files mmap'd, dropping the least recently used
+ * mappings once the total mapped size goes over a budget. Safe to use from
+ * many threads at once.
+ * 
+ * <p>
+ * Dropped mappings are released by the garbage collector once no stream or
+ * buffer opened from them is reachable, so it is always safe to keep using
+ * those. The most recently used file is kept even if it alone is over the
+ * budget.
+ * </p>
+ */
+public final class LruMappedFilesPolicy implements FileRetentionPolicy {
+
+    private final long maxMappedBytes;
+    // access-ordered, eldest first
+    private final Map<Path, MappedByteBuffer> mapped = new LinkedHashMap<>(16, 0.75f, true);
+    private long mappedBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong remaps = new AtomicLong();
+
+    LruMappedFilesPolicy(long maxMappedBytes) {
+        checkArgument(maxMappedBytes > 0, "budget must be positive");
+        this.maxMappedBytes = maxMappedBytes;
+    }
+
+    private MappedByteBuffer map(Path file) throws IOException {
+        Path key = file.toAbsolutePath();
+        synchronized (mapped) {
+            MappedByteBuffer data = mapped.get(key);
+            if (data != null) {
+                hits.incrementAndGet();
+                return data;
+            }
+        }
+        // map outside of the lock, so other files can be read meanwhile
+        MappedByteBuffer data;
+        try (FileChannel fc = FileChannel.open(key)) {
+            data = fc.map(MapMode.READ_ONLY, 0, fc.size());
+        }
+        remaps.incrementAndGet();
+        synchronized (mapped) {
+            MappedByteBuffer raced = mapped.putIfAbsent(key, data);
+            if (raced != null) {
+                // someone else mapped it first, share theirs
+                return raced;
+            }
+            mappedBytes += data.capacity();
+            Iterator<MappedByteBuffer> eldest = mapped.values().iterator();
+            while (mappedBytes > maxMappedBytes && mapped.size() > 1) {
+                mappedBytes -= eldest.next().capacity();
+                eldest.remove();
+            }
+        }
+        return data;
+    }
+
+    @Override
+    public InputStream openStream(Path file) throws IOException {
+        return new ByteBufferInputStream(map(file));
+    }
+
+    @Override
+    public ByteBuffer openBuffer(Path file, long offset, int size) throws IOException {
+        return FileRetentionPolicies.region(map(file), file, offset, size);
+    }
+
+    public long getMaxMappedBytes() {
+        return maxMappedBytes;
+    }
+
+    /**
+     * @return the total size of the files mapped right now
+     */
+    public long getMappedBytes() {
+        synchronized (mapped) {
+            return mappedBytes;
+        }
+    }
+
+    /**
+     * @return the number of opens that found their file already mapped
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of opens that had to map their file
+     */
+    public long getRemaps() {
+        return remaps.get();
+    }
+
+    @Override
+    public String toString() {
+        return "LruMappedFilesPolicy[mapped=" + getMappedBytes() + "/" + maxMappedBytes
+                + ", hits=" + getHits() + ", remaps=" + getRemaps() + "]";
+    }
+
+}
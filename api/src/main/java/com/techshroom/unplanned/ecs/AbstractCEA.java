@@ -0,0 +1,877 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.collections.api.block.procedure.primitive.IntProcedure;
+import org.eclipse.collections.api.list.ImmutableList;
+import org.eclipse.collections.api.map.ImmutableMap;
+import org.eclipse.collections.api.map.MutableMap;
+import org.eclipse.collections.api.set.primitive.IntSet;
+import org.eclipse.collections.api.set.primitive.MutableIntSet;
+import org.eclipse.collections.impl.factory.Lists;
+import org.eclipse.collections.impl.factory.Maps;
+import org.eclipse.collections.impl.factory.primitive.IntSets;
+
+import com.google.common.primitives.Primitives;
+import com.techshroom.unplanned.ecs.Column.BooleanColumn;
+import com.techshroom.unplanned.ecs.Column.ByteColumn;
+import com.techshroom.unplanned.ecs.Column.IntColumn;
+import com.techshroom.unplanned.ecs.Column.LongColumn;
+import com.techshroom.unplanned.ecs.Column.ShortColumn;
+
+/**
+ * Base for {@link CompEntAssoc} implementations. Handles the systems and
+ * which entities have which components, leaving field storage to the
+ * subclass.
+ */
+public abstract class AbstractCEA implements CompEntAssoc {
+
+    private final ImmutableList<CSystem> systems;
+    private final SystemScheduler scheduler;
+    private final SystemProfiler profiler;
+    private final ImmutableMap<Component, MutableIntSet> componentLists;
+    private final EntityAllocator allocator = new EntityAllocator();
+    private final CommandBuffer commands = new CommandBuffer(this);
+    private final QueryCache queries = new QueryCache(this::getEntities);
+    private final ObserverQueue observers = new ObserverQueue();
+    private final Map<Component, ChangeTracker> trackers = new ConcurrentHashMap<>();
+    private volatile ImmutableMap<ComponentField<?>, ChangeTracker> fieldTrackers = Maps.immutable.empty();
+    private volatile ImmutableMap<Component, ComponentWatcher[]> watchers = Maps.immutable.empty();
+    private volatile ImmutableMap<ComponentField<?>, ComponentWatcher[]> fieldWatchers = Maps.immutable.empty();
+    private CEAHistory history;
+    private boolean tracking;
+    private boolean ticking;
+    private long tick;
+    private final AtomicLong changeVersion = new AtomicLong();
+
+    protected AbstractCEA(Iterable<CSystem> csys, SystemScheduler.Factory scheduler) {
+        this.systems = Lists.immutable.withAll(csys);
+        this.scheduler = scheduler.create(this.systems.castToList());
+        this.profiler = new SystemProfiler(this.systems.castToList(), SystemProfiler.DEFAULT_CAPACITY);
+        MutableMap<Component, MutableIntSet> cl = Maps.mutable.empty();
+        this.systems.forEach(cs -> {
+            for (Component c : cs.getComponents()) {
+                cl.put(c, IntSets.mutable.empty());
+            }
+        });
+        componentLists = cl.toImmutable();
+        boolean cacheSystemQueries = cacheSystemQueries();
+        this.systems.forEach(cs -> {
+            if (cacheSystemQueries && cs.getComponents().size() > 1) {
+                queries.register(cs.getComponents());
+            }
+            if (cs instanceof ComponentObserver) {
+                addObserver((ComponentObserver) cs);
+            }
+        });
+    }
+
+    private MutableIntSet cl(Component key) {
+        MutableIntSet val = componentLists.get(key);
+        checkState(val != null, "Component %s is not part of this CEA", key.getId());
+        return val;
+    }
+
+    /**
+     * @return the allocator handing out entity IDs for this CEA. Storage may
+     *         be indexed by {@link EntityAllocator#index(int)}.
+     */
+    protected final EntityAllocator getAllocator() {
+        return allocator;
+    }
+
+    /**
+     * @return the components that may be attached to entities in this CEA
+     */
+    protected final Iterable<Component> getRegisteredComponents() {
+        return componentLists.keysView();
+    }
+
+    @Override
+    public boolean isRegistered(Component component) {
+        return componentLists.containsKey(component);
+    }
+
+    /**
+     * Called once from the constructor, before the subclass is initialized.
+     * By default the entity set of every multi-component system query is
+     * built up front and kept up to date, for
+     * {@link #forEachEntity(Iterable, IntProcedure)}. Storages that answer
+     * those queries from their own layout can return {@code false}, so the
+     * sets are only built and kept once {@link #getEntities(Iterable)} asks
+     * for them.
+     *
+     * @return {@code true} to cache the systems' queries up front
+     */
+    protected boolean cacheSystemQueries() {
+        return true;
+    }
+
+    /**
+     * Records that a field of an entity is being set. Storages must call this
+     * from every setter, before the new value is written, so change tracking
+     * and {@link CEAHistory history} work. Does nothing for components without
+     * change tracking.
+     *
+     * @param entityId
+     *            - the entity that was written to
+     * @param field
+     *            - the field that was written
+     */
+    protected final void changed(int entityId, ComponentField<?> field) {
+        if (!tracking) {
+            return;
+        }
+        if (history != null) {
+            history.changing(entityId, field);
+        }
+        ComponentWatcher[] watching = fieldWatchers.get(field);
+        if (watching != null) {
+            for (ComponentWatcher w : watching) {
+                w.onChange(entityId);
+            }
+        }
+        ChangeTracker tracker = fieldTrackers.get(field);
+        if (tracker != null) {
+            tracker.mark(EntityAllocator.index(entityId), changeVersion.get());
+        }
+    }
+
+    private void notifyWatchers(int entityId, Component component) {
+        ComponentWatcher[] watching = watchers.get(component);
+        if (watching != null) {
+            for (ComponentWatcher w : watching) {
+                w.onChange(entityId);
+            }
+        }
+    }
+
+    private void attached(int entityId, Component component) {
+        ChangeTracker tracker = trackers.get(component);
+        if (tracker != null) {
+            tracker.ensureCapacity(allocator.capacity());
+            tracker.mark(EntityAllocator.index(entityId), changeVersion.get());
+        }
+    }
+
+    /**
+     * Allocates storage for a new entity, with the fields of the given
+     * components set to their default values.
+     *
+     * @param entityId
+     *            - the freshly allocated ID of the new entity
+     * @param components
+     *            - the components of the new entity
+     */
+    protected abstract void createEntity(int entityId, Iterable<Component> components);
+
+    /**
+     * Allocates storage for many new entities with the same components.
+     * Storages can override this to size their storage once and write the
+     * defaults in bulk, by default it calls
+     * {@link #createEntity(int, Iterable)} for each entity.
+     *
+     * @param entityIds
+     *            - the freshly allocated IDs of the new entities
+     * @param components
+     *            - the components of every new entity
+     */
+    protected void createEntities(int[] entityIds, Iterable<Component> components) {
+        for (int entityId : entityIds) {
+            createEntity(entityId, components);
+        }
+    }
+
+    /**
+     * Allocates storage for new entities from a prefab, with their fields set
+     * to the prefab's values. Storages can override this to copy the values
+     * straight in, instead of writing the defaults first. By default it calls
+     * {@link #createEntities(int[], Iterable)}, then copies each field from
+     * the prefab's row through {@link #bind(ComponentField)}, or
+     * {@link #writeField(ComponentField, int[], Object)} if the storage has
+     * no bindings.
+     *
+     * @param entityIds
+     *            - the freshly allocated IDs of the new entities
+     * @param prefab
+     *            - the prefab to copy
+     */
+    protected void createEntities(int[] entityIds, Prefab prefab) {
+        createEntities(entityIds, prefab.getComponents());
+        List<ComponentField<?>> fields = prefab.getFields();
+        for (int i = 0; i < fields.size(); i++) {
+            ComponentField<?> field = fields.get(i);
+            Column src = prefab.getColumn(i);
+            FieldBinding bound = bind(field);
+            if (bound != null) {
+                for (int entityId : entityIds) {
+                    bound.column(entityId).copyFrom(src, 0, bound.row(entityId));
+                }
+            } else {
+                Object values = src.newArray(entityIds.length);
+                for (int j = 0; j < entityIds.length; j++) {
+                    src.read(0, values, j);
+                }
+                writeField(field, entityIds, values);
+            }
+        }
+    }
+
+    /**
+     * Attaches a component to an existing entity, resetting its fields to
+     * their default values.
+     *
+     * @param entityId
+     *            - the entity to attach to
+     * @param component
+     *            - the component to attach
+     */
+    protected abstract void attachComponent(int entityId, Component component);
+
+    /**
+     * Detaches a component from an existing entity, releasing the storage for
+     * its fields.
+     *
+     * @param entityId
+     *            - the entity to detach from
+     * @param component
+     *            - the component to detach
+     */
+    protected abstract void detachComponent(int entityId, Component component);
+
+    /**
+     * Releases the storage for an entity. The ID is still live while this is
+     * called, and is freed afterwards.
+     *
+     * @param entityId
+     *            - the entity to release
+     */
+    protected abstract void destroyEntity(int entityId);
+
+    /**
+     * Reads a field of many entities at once. Used for snapshots, storages
+     * can override this to copy straight out of their columns.
+     *
+     * @param field
+     *            - the field to read
+     * @param entityIds
+     *            - the entities to read from, which all have the field
+     * @return an array of the unwrapped field type (e.g. {@code int[]} for
+     *         {@link CFType#INTEGER}) holding the value of each entity
+     */
+    protected Object readField(ComponentField<?> field, int[] entityIds) {
+        Object values = Array.newInstance(Primitives.unwrap(field.getType().type), entityIds.length);
+        for (int i = 0; i < entityIds.length; i++) {
+            Array.set(values, i, get(entityIds[i], field));
+        }
+        return values;
+    }
+
+    /**
+     * Writes a field of many entities at once. Used for snapshots, storages
+     * can override this to copy straight into their columns.
+     *
+     * @param field
+     *            - the field to write
+     * @param entityIds
+     *            - the entities to write to, which all have the field
+     * @param values
+     *            - an array in the format returned by
+     *            {@link #readField(ComponentField, int[])}
+     */
+    protected void writeField(ComponentField<?> field, int[] entityIds, Object values) {
+        @SuppressWarnings("unchecked")
+        ComponentField<Object> f = (ComponentField<Object>) field;
+        for (int i = 0; i < entityIds.length; i++) {
+            set(entityIds[i], f, Array.get(values, i));
+        }
+    }
+
+    /**
+     * Where a field's value is stored for each entity, as resolved by
+     * {@link #bind(ComponentField)}.
+     */
+    interface FieldBinding {
+
+        /**
+         * @return the column holding the entity's value, after checking that
+         *         the entity has the field
+         */
+        Column column(int entityId);
+
+        int row(int entityId);
+
+    }
+
+    /**
+     * Resolves a field for the bound accessors. Storages that keep fields in
+     * {@link Column}s should override this, the default of {@code null}
+     * makes the accessors go through get/set.
+     */
+    FieldBinding bind(ComponentField<?> field) {
+        return null;
+    }
+
+    private static void checkType(ComponentField<?> field, CFType<?> type) {
+        checkArgument(field.getType() == type, "field %s is not of type %s", field, type.name());
+    }
+
+    @Override
+    public <T> FieldAccessor<T> accessor(ComponentField<T> field) {
+        FieldBinding bound = bind(field);
+        if (bound == null) {
+            return CompEntAssoc.super.accessor(field);
+        }
+        return new FieldAccessor<T>() {
+
+            @Override
+            public T get(int entityId) {
+                @SuppressWarnings("unchecked")
+                T val = (T) bound.column(entityId).get(bound.row(entityId));
+                return val;
+            }
+
+            @Override
+            public void set(int entityId, T value) {
+                checkArgument(value != null, "values may not be null");
+                Column col = bound.column(entityId);
+                changed(entityId, field);
+                col.set(bound.row(entityId), value);
+            }
+        };
+    }
+
+    @Override
+    public FieldAccessor.OfBoolean booleanAccessor(ComponentField<Boolean> field) {
+        checkType(field, CFType.BOOLEAN);
+        FieldBinding bound = bind(field);
+        if (bound == null) {
+            return CompEntAssoc.super.booleanAccessor(field);
+        }
+        return new FieldAccessor.OfBoolean() {
+
+            @Override
+            public boolean get(int entityId) {
+                return ((BooleanColumn) bound.column(entityId)).getBoolean(bound.row(entityId));
+            }
+
+            @Override
+            public void set(int entityId, boolean value) {
+                BooleanColumn col = (BooleanColumn) bound.column(entityId);
+                changed(entityId, field);
+                col.setBoolean(bound.row(entityId), value);
+            }
+        };
+    }
+
+    @Override
+    public FieldAccessor.OfByte byteAccessor(ComponentField<Byte> field) {
+        checkType(field, CFType.BYTE);
+        FieldBinding bound = bind(field);
+        if (bound == null) {
+            return CompEntAssoc.super.byteAccessor(field);
+        }
+        return new FieldAccessor.OfByte() {
+
+            @Override
+            public byte get(int entityId) {
+                return ((ByteColumn) bound.column(entityId)).getByte(bound.row(entityId));
+            }
+
+            @Override
+            public void set(int entityId, byte value) {
+                ByteColumn col = (ByteColumn) bound.column(entityId);
+                changed(entityId, field);
+                col.setByte(bound.row(entityId), value);
+            }
+        };
+    }
+
+    @Override
+    public FieldAccessor.OfShort shortAccessor(ComponentField<Short> field) {
+        checkType(field, CFType.SHORT);
+        FieldBinding bound = bind(field);
+        if (bound == null) {
+            return CompEntAssoc.super.shortAccessor(field);
+        }
+        return new FieldAccessor.OfShort() {
+
+            @Override
+            public short get(int entityId) {
+                return ((ShortColumn) bound.column(entityId)).getShort(bound.row(entityId));
+            }
+
+            @Override
+            public void set(int entityId, short value) {
+                ShortColumn col = (ShortColumn) bound.column(entityId);
+                changed(entityId, field);
+                col.setShort(bound.row(entityId), value);
+            }
+        };
+    }
+
+    @Override
+    public FieldAccessor.OfInt intAccessor(ComponentField<Integer> field) {
+        checkType(field, CFType.INTEGER);
+        FieldBinding bound = bind(field);
+        if (bound == null) {
+            return CompEntAssoc.super.intAccessor(field);
+        }
+        return new FieldAccessor.OfInt() {
+
+            @Override
+            public int get(int entityId) {
+                return ((IntColumn) bound.column(entityId)).getInt(bound.row(entityId));
+            }
+
+            @Override
+            public void set(int entityId, int value) {
+                IntColumn col = (IntColumn) bound.column(entityId);
+                changed(entityId, field);
+                col.setInt(bound.row(entityId), value);
+            }
+        };
+    }
+
+    @Override
+    public FieldAccessor.OfLong longAccessor(ComponentField<Long> field) {
+        checkType(field, CFType.LONG);
+        FieldBinding bound = bind(field);
+        if (bound == null) {
+            return CompEntAssoc.super.longAccessor(field);
+        }
+        return new FieldAccessor.OfLong() {
+
+            @Override
+            public long get(int entityId) {
+                return ((LongColumn) bound.column(entityId)).getLong(bound.row(entityId));
+            }
+
+            @Override
+            public void set(int entityId, long value) {
+                LongColumn col = (LongColumn) bound.column(entityId);
+                changed(entityId, field);
+                col.setLong(bound.row(entityId), value);
+            }
+        };
+    }
+
+    @Override
+    public int newEntity(Component component) {
+        return newEntity(Collections.singleton(component));
+    }
+
+    @Override
+    public int newEntity(Component... component) {
+        return newEntity(Arrays.asList(component));
+    }
+
+    @Override
+    public int newEntity(Iterable<Component> component) {
+        for (Component c : component) {
+            cl(c);
+        }
+        int id = allocator.allocate();
+        insertEntity(id, component);
+        return id;
+    }
+
+    @Override
+    public int[] newEntities(int count, Component... components) {
+        return newEntities(count, Arrays.asList(components));
+    }
+
+    @Override
+    public int[] newEntities(int count, Iterable<Component> components) {
+        checkArgument(count >= 0, "count must not be negative");
+        for (Component c : components) {
+            cl(c);
+        }
+        allocator.ensureCapacity(count);
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = allocator.allocate();
+        }
+        createEntities(ids, components);
+        for (int id : ids) {
+            addToComponentLists(id, components, true);
+            if (history != null) {
+                history.created(id);
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public int instantiate(Prefab prefab) {
+        return instantiate(prefab, 1)[0];
+    }
+
+    @Override
+    public int[] instantiate(Prefab prefab, int count) {
+        checkArgument(count >= 0, "count must not be negative");
+        Iterable<Component> components = prefab.getComponents();
+        for (Component c : components) {
+            cl(c);
+        }
+        allocator.ensureCapacity(count);
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = allocator.allocate();
+        }
+        createEntities(ids, prefab);
+        for (int id : ids) {
+            addToComponentLists(id, components, true);
+            if (history != null) {
+                history.created(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Creates an entity with an ID reserved by the command buffer.
+     */
+    void newReservedEntity(int entityId, Iterable<Component> component) {
+        for (Component c : component) {
+            cl(c);
+        }
+        allocator.commit(entityId);
+        insertEntity(entityId, component);
+    }
+
+    /**
+     * Creates entities with the same components, whose IDs were made live by
+     * {@link EntityAllocator#restore(int[], int[])}.
+     */
+    void restoreEntities(int[] entityIds, Iterable<Component> components) {
+        for (Component c : components) {
+            cl(c);
+        }
+        for (int id : entityIds) {
+            checkState(hasEntity(id), "entity %s was not restored", id);
+        }
+        createEntities(entityIds, components);
+        for (int id : entityIds) {
+            addToComponentLists(id, components, true);
+            if (history != null) {
+                history.created(id);
+            }
+        }
+    }
+
+    void restoreTick(long tick) {
+        this.tick = tick;
+    }
+
+    /**
+     * @return the tick that changes made right now belong to. Changes made
+     *         between ticks belong to the next one.
+     */
+    long changeTick() {
+        return ticking ? tick : tick + 1;
+    }
+
+    private void insertEntity(int entityId, Iterable<Component> component) {
+        insertEntity(entityId, component, true);
+        if (history != null) {
+            history.created(entityId);
+        }
+    }
+
+    private void insertEntity(int entityId, Iterable<Component> component, boolean notify) {
+        createEntity(entityId, component);
+        addToComponentLists(entityId, component, notify);
+    }
+
+    private void addToComponentLists(int entityId, Iterable<Component> component, boolean notify) {
+        for (Component c : component) {
+            if (cl(c).add(entityId)) {
+                queries.componentAdded(entityId, c);
+                attached(entityId, c);
+                notifyWatchers(entityId, c);
+                if (notify) {
+                    observers.attached(entityId, c);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void remove(int entityId) {
+        if (!allocator.isAlive(entityId)) {
+            return;
+        }
+        if (history != null) {
+            history.removing(entityId);
+        }
+        if (!watchers.isEmpty()) {
+            watchers.forEachKeyValue((c, w) -> {
+                if (hasComponent(entityId, c)) {
+                    notifyWatchers(entityId, c);
+                }
+            });
+        }
+        destroyEntity(entityId);
+        allocator.free(entityId);
+        componentLists.forEachKeyValue((c, s) -> {
+            if (s.remove(entityId)) {
+                queries.componentRemoved(entityId, c);
+                observers.destroyed(entityId, c);
+            }
+        });
+    }
+
+    @Override
+    public void addComponent(int entityId, Component component) {
+        checkState(hasEntity(entityId), "entity %s is not associated yet!", entityId);
+        if (cl(component).add(entityId)) {
+            attachComponent(entityId, component);
+            queries.componentAdded(entityId, component);
+            attached(entityId, component);
+            notifyWatchers(entityId, component);
+            observers.attached(entityId, component);
+            if (history != null) {
+                history.attached(entityId, component);
+            }
+        }
+    }
+
+    @Override
+    public void removeComponent(int entityId, Component component) {
+        checkState(hasEntity(entityId), "entity %s is not associated yet!", entityId);
+        if (cl(component).contains(entityId)) {
+            if (history != null) {
+                history.detaching(entityId, component);
+            }
+            cl(component).remove(entityId);
+            detachComponent(entityId, component);
+            queries.componentRemoved(entityId, component);
+            notifyWatchers(entityId, component);
+            observers.detached(entityId, component);
+        }
+    }
+
+    synchronized void setHistory(CEAHistory history) {
+        checkState(this.history == null, "history is already being recorded");
+        this.history = history;
+        allocator.setJournal(history.journal());
+        tracking = true;
+    }
+
+    // reverse operations for CEAHistory, they don't notify observers
+
+    void undoCreate(int entityId) {
+        destroyEntity(entityId);
+        componentLists.forEachKeyValue((c, s) -> {
+            if (s.remove(entityId)) {
+                queries.componentRemoved(entityId, c);
+                notifyWatchers(entityId, c);
+            }
+        });
+    }
+
+    void undoRemove(int entityId, Iterable<Component> components) {
+        insertEntity(entityId, components, false);
+    }
+
+    void undoAttach(int entityId, Component component) {
+        cl(component).remove(entityId);
+        detachComponent(entityId, component);
+        queries.componentRemoved(entityId, component);
+        notifyWatchers(entityId, component);
+    }
+
+    void undoDetach(int entityId, Component component) {
+        cl(component).add(entityId);
+        attachComponent(entityId, component);
+        queries.componentAdded(entityId, component);
+        attached(entityId, component);
+        notifyWatchers(entityId, component);
+    }
+
+    @Override
+    public IntSet getEntities(Component component) {
+        MutableIntSet set = componentLists.get(component);
+        return set == null ? IntSets.immutable.empty() : set.asUnmodifiable();
+    }
+
+    @Override
+    public IntSet getEntities(Iterable<Component> components) {
+        Iterator<Component> iter = components.iterator();
+        if (!iter.hasNext()) {
+            return IntSets.immutable.empty();
+        }
+        Component first = iter.next();
+        if (!iter.hasNext()) {
+            return getEntities(first);
+        }
+        return queries.get(components);
+    }
+
+    @Override
+    public boolean hasComponent(int entityId, Component component) {
+        return componentLists.get(component).contains(entityId);
+    }
+
+    @Override
+    public Prefab toPrefab(int entityId) {
+        checkState(hasEntity(entityId), "entity %s is not associated yet!", entityId);
+        List<Component> components = new ArrayList<>();
+        for (Component c : getRegisteredComponents()) {
+            if (hasComponent(entityId, c)) {
+                components.add(c);
+            }
+        }
+        return Prefab.of(this, entityId, components);
+    }
+
+    @Override
+    public final boolean hasEntity(int entityId) {
+        return allocator.isAlive(entityId);
+    }
+
+    @Override
+    public void addObserver(ComponentObserver observer) {
+        for (Component c : observer.getObservedComponents()) {
+            cl(c);
+        }
+        observers.addObserver(observer);
+    }
+
+    @Override
+    public synchronized void addWatcher(ComponentWatcher watcher) {
+        Component component = watcher.getWatchedComponent();
+        cl(component);
+        MutableMap<Component, ComponentWatcher[]> w = Maps.mutable.empty();
+        watchers.forEachKeyValue(w::put);
+        ComponentWatcher[] existing = w.getIfAbsent(component, () -> new ComponentWatcher[0]);
+        ComponentWatcher[] added = Arrays.copyOf(existing, existing.length + 1);
+        added[existing.length] = watcher;
+        w.put(component, added);
+        MutableMap<ComponentField<?>, ComponentWatcher[]> fw = Maps.mutable.empty();
+        w.forEach((c, ws) -> c.getFields().values().forEach(f -> fw.put(f, ws)));
+        watchers = w.toImmutable();
+        fieldWatchers = fw.toImmutable();
+        tracking = true;
+    }
+
+    @Override
+    public synchronized void trackChanges(Component component) {
+        cl(component);
+        if (trackers.containsKey(component)) {
+            return;
+        }
+        trackers.put(component, new ChangeTracker(allocator.capacity(), changeVersion.get()));
+        MutableMap<ComponentField<?>, ChangeTracker> ft = Maps.mutable.empty();
+        trackers.forEach((c, t) -> c.getFields().values().forEach(f -> ft.put(f, t)));
+        fieldTrackers = ft.toImmutable();
+        tracking = true;
+    }
+
+    @Override
+    public void forEachEntityChangedSince(Iterable<Component> components, long sinceVersion, IntProcedure action) {
+        List<ChangeTracker> tracked = new ArrayList<>();
+        for (Component c : components) {
+            ChangeTracker t = trackers.get(c);
+            if (t != null) {
+                tracked.add(t);
+            }
+        }
+        checkState(!tracked.isEmpty(), "none of %s have change tracking enabled", components);
+        ChangeTracker[] check = tracked.toArray(new ChangeTracker[0]);
+        forEachEntity(components, e -> {
+            int index = EntityAllocator.index(e);
+            for (ChangeTracker t : check) {
+                if (t.version(index) >= sinceVersion) {
+                    action.value(e);
+                    return;
+                }
+            }
+        });
+    }
+
+    @Override
+    public long getTick() {
+        return tick;
+    }
+
+    @Override
+    public long getChangeVersion() {
+        return changeVersion.get();
+    }
+
+    @Override
+    public long nextChangeVersion() {
+        return changeVersion.incrementAndGet();
+    }
+
+    @Override
+    public CommandBuffer commands() {
+        return commands;
+    }
+
+    @Override
+    public void playbackCommands() {
+        commands.playback();
+    }
+
+    @Override
+    public SystemScheduler getScheduler() {
+        return scheduler;
+    }
+
+    @Override
+    public SystemProfiler getProfiler() {
+        return profiler;
+    }
+
+    @Override
+    public void tick(long nano) {
+        tick++;
+        ticking = true;
+        try {
+            scheduler.tick(this, nano);
+            observers.deliver(this);
+        } finally {
+            ticking = false;
+        }
+    }
+
+}
@@ -0,0 +1,545 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.collections.api.block.procedure.primitive.IntProcedure;
+import org.eclipse.collections.api.map.ImmutableMap;
+import org.eclipse.collections.api.map.MutableMap;
+import org.eclipse.collections.impl.factory.Maps;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.techshroom.unplanned.ecs.Column.BooleanColumn;
+import com.techshroom.unplanned.ecs.Column.ByteColumn;
+import com.techshroom.unplanned.ecs.Column.IntColumn;
+import com.techshroom.unplanned.ecs.Column.LongColumn;
+import com.techshroom.unplanned.ecs.Column.ShortColumn;
+
+/**
+ * Archetype based association table. Entities that have exactly the same
+ * components share an archetype, and are stored together in fixed-size
+ * chunks of columns. Queries walk the chunks of every archetype that has the
+ * queried components, without building any sets, and membership checks read
+ * the entity's archetype.
+ *
+ * <p>
+ * The per-component sets of {@link AbstractCEA} are still kept, as
+ * {@link #getEntities(Component)} hands out live views of them. Sets for
+ * multi-component queries are only kept once
+ * {@link #getEntities(Iterable)} asks for them.
+ * </p>
+ */
+public class ArchetypeCEA extends AbstractCEA {
+
+    /**
+     * Rows per chunk. Kept a multiple of 64 so boolean columns never share
+     * words between chunks.
+     */
+    static final int CHUNK_SIZE = 256;
+
+    private static final class Chunk {
+
+        private final int[] entities = new int[CHUNK_SIZE];
+        private final Column[] columns;
+        private int count;
+
+        Chunk(ComponentField<?>[] fields) {
+            this.columns = new Column[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                columns[i] = Column.create(fields[i].getType(), CHUNK_SIZE);
+            }
+        }
+
+    }
+
+    private static final class Archetype {
+
+        private final ImmutableSet<Component> components;
+        private final long[] mask;
+        private final ComponentField<?>[] fields;
+        /**
+         * Global field index to column index, or -1 if the field is not part
+         * of this archetype.
+         */
+        private final int[] columnOfField;
+        private final List<Chunk> chunks = new ArrayList<>();
+        private final Map<Component, Archetype> addEdges = new HashMap<>();
+        private final Map<Component, Archetype> removeEdges = new HashMap<>();
+
+        Archetype(ImmutableSet<Component> components, long[] mask, ComponentField<?>[] fields, int[] columnOfField) {
+            this.components = components;
+            this.mask = mask;
+            this.fields = fields;
+            this.columnOfField = columnOfField;
+        }
+
+        boolean hasAll(long[] query) {
+            for (int i = 0; i < query.length; i++) {
+                if ((query[i] & ~mask[i]) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void forEachEntity(IntProcedure action) {
+            // walk backwards so removing the current entity only moves
+            // already-visited entities
+            for (int c = chunks.size() - 1; c >= 0; c--) {
+                Chunk chunk = chunks.get(c);
+                for (int row = chunk.count - 1; row >= 0; row--) {
+                    action.value(chunk.entities[row]);
+                }
+            }
+        }
+
+    }
+
+    private static final class Location {
+
+        private Archetype archetype;
+        private Chunk chunk;
+        private int row;
+
+    }
+
+    private static final class Query {
+
+        /**
+         * Mask of the queried components, or {@code null} if one of them is
+         * not part of this CEA, so nothing can match.
+         */
+        private final long[] mask;
+        private final List<Archetype> matches = new ArrayList<>();
+
+        Query(long[] mask) {
+            this.mask = mask;
+        }
+
+    }
+
+    private final ImmutableMap<Component, Integer> componentIndex;
+    private final ImmutableMap<ComponentField<?>, Integer> fieldIndex;
+    private final Map<Set<Component>, Archetype> archetypes = new HashMap<>();
+    private final Map<Set<Component>, Query> queries = new HashMap<>();
+    /**
+     * Entity locations, indexed by allocator index.
+     */
+    private Location[] locations = new Location[CHUNK_SIZE];
+    private final Archetype root;
+
+    ArchetypeCEA(Iterable<CSystem> csys, SystemScheduler.Factory scheduler) {
+        super(csys, scheduler);
+        MutableMap<Component, Integer> ci = Maps.mutable.empty();
+        MutableMap<ComponentField<?>, Integer> fi = Maps.mutable.empty();
+        for (Component c : getRegisteredComponents()) {
+            ci.put(c, ci.size());
+            for (ComponentField<?> f : c.getFields().values()) {
+                fi.putIfAbsent(f, fi.size());
+            }
+        }
+        this.componentIndex = ci.toImmutable();
+        this.fieldIndex = fi.toImmutable();
+        this.root = archetype(ImmutableSet.of());
+    }
+
+    private long[] mask(Set<Component> components) {
+        long[] mask = new long[Column.words(componentIndex.size())];
+        for (Component c : components) {
+            Integer index = componentIndex.get(c);
+            checkState(index != null, "Component %s is not part of this CEA", c.getId());
+            Column.setBit(mask, index, true);
+        }
+        return mask;
+    }
+
+    private Archetype archetype(Set<Component> components) {
+        Archetype arch = archetypes.get(components);
+        if (arch != null) {
+            return arch;
+        }
+        ImmutableSet<Component> key = ImmutableSet.copyOf(components);
+        List<ComponentField<?>> fields = new ArrayList<>();
+        int[] columnOfField = new int[fieldIndex.size()];
+        Arrays.fill(columnOfField, -1);
+        for (Component c : key) {
+            for (ComponentField<?> f : c.getFields().values()) {
+                columnOfField[fieldIndex.get(f)] = fields.size();
+                fields.add(f);
+            }
+        }
+        arch = new Archetype(key, mask(key), fields.toArray(new ComponentField<?>[0]), columnOfField);
+        archetypes.put(key, arch);
+        for (Query q : queries.values()) {
+            if (q.mask != null && arch.hasAll(q.mask)) {
+                q.matches.add(arch);
+            }
+        }
+        return arch;
+    }
+
+    private Archetype withComponent(Archetype from, Component component) {
+        return from.addEdges.computeIfAbsent(component,
+                c -> archetype(Sets.union(from.components, ImmutableSet.of(c))));
+    }
+
+    private Archetype withoutComponent(Archetype from, Component component) {
+        return from.removeEdges.computeIfAbsent(component,
+                c -> archetype(Sets.difference(from.components, ImmutableSet.of(c))));
+    }
+
+    // synchronized as systems in the same stage may query concurrently
+    private synchronized Query query(Iterable<Component> components) {
+        Set<Component> key = components instanceof Set
+                ? (Set<Component>) components
+                : ImmutableSet.copyOf(components);
+        Query q = queries.get(key);
+        if (q == null) {
+            key = ImmutableSet.copyOf(key);
+            q = new Query(key.stream().allMatch(componentIndex::containsKey) ? mask(key) : null);
+            if (q.mask != null) {
+                for (Archetype arch : archetypes.values()) {
+                    if (arch.hasAll(q.mask)) {
+                        q.matches.add(arch);
+                    }
+                }
+            }
+            queries.put(key, q);
+        }
+        return q;
+    }
+
+    /**
+     * Places an entity in a fresh row of an archetype, with default values.
+     */
+    private void insert(Archetype arch, int entityId, Location loc) {
+        Chunk chunk = arch.chunks.isEmpty() ? null : arch.chunks.get(arch.chunks.size() - 1);
+        if (chunk == null || chunk.count == CHUNK_SIZE) {
+            chunk = new Chunk(arch.fields);
+            arch.chunks.add(chunk);
+        }
+        int row = chunk.count++;
+        chunk.entities[row] = entityId;
+        for (Column col : chunk.columns) {
+            col.attach(row);
+        }
+        loc.archetype = arch;
+        loc.chunk = chunk;
+        loc.row = row;
+    }
+
+    /**
+     * Removes the row of an entity by moving the last entity of the archetype
+     * into it.
+     */
+    private void erase(Location loc) {
+        Archetype arch = loc.archetype;
+        Chunk lastChunk = arch.chunks.get(arch.chunks.size() - 1);
+        int lastRow = lastChunk.count - 1;
+        if (lastChunk != loc.chunk || lastRow != loc.row) {
+            int moved = lastChunk.entities[lastRow];
+            for (int i = 0; i < lastChunk.columns.length; i++) {
+                loc.chunk.columns[i].copyFrom(lastChunk.columns[i], lastRow, loc.row);
+            }
+            loc.chunk.entities[loc.row] = moved;
+            Location movedLoc = locations[EntityAllocator.index(moved)];
+            movedLoc.chunk = loc.chunk;
+            movedLoc.row = loc.row;
+        }
+        for (Column col : lastChunk.columns) {
+            col.detach(lastRow);
+        }
+        lastChunk.count--;
+        if (lastChunk.count == 0) {
+            arch.chunks.remove(arch.chunks.size() - 1);
+        }
+    }
+
+    /**
+     * Moves an entity to another archetype, carrying over the fields both
+     * archetypes share.
+     */
+    private void move(int entityId, Location loc, Archetype to) {
+        Archetype from = loc.archetype;
+        Chunk oldChunk = loc.chunk;
+        int oldRow = loc.row;
+        Location dest = new Location();
+        insert(to, entityId, dest);
+        for (int i = 0; i < to.fields.length; i++) {
+            int src = from.columnOfField[fieldIndex.get(to.fields[i])];
+            if (src != -1) {
+                dest.chunk.columns[i].copyFrom(oldChunk.columns[src], oldRow, dest.row);
+            }
+        }
+        erase(loc);
+        loc.archetype = dest.archetype;
+        loc.chunk = dest.chunk;
+        loc.row = dest.row;
+    }
+
+    @Override
+    protected boolean cacheSystemQueries() {
+        return false;
+    }
+
+    private Location location(int entityId) {
+        checkState(hasEntity(entityId), "entity %s is not associated yet!", entityId);
+        return locations[EntityAllocator.index(entityId)];
+    }
+
+    private Column column(int entityId, Location loc, ComponentField<?> field) {
+        Integer index = fieldIndex.get(field);
+        int col = index == null ? -1 : loc.archetype.columnOfField[index];
+        checkState(col != -1, "field %s is not associated with entity %s", field, entityId);
+        return loc.chunk.columns[col];
+    }
+
+    private Column writeColumn(int entityId, Location loc, ComponentField<?> field) {
+        Column col = column(entityId, loc, field);
+        changed(entityId, field);
+        return col;
+    }
+
+    @Override
+    protected void createEntity(int entityId, Iterable<Component> components) {
+        int index = EntityAllocator.index(entityId);
+        if (index >= locations.length) {
+            locations = Arrays.copyOf(locations, Math.max(index + 1, locations.length * 2));
+        }
+        Location loc = new Location();
+        insert(archetype(ImmutableSet.copyOf(components)), entityId, loc);
+        locations[index] = loc;
+    }
+
+    @Override
+    protected void createEntities(int[] entityIds, Iterable<Component> components) {
+        int maxIndex = 0;
+        for (int entityId : entityIds) {
+            maxIndex = Math.max(maxIndex, EntityAllocator.index(entityId));
+        }
+        if (maxIndex >= locations.length) {
+            locations = Arrays.copyOf(locations, Math.max(maxIndex + 1, locations.length * 2));
+        }
+        Archetype arch = archetype(ImmutableSet.copyOf(components));
+        for (int entityId : entityIds) {
+            Location loc = new Location();
+            insert(arch, entityId, loc);
+            locations[EntityAllocator.index(entityId)] = loc;
+        }
+    }
+
+    @Override
+    protected void attachComponent(int entityId, Component component) {
+        Location loc = location(entityId);
+        move(entityId, loc, withComponent(loc.archetype, component));
+    }
+
+    @Override
+    protected void detachComponent(int entityId, Component component) {
+        Location loc = location(entityId);
+        move(entityId, loc, withoutComponent(loc.archetype, component));
+    }
+
+    @Override
+    protected void destroyEntity(int entityId) {
+        int index = EntityAllocator.index(entityId);
+        erase(locations[index]);
+        locations[index] = null;
+    }
+
+    private int fieldIndex(ComponentField<?> field) {
+        Integer index = fieldIndex.get(field);
+        checkState(index != null, "field %s is not part of this CEA", field);
+        return index;
+    }
+
+    @Override
+    FieldBinding bind(ComponentField<?> field) {
+        int index = fieldIndex(field);
+        return new FieldBinding() {
+
+            @Override
+            public Column column(int entityId) {
+                Location loc = location(entityId);
+                int col = loc.archetype.columnOfField[index];
+                checkState(col != -1, "field %s is not associated with entity %s", field, entityId);
+                return loc.chunk.columns[col];
+            }
+
+            @Override
+            public int row(int entityId) {
+                return locations[EntityAllocator.index(entityId)].row;
+            }
+        };
+    }
+
+    @Override
+    protected Object readField(ComponentField<?> field, int[] entityIds) {
+        int index = fieldIndex(field);
+        Object values = null;
+        for (int i = 0; i < entityIds.length; i++) {
+            Location loc = location(entityIds[i]);
+            int col = loc.archetype.columnOfField[index];
+            checkState(col != -1, "field %s is not associated with entity %s", field, entityIds[i]);
+            if (values == null) {
+                values = loc.chunk.columns[col].newArray(entityIds.length);
+            }
+            loc.chunk.columns[col].read(loc.row, values, i);
+        }
+        return values == null ? super.readField(field, entityIds) : values;
+    }
+
+    @Override
+    protected void writeField(ComponentField<?> field, int[] entityIds, Object values) {
+        int index = fieldIndex(field);
+        for (int i = 0; i < entityIds.length; i++) {
+            Location loc = location(entityIds[i]);
+            int col = loc.archetype.columnOfField[index];
+            checkState(col != -1, "field %s is not associated with entity %s", field, entityIds[i]);
+            changed(entityIds[i], field);
+            loc.chunk.columns[col].write(loc.row, values, i);
+        }
+    }
+
+    @Override
+    public <T> void set(int entityId, ComponentField<T> field, T value) {
+        checkArgument(value != null, "values may not be null");
+        Location loc = location(entityId);
+        writeColumn(entityId, loc, field).set(loc.row, value);
+    }
+
+    @Override
+    public <T> T get(int entityId, ComponentField<T> field) {
+        Location loc = location(entityId);
+        @SuppressWarnings("unchecked")
+        T val = (T) column(entityId, loc, field).get(loc.row);
+        return val;
+    }
+
+    @Override
+    public boolean getBoolean(int entityId, BooleanComponentField field) {
+        Location loc = location(entityId);
+        return ((BooleanColumn) column(entityId, loc, field)).getBoolean(loc.row);
+    }
+
+    @Override
+    public void setBoolean(int entityId, BooleanComponentField field, boolean value) {
+        Location loc = location(entityId);
+        ((BooleanColumn) writeColumn(entityId, loc, field)).setBoolean(loc.row, value);
+    }
+
+    @Override
+    public byte getByte(int entityId, ByteComponentField field) {
+        Location loc = location(entityId);
+        return ((ByteColumn) column(entityId, loc, field)).getByte(loc.row);
+    }
+
+    @Override
+    public void setByte(int entityId, ByteComponentField field, byte value) {
+        Location loc = location(entityId);
+        ((ByteColumn) writeColumn(entityId, loc, field)).setByte(loc.row, value);
+    }
+
+    @Override
+    public short getShort(int entityId, ShortComponentField field) {
+        Location loc = location(entityId);
+        return ((ShortColumn) column(entityId, loc, field)).getShort(loc.row);
+    }
+
+    @Override
+    public void setShort(int entityId, ShortComponentField field, short value) {
+        Location loc = location(entityId);
+        ((ShortColumn) writeColumn(entityId, loc, field)).setShort(loc.row, value);
+    }
+
+    @Override
+    public int getInt(int entityId, IntComponentField field) {
+        Location loc = location(entityId);
+        return ((IntColumn) column(entityId, loc, field)).getInt(loc.row);
+    }
+
+    @Override
+    public void setInt(int entityId, IntComponentField field, int value) {
+        Location loc = location(entityId);
+        ((IntColumn) writeColumn(entityId, loc, field)).setInt(loc.row, value);
+    }
+
+    @Override
+    public long getLong(int entityId, LongComponentField field) {
+        Location loc = location(entityId);
+        return ((LongColumn) column(entityId, loc, field)).getLong(loc.row);
+    }
+
+    @Override
+    public void setLong(int entityId, LongComponentField field, long value) {
+        Location loc = location(entityId);
+        ((LongColumn) writeColumn(entityId, loc, field)).setLong(loc.row, value);
+    }
+
+    @Override
+    public boolean hasComponent(int entityId, Component component) {
+        Integer index = componentIndex.get(component);
+        checkState(index != null, "Component %s is not part of this CEA", component.getId());
+        return hasEntity(entityId)
+                && Column.getBit(locations[EntityAllocator.index(entityId)].archetype.mask, index);
+    }
+
+    @Override
+    public void forEachEntity(Iterable<Component> components, IntProcedure action) {
+        for (Archetype arch : query(components).matches) {
+            arch.forEachEntity(action);
+        }
+    }
+
+    @Override
+    public void forEachEntityParallel(Iterable<Component> components, IntProcedure action) {
+        List<Chunk> chunks = new ArrayList<>();
+        for (Archetype arch : query(components).matches) {
+            chunks.addAll(arch.chunks);
+        }
+        // chunks are a multiple of 64 rows, so they never share words and can
+        // be split anywhere
+        RangeTask.run(chunks.size(), 1, at -> true, (from, to) -> {
+            for (int c = from; c < to; c++) {
+                Chunk chunk = chunks.get(c);
+                for (int row = 0; row < chunk.count; row++) {
+                    action.value(chunk.entities[row]);
+                }
+            }
+        });
+    }
+
+}
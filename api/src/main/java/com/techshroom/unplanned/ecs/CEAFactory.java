@@ -33,6 +33,10 @@ public interface CEAFactory {
         return build(Arrays.asList(systems));
     }
 
-    CompEntAssoc build(Iterable<CSystem> systems);
+    default CompEntAssoc build(Iterable<CSystem> systems) {
+        return build(systems, SystemSchedulers.sequential());
+    }
+
+    CompEntAssoc build(Iterable<CSystem> systems, SystemScheduler.Factory scheduler);
 
 }
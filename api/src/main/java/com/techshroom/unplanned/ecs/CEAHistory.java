@@ -0,0 +1,417 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Records the last few ticks of a {@link CompEntAssoc} so it can be rewound,
+ * e.g. for rollback or replaying a desync.
+ *
+ * <p>
+ * Each tick is recorded as a delta: the old value of every field the first
+ * time it is set in the tick, plus the structural changes (entities created
+ * and removed, components attached and detached). Deltas are kept in ring
+ * buffers allocated up front, so memory is bounded by the entry capacity, and
+ * a tick that changes nothing records nothing. When the buffers fill up, the
+ * oldest ticks are dropped.
+ * </p>
+ *
+ * <p>
+ * Changes are grouped by the tick they lead into, so changes made between two
+ * calls to {@link CompEntAssoc#tick(long)} belong to the upcoming tick.
+ * {@link #rewind(long)} restores the state as it was right after the given
+ * tick, including entity IDs, so running the same ticks again with the same
+ * input re-simulates them exactly. New changes are recorded as usual after a
+ * rewind.
+ * </p>
+ */
+public final class CEAHistory {
+
+    private static final byte SET = 0;
+    private static final byte CREATE = 1;
+    private static final byte REMOVE = 2;
+    private static final byte ATTACH = 3;
+    private static final byte DETACH = 4;
+    private static final byte RESERVE = 5;
+    private static final byte RESERVE_RECYCLED = 6;
+    private static final byte COMMIT = 7;
+    private static final byte FREE = 8;
+
+    /**
+     * Starts recording the history of a CEA.
+     *
+     * @param assoc
+     *            - the CEA to record
+     * @param ticks
+     *            - the most ticks to keep
+     * @param entries
+     *            - the most changes to keep, across all ticks
+     * @return the history
+     */
+    public static CEAHistory record(CompEntAssoc assoc, int ticks, int entries) {
+        checkArgument(assoc instanceof AbstractCEA, "history needs an AbstractCEA, not %s", assoc.getClass());
+        checkArgument(ticks > 0, "must keep at least one tick");
+        checkArgument(entries > 0, "must keep at least one entry");
+        CEAHistory history = new CEAHistory((AbstractCEA) assoc, ticks, entries);
+        history.cea.setHistory(history);
+        return history;
+    }
+
+    private final AbstractCEA cea;
+    private final List<Component> components;
+    private final Map<Component, Integer> componentIndex = new HashMap<>();
+    private final List<ComponentField<?>> fields = new ArrayList<>();
+    private final Map<ComponentField<?>, Integer> fieldIndex = new HashMap<>();
+    /**
+     * The frame each field of each entity index was last recorded in, so only
+     * the first write of a tick is recorded.
+     */
+    private final int[][] stamps;
+    private final EntityAllocator.Journal journal = new EntityAllocator.Journal() {
+
+        @Override
+        public void reserved(int handle, boolean recycled) {
+            record(recycled ? RESERVE_RECYCLED : RESERVE, handle, 0);
+        }
+
+        @Override
+        public void committed(int handle) {
+            record(COMMIT, handle, 0);
+        }
+
+        @Override
+        public void freed(int handle) {
+            record(FREE, handle, 0);
+        }
+
+    };
+
+    // entry ring, indexed by sequence number modulo capacity
+    private final byte[] kinds;
+    private final int[] entities;
+    private final int[] args;
+    private final long[] values;
+    private final Object[] refs;
+    private long head;
+    private long tail;
+
+    // frame ring, one frame per tick with changes
+    private final long[] frameTicks;
+    private final long[] frameStarts;
+    private long firstFrame;
+    private long nextFrame;
+
+    private long currentTick = Long.MIN_VALUE;
+    private int stamp;
+    private boolean skipping;
+    private boolean undoing;
+    private long oldestTick;
+
+    private CEAHistory(AbstractCEA cea, int ticks, int entries) {
+        this.cea = cea;
+        this.components = Lists.newArrayList(cea.getRegisteredComponents());
+        for (Component c : components) {
+            componentIndex.put(c, componentIndex.size());
+            for (ComponentField<?> f : c.getFields().values()) {
+                fieldIndex.put(f, fields.size());
+                fields.add(f);
+            }
+        }
+        this.stamps = new int[fields.size()][0];
+        this.kinds = new byte[entries];
+        this.entities = new int[entries];
+        this.args = new int[entries];
+        this.values = new long[entries];
+        this.refs = new Object[entries];
+        this.frameTicks = new long[ticks];
+        this.frameStarts = new long[ticks];
+        this.oldestTick = cea.getTick();
+    }
+
+    EntityAllocator.Journal journal() {
+        return journal;
+    }
+
+    /**
+     * @return the earliest tick that can be rewound to
+     */
+    public synchronized long getOldestTick() {
+        return oldestTick;
+    }
+
+    private void beginFrame(long tick) {
+        if (nextFrame - firstFrame == frameTicks.length) {
+            dropOldestFrame();
+        }
+        int f = (int) (nextFrame % frameTicks.length);
+        frameTicks[f] = tick;
+        frameStarts[f] = head;
+        nextFrame++;
+        currentTick = tick;
+        skipping = false;
+        if (++stamp == 0) {
+            // never match the initial stamps after wrapping around
+            for (int[] s : stamps) {
+                Arrays.fill(s, 0);
+            }
+            stamp = 1;
+        }
+    }
+
+    private void dropOldestFrame() {
+        // the state before the dropped tick is lost
+        oldestTick = Math.max(oldestTick, frameTicks[(int) (firstFrame % frameTicks.length)]);
+        firstFrame++;
+        tail = firstFrame == nextFrame ? head : frameStarts[(int) (firstFrame % frameTicks.length)];
+    }
+
+    /**
+     * Starts a new frame if the tick changed, and makes room for an entry.
+     *
+     * @return {@code false} if the current tick can't be recorded
+     */
+    private boolean prepare() {
+        long tick = cea.changeTick();
+        if (tick != currentTick) {
+            beginFrame(tick);
+        }
+        while (!skipping && head - tail == kinds.length) {
+            if (nextFrame - firstFrame == 1) {
+                // the current tick alone is too big, stop recording it
+                skipping = true;
+            }
+            dropOldestFrame();
+        }
+        return !skipping;
+    }
+
+    private void append(byte kind, int entityId, int arg, long value, Object ref) {
+        int i = (int) (head % kinds.length);
+        kinds[i] = kind;
+        entities[i] = entityId;
+        args[i] = arg;
+        values[i] = value;
+        refs[i] = ref;
+        head++;
+    }
+
+    private boolean appendOldValue(int entityId, ComponentField<?> field) {
+        if (!prepare()) {
+            return false;
+        }
+        Object value = cea.get(entityId, field);
+        int f = fieldIndex.get(field);
+        if (value instanceof Boolean) {
+            append(SET, entityId, f, (Boolean) value ? 1 : 0, null);
+        } else if (value instanceof Number) {
+            append(SET, entityId, f, ((Number) value).longValue(), null);
+        } else {
+            append(SET, entityId, f, 0, value);
+        }
+        return true;
+    }
+
+    private synchronized void record(byte kind, int entityId, int arg) {
+        if (!undoing && prepare()) {
+            append(kind, entityId, arg, 0, null);
+        }
+    }
+
+    void changing(int entityId, ComponentField<?> field) {
+        if (undoing) {
+            return;
+        }
+        Integer f = fieldIndex.get(field);
+        if (f == null) {
+            return;
+        }
+        int index = EntityAllocator.index(entityId);
+        int[] s = stamps[f];
+        // already recorded this tick, the common case for hot fields
+        if (currentTick == cea.changeTick() && index < s.length && s[index] == stamp) {
+            return;
+        }
+        recordSet(entityId, f, field);
+    }
+
+    private synchronized void recordSet(int entityId, int f, ComponentField<?> field) {
+        if (undoing || !prepare()) {
+            return;
+        }
+        int index = EntityAllocator.index(entityId);
+        if (index >= stamps[f].length) {
+            stamps[f] = Arrays.copyOf(stamps[f], Math.max(index + 1, cea.getAllocator().capacity()));
+        }
+        if (stamps[f][index] == stamp) {
+            return;
+        }
+        stamps[f][index] = stamp;
+        appendOldValue(entityId, field);
+    }
+
+    void created(int entityId) {
+        record(CREATE, entityId, 0);
+    }
+
+    synchronized void removing(int entityId) {
+        if (undoing || !prepare()) {
+            return;
+        }
+        List<Component> had = new ArrayList<>();
+        for (Component c : components) {
+            if (cea.hasComponent(entityId, c)) {
+                had.add(c);
+                for (ComponentField<?> f : c.getFields().values()) {
+                    if (!appendOldValue(entityId, f)) {
+                        return;
+                    }
+                }
+            }
+        }
+        if (prepare()) {
+            append(REMOVE, entityId, 0, 0, had.toArray(new Component[had.size()]));
+        }
+    }
+
+    void attached(int entityId, Component component) {
+        record(ATTACH, entityId, componentIndex.get(component));
+    }
+
+    synchronized void detaching(int entityId, Component component) {
+        if (undoing || !prepare()) {
+            return;
+        }
+        for (ComponentField<?> f : component.getFields().values()) {
+            if (!appendOldValue(entityId, f)) {
+                return;
+            }
+        }
+        if (prepare()) {
+            append(DETACH, entityId, componentIndex.get(component), 0, null);
+        }
+    }
+
+    /**
+     * Rewinds the CEA to the state right after a tick. Pending commands must
+     * be played back first. Observers are not notified of the undone changes.
+     *
+     * @param tick
+     *            - the tick to rewind to, between {@link #getOldestTick()} and
+     *            the current tick
+     */
+    public synchronized void rewind(long tick) {
+        checkArgument(tick >= oldestTick && tick <= cea.getTick(), "can only rewind to ticks %s to %s, not %s",
+                oldestTick, cea.getTick(), tick);
+        checkState(cea.changeTick() > cea.getTick(), "cannot rewind during a tick");
+        checkState(cea.commands().isEmpty(), "commands must be played back before rewinding");
+        undoing = true;
+        try {
+            cea.restoreTick(tick);
+            while (nextFrame > firstFrame) {
+                int f = (int) ((nextFrame - 1) % frameTicks.length);
+                if (frameTicks[f] <= tick) {
+                    break;
+                }
+                while (head > frameStarts[f]) {
+                    head--;
+                    undo((int) (head % kinds.length));
+                }
+                nextFrame--;
+            }
+            currentTick = Long.MIN_VALUE;
+            skipping = false;
+        } finally {
+            undoing = false;
+        }
+    }
+
+    private void undo(int i) {
+        int entityId = entities[i];
+        EntityAllocator allocator = cea.getAllocator();
+        switch (kinds[i]) {
+            case SET:
+                @SuppressWarnings("unchecked")
+                ComponentField<Object> field = (ComponentField<Object>) fields.get(args[i]);
+                cea.set(entityId, field, decode(field.getType(), values[i], refs[i]));
+                break;
+            case CREATE:
+                cea.undoCreate(entityId);
+                break;
+            case REMOVE:
+                cea.undoRemove(entityId, Arrays.asList((Component[]) refs[i]));
+                break;
+            case ATTACH:
+                cea.undoAttach(entityId, components.get(args[i]));
+                break;
+            case DETACH:
+                cea.undoDetach(entityId, components.get(args[i]));
+                break;
+            case RESERVE:
+            case RESERVE_RECYCLED:
+                allocator.undoReserve(entityId, kinds[i] == RESERVE_RECYCLED);
+                break;
+            case COMMIT:
+                allocator.undoCommit(entityId);
+                break;
+            case FREE:
+                allocator.undoFree(entityId);
+                break;
+            default:
+                throw new IllegalStateException("unknown entry kind " + kinds[i]);
+        }
+        refs[i] = null;
+    }
+
+    private static Object decode(CFType<?> type, long value, Object ref) {
+        if (type == CFType.BOOLEAN) {
+            return value != 0;
+        }
+        if (type == CFType.BYTE) {
+            return (byte) value;
+        }
+        if (type == CFType.SHORT) {
+            return (short) value;
+        }
+        if (type == CFType.INTEGER) {
+            return (int) value;
+        }
+        if (type == CFType.LONG) {
+            return value;
+        }
+        return ref;
+    }
+
+}
@@ -0,0 +1,483 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.eclipse.collections.api.list.primitive.MutableIntList;
+import org.eclipse.collections.impl.factory.primitive.IntLists;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Binary snapshots of a {@link CompEntAssoc}.
+ *
+ * <p>
+ * Components and fields are stored by {@link Component#getId()} and
+ * {@link ComponentField#getId()}, and field values are laid out as one
+ * column per field, so restoring memory-maps the file and copies each
+ * column in bulk. Components and fields that are unknown when restoring are
+ * skipped, and fields missing from the snapshot keep their default value,
+ * so snapshots stay readable after a component gains or loses fields.
+ * </p>
+ *
+ * <p>
+ * Entity IDs are preserved, so fields referring to other entities are still
+ * valid after a restore.
+ * </p>
+ */
+public final class CEASnapshots {
+
+    // layout, all big-endian:
+    // magic, version, tick
+    // allocator: index count, generation per index, live count, live handles
+    // component count, then per component:
+    // - id, section length, member count, member positions, field count
+    // - per field: id, type name, data length, one value per member
+    private static final int MAGIC = 0x55445353;
+    // 2: handles have 21 index bits instead of 22
+    private static final int VERSION = 2;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private CEASnapshots() {
+    }
+
+    private static AbstractCEA cea(CompEntAssoc assoc) {
+        checkArgument(assoc instanceof AbstractCEA, "snapshots need an AbstractCEA, not %s", assoc.getClass());
+        return (AbstractCEA) assoc;
+    }
+
+    /**
+     * Writes a snapshot of all entities. Pending commands are not included.
+     *
+     * @param assoc
+     *            - the CEA to snapshot
+     * @param file
+     *            - the file to write, replaced if it exists
+     */
+    public static void write(CompEntAssoc assoc, Path file) throws IOException {
+        AbstractCEA cea = cea(assoc);
+        EntityAllocator allocator = cea.getAllocator();
+        int capacity = allocator.capacity();
+        int[] generations = new int[capacity];
+        int[] live = new int[allocator.size()];
+        int[] position = new int[capacity];
+        int count = 0;
+        for (int index = 1; index < capacity; index++) {
+            generations[index] = allocator.generationAt(index);
+            int handle = allocator.handleAt(index);
+            if (handle != 0) {
+                position[index] = count;
+                live[count++] = handle;
+            }
+        }
+        List<Component> components = Lists.newArrayList(cea.getRegisteredComponents());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Sink out = new Sink(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putLong(assoc.getTick());
+            out.putInt(capacity);
+            out.putInts(generations);
+            out.putInt(live.length);
+            out.putInts(live);
+            out.putInt(components.size());
+            for (Component c : components) {
+                writeComponent(out, cea, c, position, live);
+            }
+            out.flush();
+        }
+    }
+
+    private static void writeComponent(Sink out, AbstractCEA cea, Component component, int[] position, int[] live)
+            throws IOException {
+        int[] members = cea.getEntities(component).toArray();
+        for (int i = 0; i < members.length; i++) {
+            members[i] = position[EntityAllocator.index(members[i])];
+        }
+        Arrays.sort(members);
+        int[] entityIds = new int[members.length];
+        for (int i = 0; i < members.length; i++) {
+            entityIds[i] = live[members[i]];
+        }
+        List<ComponentField<?>> fields = new ArrayList<>(component.getFields().values());
+        List<Object> values = new ArrayList<>(fields.size());
+        long length = 4 + 4L * members.length + 4;
+        for (ComponentField<?> f : fields) {
+            Object v = cea.readField(f, entityIds);
+            if (f.getType() == CFType.STRING) {
+                v = encode((String[]) v);
+            }
+            values.add(v);
+            length += 16 + 4 + utf8(f.getType().name()).length + 8 + dataLength(f.getType(), v);
+        }
+        out.putUUID(component.getId());
+        out.putLong(length);
+        out.putInt(members.length);
+        out.putInts(members);
+        out.putInt(fields.size());
+        for (int i = 0; i < fields.size(); i++) {
+            ComponentField<?> f = fields.get(i);
+            out.putUUID(f.getId());
+            byte[] type = utf8(f.getType().name());
+            out.putInt(type.length);
+            out.putBytes(type);
+            out.putLong(dataLength(f.getType(), values.get(i)));
+            putValues(out, f.getType(), values.get(i));
+        }
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[][] encode(String[] strings) {
+        byte[][] encoded = new byte[strings.length][];
+        for (int i = 0; i < strings.length; i++) {
+            encoded[i] = utf8(strings[i]);
+        }
+        return encoded;
+    }
+
+    private static long dataLength(CFType<?> type, Object values) {
+        if (type == CFType.STRING) {
+            long length = 0;
+            for (byte[] s : (byte[][]) values) {
+                length += 4 + s.length;
+            }
+            return length;
+        }
+        return (long) Array.getLength(values) * valueSize(type);
+    }
+
+    private static int valueSize(CFType<?> type) {
+        if (type == CFType.BOOLEAN || type == CFType.BYTE) {
+            return 1;
+        }
+        if (type == CFType.SHORT) {
+            return 2;
+        }
+        if (type == CFType.INTEGER) {
+            return 4;
+        }
+        if (type == CFType.LONG) {
+            return 8;
+        }
+        throw new IllegalArgumentException("No fixed size for " + type);
+    }
+
+    private static void putValues(Sink out, CFType<?> type, Object values) throws IOException {
+        if (type == CFType.BOOLEAN) {
+            boolean[] in = (boolean[]) values;
+            byte[] bytes = new byte[in.length];
+            for (int i = 0; i < in.length; i++) {
+                bytes[i] = (byte) (in[i] ? 1 : 0);
+            }
+            out.putBytes(bytes);
+        } else if (type == CFType.BYTE) {
+            out.putBytes((byte[]) values);
+        } else if (type == CFType.SHORT) {
+            out.putShorts((short[]) values);
+        } else if (type == CFType.INTEGER) {
+            out.putInts((int[]) values);
+        } else if (type == CFType.LONG) {
+            out.putLongs((long[]) values);
+        } else if (type == CFType.STRING) {
+            for (byte[] s : (byte[][]) values) {
+                out.putInt(s.length);
+                out.putBytes(s);
+            }
+        } else {
+            throw new IllegalArgumentException("Cannot snapshot " + type);
+        }
+    }
+
+    /**
+     * Restores a snapshot into a new CEA, one that has never had an entity.
+     * The CEA must be built with systems covering the components in the
+     * snapshot, other components are skipped.
+     *
+     * @param file
+     *            - the snapshot to read
+     * @param assoc
+     *            - the CEA to restore into
+     */
+    public static void read(Path file, CompEntAssoc assoc) throws IOException {
+        AbstractCEA cea = cea(assoc);
+        checkState(cea.getAllocator().capacity() == 1, "snapshots can only be restored into a new CEA");
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            restore(file, cea, in);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("truncated snapshot " + file, e);
+        }
+    }
+
+    private static final class PendingField {
+
+        private final ComponentField<?> field;
+        private final int[] entityIds;
+        private final Object values;
+
+        PendingField(ComponentField<?> field, int[] entityIds, Object values) {
+            this.field = field;
+            this.entityIds = entityIds;
+            this.values = values;
+        }
+
+    }
+
+    private static void restore(Path file, AbstractCEA cea, ByteBuffer in) throws IOException {
+        if (in.getInt() != MAGIC) {
+            throw new IOException(file + " is not a snapshot");
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported snapshot version " + version + " in " + file);
+        }
+        long tick = in.getLong();
+        int[] generations = getInts(in, in.getInt());
+        int[] live = getInts(in, in.getInt());
+        Map<UUID, Component> known = new HashMap<>();
+        for (Component c : cea.getRegisteredComponents()) {
+            known.put(c.getId(), c);
+        }
+        List<List<Component>> componentsOf = new ArrayList<>(live.length);
+        for (int i = 0; i < live.length; i++) {
+            componentsOf.add(new ArrayList<>(2));
+        }
+        List<PendingField> pending = new ArrayList<>();
+        int componentCount = in.getInt();
+        for (int i = 0; i < componentCount; i++) {
+            UUID id = getUUID(in);
+            long length = in.getLong();
+            int end = Math.toIntExact(in.position() + length);
+            Component c = known.get(id);
+            if (c != null) {
+                readComponent(in, c, live, componentsOf, pending);
+            }
+            in.position(end);
+        }
+
+        cea.getAllocator().restore(generations, live);
+        // components are read in the same order for every entity, so equal
+        // lists mean equal sets, and each set can be created in one go
+        Map<List<Component>, MutableIntList> byComponents = new LinkedHashMap<>();
+        for (int i = 0; i < live.length; i++) {
+            byComponents.computeIfAbsent(componentsOf.get(i), k -> IntLists.mutable.empty()).add(live[i]);
+        }
+        byComponents.forEach((components, ids) -> cea.restoreEntities(ids.toArray(), components));
+        for (PendingField p : pending) {
+            cea.writeField(p.field, p.entityIds, p.values);
+        }
+        cea.restoreTick(tick);
+    }
+
+    private static void readComponent(ByteBuffer in, Component component, int[] live,
+            List<List<Component>> componentsOf, List<PendingField> pending) {
+        int[] members = getInts(in, in.getInt());
+        int[] entityIds = new int[members.length];
+        for (int i = 0; i < members.length; i++) {
+            entityIds[i] = live[members[i]];
+            componentsOf.get(members[i]).add(component);
+        }
+        Map<UUID, ComponentField<?>> fields = new HashMap<>();
+        for (ComponentField<?> f : component.getFields().values()) {
+            fields.put(f.getId(), f);
+        }
+        int fieldCount = in.getInt();
+        for (int i = 0; i < fieldCount; i++) {
+            UUID id = getUUID(in);
+            byte[] type = new byte[in.getInt()];
+            in.get(type);
+            long length = in.getLong();
+            int end = Math.toIntExact(in.position() + length);
+            ComponentField<?> f = fields.get(id);
+            // a field whose type changed is left at its default
+            if (f != null && f.getType().name().equals(new String(type, StandardCharsets.UTF_8))) {
+                pending.add(new PendingField(f, entityIds, getValues(in, f.getType(), members.length)));
+            }
+            in.position(end);
+        }
+    }
+
+    private static UUID getUUID(ByteBuffer in) {
+        long most = in.getLong();
+        return new UUID(most, in.getLong());
+    }
+
+    private static int[] getInts(ByteBuffer in, int count) {
+        int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + count * 4);
+        return values;
+    }
+
+    private static Object getValues(ByteBuffer in, CFType<?> type, int count) {
+        if (type == CFType.BOOLEAN) {
+            boolean[] values = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = in.get() != 0;
+            }
+            return values;
+        }
+        if (type == CFType.BYTE) {
+            byte[] values = new byte[count];
+            in.get(values);
+            return values;
+        }
+        if (type == CFType.SHORT) {
+            short[] values = new short[count];
+            in.asShortBuffer().get(values);
+            in.position(in.position() + count * 2);
+            return values;
+        }
+        if (type == CFType.INTEGER) {
+            return getInts(in, count);
+        }
+        if (type == CFType.LONG) {
+            long[] values = new long[count];
+            in.asLongBuffer().get(values);
+            in.position(in.position() + count * 8);
+            return values;
+        }
+        if (type == CFType.STRING) {
+            String[] values = new String[count];
+            for (int i = 0; i < count; i++) {
+                byte[] bytes = new byte[in.getInt()];
+                in.get(bytes);
+                values[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return values;
+        }
+        throw new IllegalArgumentException("Cannot restore " + type);
+    }
+
+    /**
+     * Buffered writer for the big-endian layout read back through a mapped
+     * {@link ByteBuffer}.
+     */
+    private static final class Sink {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Sink(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putUUID(UUID value) throws IOException {
+            putLong(value.getMostSignificantBits());
+            putLong(value.getLeastSignificantBits());
+        }
+
+        void putBytes(byte[] values) throws IOException {
+            for (int off = 0; off < values.length;) {
+                ensure(1);
+                int n = Math.min(buffer.remaining(), values.length - off);
+                buffer.put(values, off, n);
+                off += n;
+            }
+        }
+
+        void putShorts(short[] values) throws IOException {
+            for (int off = 0; off < values.length;) {
+                ensure(2);
+                int n = Math.min(buffer.remaining() / 2, values.length - off);
+                buffer.asShortBuffer().put(values, off, n);
+                buffer.position(buffer.position() + n * 2);
+                off += n;
+            }
+        }
+
+        void putInts(int[] values) throws IOException {
+            for (int off = 0; off < values.length;) {
+                ensure(4);
+                int n = Math.min(buffer.remaining() / 4, values.length - off);
+                buffer.asIntBuffer().put(values, off, n);
+                buffer.position(buffer.position() + n * 4);
+                off += n;
+            }
+        }
+
+        void putLongs(long[] values) throws IOException {
+            for (int off = 0; off < values.length;) {
+                ensure(8);
+                int n = Math.min(buffer.remaining() / 8, values.length - off);
+                buffer.asLongBuffer().put(values, off, n);
+                buffer.position(buffer.position() + n * 8);
+                off += n;
+            }
+        }
+
+    }
+
+}
@@ -34,10 +34,60 @@ public interface CSystem {
 
     Set<Component> getComponents();
 
+    /**
+     * The components this system reads. Used by {@link SystemScheduler} to
+     * find systems that can run at the same time.
+     * 
+     * @return the components read by this system
+     */
+    default Set<Component> getReadComponents() {
+        return getComponents();
+    }
+
+    /**
+     * The components this system writes.
+     * 
+     * @return the components written by this system
+     */
+    default Set<Component> getWriteComponents() {
+        return getComponents();
+    }
+
+    /**
+     * Exclusive systems never run alongside another system. Systems that
+     * add or remove entities or components, or touch components they don't
+     * declare, must be exclusive.
+     * 
+     * @return {@code true} if this system must run on its own
+     */
+    default boolean isExclusive() {
+        return true;
+    }
+
     void process(int entityId, CompEntAssoc assoc, long nanoDiff);
 
+    /**
+     * Processes every entity that has all of {@link #getComponents()}. The
+     * CEA keeps the matching entities cached for each system, so this costs
+     * no more than the iteration itself.
+     * 
+     * <p>
+     * Overrides that process entities themselves should report how many
+     * through {@link SystemProfiler#countProcessed(int)}.
+     * </p>
+     * 
+     * @param assoc
+     *            - the CEA to process
+     * @param nanoDiff
+     *            - nanoseconds since last tick
+     */
     default void processList(CompEntAssoc assoc, long nanoDiff) {
-        assoc.getEntities(getComponents()).forEach(e -> process(e, assoc, nanoDiff));
+        int[] processed = { 0 };
+        assoc.forEachEntity(getComponents(), e -> {
+            process(e, assoc, nanoDiff);
+            processed[0]++;
+        });
+        SystemProfiler.countProcessed(processed[0]);
     }
 
 }
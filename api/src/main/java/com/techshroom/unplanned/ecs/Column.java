@@ -0,0 +1,508 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import java.util.Arrays;
+
+/**
+ * Dense storage for the values of a single {@link ComponentField}, indexed by
+ * entity slot. Also tracks which slots have the owning component attached.
+ */
+abstract class Column {
+
+    static Column create(CFType<?> type, int capacity) {
+        if (type == CFType.BOOLEAN) {
+            return new BooleanColumn(capacity);
+        }
+        if (type == CFType.BYTE) {
+            return new ByteColumn(capacity);
+        }
+        if (type == CFType.SHORT) {
+            return new ShortColumn(capacity);
+        }
+        if (type == CFType.INTEGER) {
+            return new IntColumn(capacity);
+        }
+        if (type == CFType.LONG) {
+            return new LongColumn(capacity);
+        }
+        if (type == CFType.STRING) {
+            return new StringColumn(capacity);
+        }
+        throw new IllegalArgumentException("No column storage for " + type);
+    }
+
+    static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    static boolean getBit(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    static void setBit(long[] bits, int index, boolean value) {
+        if (value) {
+            bits[index >>> 6] |= 1L << index;
+        } else {
+            bits[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    private long[] attached;
+
+    Column(int capacity) {
+        this.attached = new long[words(capacity)];
+    }
+
+    final boolean isAttached(int slot) {
+        return getBit(attached, slot);
+    }
+
+    final void attach(int slot) {
+        setBit(attached, slot, true);
+        reset(slot);
+    }
+
+    /**
+     * Attaches a slot with the value in slot {@code from} of another column
+     * of the same type, instead of the default.
+     */
+    final void attach(int slot, Column src, int from) {
+        setBit(attached, slot, true);
+        copyValue(src, from, slot);
+    }
+
+    final void detach(int slot) {
+        setBit(attached, slot, false);
+        release(slot);
+    }
+
+    final void grow(int capacity) {
+        attached = Arrays.copyOf(attached, words(capacity));
+        growValues(capacity);
+    }
+
+    /**
+     * Copies the value in slot {@code from} of another column of the same
+     * type into slot {@code to} of this column.
+     */
+    final void copyFrom(Column src, int from, int to) {
+        copyValue(src, from, to);
+    }
+
+    abstract Object get(int slot);
+
+    abstract void set(int slot, Object value);
+
+    /**
+     * Writes the default value for the field type into a slot.
+     */
+    abstract void reset(int slot);
+
+    /**
+     * Drops any references held by a slot.
+     */
+    void release(int slot) {
+    }
+
+    /**
+     * @return a new array of the column's unwrapped type, e.g. {@code int[]}
+     *         for an {@link IntColumn}
+     */
+    abstract Object newArray(int length);
+
+    /**
+     * Copies the value in a slot into an array from {@link #newArray(int)}.
+     */
+    abstract void read(int slot, Object array, int index);
+
+    /**
+     * Copies a value from an array from {@link #newArray(int)} into a slot.
+     */
+    abstract void write(int slot, Object array, int index);
+
+    abstract void growValues(int capacity);
+
+    abstract void copyValue(Column src, int from, int to);
+
+    static final class BooleanColumn extends Column {
+
+        private final boolean defaultValue = CFType.BOOLEAN.defaultValue;
+        private long[] values;
+
+        BooleanColumn(int capacity) {
+            super(capacity);
+            this.values = new long[words(capacity)];
+        }
+
+        boolean getBoolean(int slot) {
+            return getBit(values, slot);
+        }
+
+        void setBoolean(int slot, boolean value) {
+            setBit(values, slot, value);
+        }
+
+        @Override
+        Object get(int slot) {
+            return getBoolean(slot);
+        }
+
+        @Override
+        void set(int slot, Object value) {
+            setBoolean(slot, (Boolean) value);
+        }
+
+        @Override
+        void reset(int slot) {
+            setBoolean(slot, defaultValue);
+        }
+
+        @Override
+        Object newArray(int length) {
+            return new boolean[length];
+        }
+
+        @Override
+        void read(int slot, Object array, int index) {
+            ((boolean[]) array)[index] = getBoolean(slot);
+        }
+
+        @Override
+        void write(int slot, Object array, int index) {
+            setBoolean(slot, ((boolean[]) array)[index]);
+        }
+
+        @Override
+        void growValues(int capacity) {
+            values = Arrays.copyOf(values, words(capacity));
+        }
+
+        @Override
+        void copyValue(Column src, int from, int to) {
+            setBoolean(to, ((BooleanColumn) src).getBoolean(from));
+        }
+
+    }
+
+    static final class ByteColumn extends Column {
+
+        private final byte defaultValue = CFType.BYTE.defaultValue;
+        private byte[] values;
+
+        ByteColumn(int capacity) {
+            super(capacity);
+            this.values = new byte[capacity];
+        }
+
+        byte getByte(int slot) {
+            return values[slot];
+        }
+
+        void setByte(int slot, byte value) {
+            values[slot] = value;
+        }
+
+        @Override
+        Object get(int slot) {
+            return values[slot];
+        }
+
+        @Override
+        void set(int slot, Object value) {
+            values[slot] = (Byte) value;
+        }
+
+        @Override
+        void reset(int slot) {
+            values[slot] = defaultValue;
+        }
+
+        @Override
+        Object newArray(int length) {
+            return new byte[length];
+        }
+
+        @Override
+        void read(int slot, Object array, int index) {
+            ((byte[]) array)[index] = values[slot];
+        }
+
+        @Override
+        void write(int slot, Object array, int index) {
+            values[slot] = ((byte[]) array)[index];
+        }
+
+        @Override
+        void growValues(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void copyValue(Column src, int from, int to) {
+            values[to] = ((ByteColumn) src).values[from];
+        }
+
+    }
+
+    static final class ShortColumn extends Column {
+
+        private final short defaultValue = CFType.SHORT.defaultValue;
+        private short[] values;
+
+        ShortColumn(int capacity) {
+            super(capacity);
+            this.values = new short[capacity];
+        }
+
+        short getShort(int slot) {
+            return values[slot];
+        }
+
+        void setShort(int slot, short value) {
+            values[slot] = value;
+        }
+
+        @Override
+        Object get(int slot) {
+            return values[slot];
+        }
+
+        @Override
+        void set(int slot, Object value) {
+            values[slot] = (Short) value;
+        }
+
+        @Override
+        void reset(int slot) {
+            values[slot] = defaultValue;
+        }
+
+        @Override
+        Object newArray(int length) {
+            return new short[length];
+        }
+
+        @Override
+        void read(int slot, Object array, int index) {
+            ((short[]) array)[index] = values[slot];
+        }
+
+        @Override
+        void write(int slot, Object array, int index) {
+            values[slot] = ((short[]) array)[index];
+        }
+
+        @Override
+        void growValues(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void copyValue(Column src, int from, int to) {
+            values[to] = ((ShortColumn) src).values[from];
+        }
+
+    }
+
+    static final class IntColumn extends Column {
+
+        private final int defaultValue = CFType.INTEGER.defaultValue;
+        private int[] values;
+
+        IntColumn(int capacity) {
+            super(capacity);
+            this.values = new int[capacity];
+        }
+
+        int getInt(int slot) {
+            return values[slot];
+        }
+
+        void setInt(int slot, int value) {
+            values[slot] = value;
+        }
+
+        @Override
+        Object get(int slot) {
+            return values[slot];
+        }
+
+        @Override
+        void set(int slot, Object value) {
+            values[slot] = (Integer) value;
+        }
+
+        @Override
+        void reset(int slot) {
+            values[slot] = defaultValue;
+        }
+
+        @Override
+        Object newArray(int length) {
+            return new int[length];
+        }
+
+        @Override
+        void read(int slot, Object array, int index) {
+            ((int[]) array)[index] = values[slot];
+        }
+
+        @Override
+        void write(int slot, Object array, int index) {
+            values[slot] = ((int[]) array)[index];
+        }
+
+        @Override
+        void growValues(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void copyValue(Column src, int from, int to) {
+            values[to] = ((IntColumn) src).values[from];
+        }
+
+    }
+
+    static final class LongColumn extends Column {
+
+        private final long defaultValue = CFType.LONG.defaultValue;
+        private long[] values;
+
+        LongColumn(int capacity) {
+            super(capacity);
+            this.values = new long[capacity];
+        }
+
+        long getLong(int slot) {
+            return values[slot];
+        }
+
+        void setLong(int slot, long value) {
+            values[slot] = value;
+        }
+
+        @Override
+        Object get(int slot) {
+            return values[slot];
+        }
+
+        @Override
+        void set(int slot, Object value) {
+            values[slot] = (Long) value;
+        }
+
+        @Override
+        void reset(int slot) {
+            values[slot] = defaultValue;
+        }
+
+        @Override
+        Object newArray(int length) {
+            return new long[length];
+        }
+
+        @Override
+        void read(int slot, Object array, int index) {
+            ((long[]) array)[index] = values[slot];
+        }
+
+        @Override
+        void write(int slot, Object array, int index) {
+            values[slot] = ((long[]) array)[index];
+        }
+
+        @Override
+        void growValues(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void copyValue(Column src, int from, int to) {
+            values[to] = ((LongColumn) src).values[from];
+        }
+
+    }
+
+    static final class StringColumn extends Column {
+
+        private final String defaultValue = CFType.STRING.defaultValue;
+        private String[] values;
+
+        StringColumn(int capacity) {
+            super(capacity);
+            this.values = new String[capacity];
+        }
+
+        @Override
+        Object get(int slot) {
+            return values[slot];
+        }
+
+        @Override
+        void set(int slot, Object value) {
+            values[slot] = (String) value;
+        }
+
+        @Override
+        void reset(int slot) {
+            values[slot] = defaultValue;
+        }
+
+        @Override
+        void release(int slot) {
+            values[slot] = null;
+        }
+
+        @Override
+        Object newArray(int length) {
+            return new String[length];
+        }
+
+        @Override
+        void read(int slot, Object array, int index) {
+            ((String[]) array)[index] = values[slot];
+        }
+
+        @Override
+        void write(int slot, Object array, int index) {
+            values[slot] = ((String[]) array)[index];
+        }
+
+        @Override
+        void growValues(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void copyValue(Column src, int from, int to) {
+            values[to] = ((StringColumn) src).values[from];
+        }
+
+    }
+
+}
@@ -0,0 +1,303 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.collections.api.block.procedure.primitive.IntProcedure;
+import org.eclipse.collections.api.map.ImmutableMap;
+import org.eclipse.collections.api.map.MutableMap;
+import org.eclipse.collections.impl.factory.Maps;
+
+import com.techshroom.unplanned.ecs.Column.BooleanColumn;
+import com.techshroom.unplanned.ecs.Column.ByteColumn;
+import com.techshroom.unplanned.ecs.Column.IntColumn;
+import com.techshroom.unplanned.ecs.Column.LongColumn;
+import com.techshroom.unplanned.ecs.Column.ShortColumn;
+
+/**
+ * Struct-of-arrays association table. Every {@link ComponentField} is stored
+ * as a dense primitive column, indexed directly by the entity's allocator
+ * index. Freed indices are recycled by the allocator, so the columns stay
+ * dense.
+ */
+public class ColumnarCEA extends AbstractCEA {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final Column[] NO_COLUMNS = new Column[0];
+    private static final int PARALLEL_GRAIN = 1024;
+
+    private final ImmutableMap<ComponentField<?>, Column> columns;
+    private final ImmutableMap<Component, Column[]> componentColumns;
+    private final Column[] allColumns;
+    private int capacity = INITIAL_CAPACITY;
+
+    ColumnarCEA(Iterable<CSystem> csys, SystemScheduler.Factory scheduler) {
+        super(csys, scheduler);
+        MutableMap<ComponentField<?>, Column> cols = Maps.mutable.empty();
+        MutableMap<Component, Column[]> compCols = Maps.mutable.empty();
+        for (Component c : getRegisteredComponents()) {
+            Column[] forComp = c.getFields().values().stream()
+                    .map(f -> cols.computeIfAbsent(f, k -> Column.create(k.getType(), INITIAL_CAPACITY)))
+                    .toArray(Column[]::new);
+            compCols.put(c, forComp);
+        }
+        this.columns = cols.toImmutable();
+        this.componentColumns = compCols.toImmutable();
+        this.allColumns = cols.values().toArray(NO_COLUMNS);
+    }
+
+    private int slot(int entityId) {
+        checkState(hasEntity(entityId), "entity %s is not associated yet!", entityId);
+        return EntityAllocator.index(entityId);
+    }
+
+    private Column column(int entityId, int slot, ComponentField<?> field) {
+        Column col = columns.get(field);
+        checkState(col != null && col.isAttached(slot), "field %s is not associated with entity %s", field, entityId);
+        return col;
+    }
+
+    private Column writeColumn(int entityId, int slot, ComponentField<?> field) {
+        Column col = column(entityId, slot, field);
+        changed(entityId, field);
+        return col;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= capacity) {
+            return;
+        }
+        capacity = Math.max(required, capacity * 2);
+        for (Column col : allColumns) {
+            col.grow(capacity);
+        }
+    }
+
+    @Override
+    protected void createEntity(int entityId, Iterable<Component> components) {
+        ensureCapacity(getAllocator().capacity());
+        for (Component c : components) {
+            attachComponent(entityId, c);
+        }
+    }
+
+    @Override
+    protected void createEntities(int[] entityIds, Iterable<Component> components) {
+        ensureCapacity(getAllocator().capacity());
+        // column by column, so each column's arrays are written in one pass
+        for (Component c : components) {
+            for (Column col : componentColumns.get(c)) {
+                for (int entityId : entityIds) {
+                    col.attach(EntityAllocator.index(entityId));
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void createEntities(int[] entityIds, Prefab prefab) {
+        ensureCapacity(getAllocator().capacity());
+        List<ComponentField<?>> fields = prefab.getFields();
+        for (int i = 0; i < fields.size(); i++) {
+            Column col = bulkColumn(fields.get(i));
+            Column src = prefab.getColumn(i);
+            for (int entityId : entityIds) {
+                col.attach(EntityAllocator.index(entityId), src, 0);
+            }
+        }
+    }
+
+    @Override
+    protected void attachComponent(int entityId, Component component) {
+        int slot = slot(entityId);
+        for (Column col : componentColumns.get(component)) {
+            col.attach(slot);
+        }
+    }
+
+    @Override
+    protected void detachComponent(int entityId, Component component) {
+        int slot = slot(entityId);
+        for (Column col : componentColumns.get(component)) {
+            col.detach(slot);
+        }
+    }
+
+    @Override
+    protected void destroyEntity(int entityId) {
+        int slot = slot(entityId);
+        for (Column col : allColumns) {
+            col.detach(slot);
+        }
+    }
+
+    private Column bulkColumn(ComponentField<?> field) {
+        Column col = columns.get(field);
+        checkState(col != null, "field %s is not part of this CEA", field);
+        return col;
+    }
+
+    @Override
+    protected Object readField(ComponentField<?> field, int[] entityIds) {
+        Column col = bulkColumn(field);
+        Object values = col.newArray(entityIds.length);
+        for (int i = 0; i < entityIds.length; i++) {
+            int slot = slot(entityIds[i]);
+            checkState(col.isAttached(slot), "field %s is not associated with entity %s", field, entityIds[i]);
+            col.read(slot, values, i);
+        }
+        return values;
+    }
+
+    @Override
+    protected void writeField(ComponentField<?> field, int[] entityIds, Object values) {
+        Column col = bulkColumn(field);
+        for (int i = 0; i < entityIds.length; i++) {
+            int slot = slot(entityIds[i]);
+            checkState(col.isAttached(slot), "field %s is not associated with entity %s", field, entityIds[i]);
+            changed(entityIds[i], field);
+            col.write(slot, values, i);
+        }
+    }
+
+    @Override
+    FieldBinding bind(ComponentField<?> field) {
+        Column col = bulkColumn(field);
+        return new FieldBinding() {
+
+            @Override
+            public Column column(int entityId) {
+                int slot = slot(entityId);
+                checkState(col.isAttached(slot), "field %s is not associated with entity %s", field, entityId);
+                return col;
+            }
+
+            @Override
+            public int row(int entityId) {
+                return EntityAllocator.index(entityId);
+            }
+        };
+    }
+
+    @Override
+    public void forEachEntityParallel(Iterable<Component> components, IntProcedure action) {
+        int[] indices = getEntities(components).toArray();
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = EntityAllocator.index(indices[i]);
+        }
+        Arrays.sort(indices);
+        EntityAllocator allocator = getAllocator();
+        // slots sharing a word of a boolean column must stay on one thread
+        RangeTask.run(indices.length, PARALLEL_GRAIN,
+                at -> (indices[at - 1] >>> 6) != (indices[at] >>> 6),
+                (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        action.value(allocator.handleAt(indices[i]));
+                    }
+                });
+    }
+
+    @Override
+    public <T> void set(int entityId, ComponentField<T> field, T value) {
+        checkArgument(value != null, "values may not be null");
+        int slot = slot(entityId);
+        writeColumn(entityId, slot, field).set(slot, value);
+    }
+
+    @Override
+    public <T> T get(int entityId, ComponentField<T> field) {
+        int slot = slot(entityId);
+        @SuppressWarnings("unchecked")
+        T val = (T) column(entityId, slot, field).get(slot);
+        return val;
+    }
+
+    @Override
+    public boolean getBoolean(int entityId, BooleanComponentField field) {
+        int slot = slot(entityId);
+        return ((BooleanColumn) column(entityId, slot, field)).getBoolean(slot);
+    }
+
+    @Override
+    public void setBoolean(int entityId, BooleanComponentField field, boolean value) {
+        int slot = slot(entityId);
+        ((BooleanColumn) writeColumn(entityId, slot, field)).setBoolean(slot, value);
+    }
+
+    @Override
+    public byte getByte(int entityId, ByteComponentField field) {
+        int slot = slot(entityId);
+        return ((ByteColumn) column(entityId, slot, field)).getByte(slot);
+    }
+
+    @Override
+    public void setByte(int entityId, ByteComponentField field, byte value) {
+        int slot = slot(entityId);
+        ((ByteColumn) writeColumn(entityId, slot, field)).setByte(slot, value);
+    }
+
+    @Override
+    public short getShort(int entityId, ShortComponentField field) {
+        int slot = slot(entityId);
+        return ((ShortColumn) column(entityId, slot, field)).getShort(slot);
+    }
+
+    @Override
+    public void setShort(int entityId, ShortComponentField field, short value) {
+        int slot = slot(entityId);
+        ((ShortColumn) writeColumn(entityId, slot, field)).setShort(slot, value);
+    }
+
+    @Override
+    public int getInt(int entityId, IntComponentField field) {
+        int slot = slot(entityId);
+        return ((IntColumn) column(entityId, slot, field)).getInt(slot);
+    }
+
+    @Override
+    public void setInt(int entityId, IntComponentField field, int value) {
+        int slot = slot(entityId);
+        ((IntColumn) writeColumn(entityId, slot, field)).setInt(slot, value);
+    }
+
+    @Override
+    public long getLong(int entityId, LongComponentField field) {
+        int slot = slot(entityId);
+        return ((LongColumn) column(entityId, slot, field)).getLong(slot);
+    }
+
+    @Override
+    public void setLong(int entityId, LongComponentField field, long value) {
+        int slot = slot(entityId);
+        ((LongColumn) writeColumn(entityId, slot, field)).setLong(slot, value);
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Records structural changes to a {@link CompEntAssoc} so they can be applied
+ * together at a sync point, instead of while systems are iterating. Commands
+ * are played back in the order they were recorded by
+ * {@link CompEntAssoc#playbackCommands()}, which the scheduler calls between
+ * stages.
+ *
+ * <p>
+ * Recording is thread-safe, so systems running in parallel may share the
+ * buffer.
+ * </p>
+ */
+public final class CommandBuffer {
+
+    private final AbstractCEA assoc;
+    private List<Consumer<CompEntAssoc>> commands = new ArrayList<>();
+
+    CommandBuffer(AbstractCEA assoc) {
+        this.assoc = assoc;
+    }
+
+    /**
+     * Creates an entity at playback. The ID is reserved immediately, so it
+     * can be used in later commands, but the entity does not exist until
+     * then.
+     * 
+     * @param components
+     *            - the components of the new entity
+     * @return the ID the entity will have
+     */
+    public int create(Component... components) {
+        return create(Arrays.asList(components));
+    }
+
+    /**
+     * @see #create(Component...)
+     */
+    public synchronized int create(Iterable<Component> components) {
+        ImmutableList<Component> copy = ImmutableList.copyOf(components);
+        int id = assoc.getAllocator().reserve();
+        commands.add(a -> assoc.newReservedEntity(id, copy));
+        return id;
+    }
+
+    public void remove(int entityId) {
+        defer(a -> a.remove(entityId));
+    }
+
+    public void addComponent(int entityId, Component component) {
+        defer(a -> a.addComponent(entityId, component));
+    }
+
+    public void removeComponent(int entityId, Component component) {
+        defer(a -> a.removeComponent(entityId, component));
+    }
+
+    public <T> void set(int entityId, ComponentField<T> field, T value) {
+        checkArgument(value != null, "values may not be null");
+        defer(a -> a.set(entityId, field, value));
+    }
+
+    /**
+     * Runs an arbitrary action on the CEA at playback.
+     * 
+     * @param command
+     *            - the action to run
+     */
+    public synchronized void defer(Consumer<CompEntAssoc> command) {
+        commands.add(command);
+    }
+
+    /**
+     * @return {@code true} if there are no commands waiting
+     */
+    public synchronized boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    void playback() {
+        // commands may record more commands, keep going until none are left
+        while (true) {
+            List<Consumer<CompEntAssoc>> batch;
+            synchronized (this) {
+                if (commands.isEmpty()) {
+                    return;
+                }
+                batch = commands;
+                commands = new ArrayList<>();
+            }
+            for (Consumer<CompEntAssoc> command : batch) {
+                command.accept(assoc);
+            }
+        }
+    }
+
+}
@@ -25,6 +25,9 @@
 
 package com.techshroom.unplanned.ecs;
 
+import java.util.stream.IntStream;
+
+import org.eclipse.collections.api.block.procedure.primitive.IntProcedure;
 import org.eclipse.collections.api.set.primitive.IntSet;
 
 /**
@@ -39,10 +42,201 @@ public interface CompEntAssoc {
 
     int newEntity(Iterable<Component> component);
 
+    /**
+     * Creates many entities with the same components. Storage is sized once
+     * and defaults are written in bulk, so this is much cheaper than calling
+     * {@link #newEntity(Iterable)} in a loop.
+     * 
+     * @param count
+     *            - the number of entities to create
+     * @param components
+     *            - the components of every new entity
+     * @return the new entities, in creation order
+     */
+    int[] newEntities(int count, Component... components);
+
+    int[] newEntities(int count, Iterable<Component> components);
+
+    /**
+     * Creates an entity from a prefab. The entity gets the prefab's
+     * components, with the prefab's values already in place when observers
+     * and watchers are told about it.
+     * 
+     * @param prefab
+     *            - the prefab to copy
+     * @return the new entity
+     */
+    int instantiate(Prefab prefab);
+
+    /**
+     * Creates many entities from a prefab, like
+     * {@link #newEntities(int, Iterable)}.
+     * 
+     * @param prefab
+     *            - the prefab to copy
+     * @param count
+     *            - the number of entities to create
+     * @return the new entities, in creation order
+     */
+    int[] instantiate(Prefab prefab, int count);
+
+    /**
+     * Copies the components and values of an entity into a prefab.
+     * 
+     * @param entityId
+     *            - the entity to copy
+     * @return a prefab of the entity
+     */
+    Prefab toPrefab(int entityId);
+
     <T> void set(int entityId, ComponentField<T> field, T value);
 
     <T> T get(int entityId, ComponentField<T> field);
 
+    // Primitive accessors. These default to boxing through get/set, storages
+    // that keep primitive values should override them.
+
+    default boolean getBoolean(int entityId, BooleanComponentField field) {
+        return get(entityId, field);
+    }
+
+    default void setBoolean(int entityId, BooleanComponentField field, boolean value) {
+        set(entityId, field, value);
+    }
+
+    default byte getByte(int entityId, ByteComponentField field) {
+        return get(entityId, field);
+    }
+
+    default void setByte(int entityId, ByteComponentField field, byte value) {
+        set(entityId, field, value);
+    }
+
+    default short getShort(int entityId, ShortComponentField field) {
+        return get(entityId, field);
+    }
+
+    default void setShort(int entityId, ShortComponentField field, short value) {
+        set(entityId, field, value);
+    }
+
+    default int getInt(int entityId, IntComponentField field) {
+        return get(entityId, field);
+    }
+
+    default void setInt(int entityId, IntComponentField field, int value) {
+        set(entityId, field, value);
+    }
+
+    default long getLong(int entityId, LongComponentField field) {
+        return get(entityId, field);
+    }
+
+    default void setLong(int entityId, LongComponentField field, long value) {
+        set(entityId, field, value);
+    }
+
+    // Bound accessors. These default to going through get/set, storages
+    // should override them to resolve the field up front.
+
+    /**
+     * Binds a field to this CEA, for code that reads or writes it for many
+     * entities in a row.
+     * 
+     * @param field
+     *            - the field to bind
+     * @return an accessor for the field
+     */
+    default <T> FieldAccessor<T> accessor(ComponentField<T> field) {
+        return new FieldAccessor<T>() {
+
+            @Override
+            public T get(int entityId) {
+                return CompEntAssoc.this.get(entityId, field);
+            }
+
+            @Override
+            public void set(int entityId, T value) {
+                CompEntAssoc.this.set(entityId, field, value);
+            }
+        };
+    }
+
+    default FieldAccessor.OfBoolean booleanAccessor(ComponentField<Boolean> field) {
+        return new FieldAccessor.OfBoolean() {
+
+            @Override
+            public boolean get(int entityId) {
+                return CompEntAssoc.this.get(entityId, field);
+            }
+
+            @Override
+            public void set(int entityId, boolean value) {
+                CompEntAssoc.this.set(entityId, field, value);
+            }
+        };
+    }
+
+    default FieldAccessor.OfByte byteAccessor(ComponentField<Byte> field) {
+        return new FieldAccessor.OfByte() {
+
+            @Override
+            public byte get(int entityId) {
+                return CompEntAssoc.this.get(entityId, field);
+            }
+
+            @Override
+            public void set(int entityId, byte value) {
+                CompEntAssoc.this.set(entityId, field, value);
+            }
+        };
+    }
+
+    default FieldAccessor.OfShort shortAccessor(ComponentField<Short> field) {
+        return new FieldAccessor.OfShort() {
+
+            @Override
+            public short get(int entityId) {
+                return CompEntAssoc.this.get(entityId, field);
+            }
+
+            @Override
+            public void set(int entityId, short value) {
+                CompEntAssoc.this.set(entityId, field, value);
+            }
+        };
+    }
+
+    default FieldAccessor.OfInt intAccessor(ComponentField<Integer> field) {
+        return new FieldAccessor.OfInt() {
+
+            @Override
+            public int get(int entityId) {
+                return CompEntAssoc.this.get(entityId, field);
+            }
+
+            @Override
+            public void set(int entityId, int value) {
+                CompEntAssoc.this.set(entityId, field, value);
+            }
+        };
+    }
+
+    default FieldAccessor.OfLong longAccessor(ComponentField<Long> field) {
+        return new FieldAccessor.OfLong() {
+
+            @Override
+            public long get(int entityId) {
+                return CompEntAssoc.this.get(entityId, field);
+            }
+
+            @Override
+            public void set(int entityId, long value) {
+                CompEntAssoc.this.set(entityId, field, value);
+            }
+        };
+    }
+
     /**
      * Removes an entity from this association table.
      * 
@@ -51,14 +245,196 @@ public interface CompEntAssoc {
      */
     void remove(int entityId);
 
+    /**
+     * Attaches a component to an existing entity. Its fields start with their
+     * default values. Does nothing if the component is already attached.
+     * 
+     * @param entityId
+     *            - the entity to attach to
+     * @param component
+     *            - the component to attach
+     */
+    void addComponent(int entityId, Component component);
+
+    /**
+     * Detaches a component from an entity, dropping its field values. Does
+     * nothing if the component is not attached.
+     * 
+     * @param entityId
+     *            - the entity to detach from
+     * @param component
+     *            - the component to detach
+     */
+    void removeComponent(int entityId, Component component);
+
+    /**
+     * Gets the entities that have a component. The result is a live,
+     * unmodifiable view, so it must not be iterated while entities or
+     * components are being added or removed. Use {@link #commands()} to make
+     * such changes from inside a loop.
+     * 
+     * @param component
+     *            - the component to match
+     * @return a view of the matching entities
+     */
     IntSet getEntities(Component component);
 
+    /**
+     * Gets the entities that have all of the given components. The same rules
+     * as {@link #getEntities(Component)} apply to the result.
+     * 
+     * @param components
+     *            - the components to match
+     * @return the matching entities
+     */
     IntSet getEntities(Iterable<Component> components);
 
+    /**
+     * Runs an action for every entity that has all of the given components.
+     * Unlike {@link #getEntities(Iterable)}, this does not need to build a
+     * set of the matching entities. The action must not add or remove
+     * entities or components directly, but may record such changes with
+     * {@link #commands()}.
+     * 
+     * @param components
+     *            - the components to match
+     * @param action
+     *            - the action to run
+     */
+    default void forEachEntity(Iterable<Component> components, IntProcedure action) {
+        getEntities(components).forEach(action);
+    }
+
+    /**
+     * Runs an action for every entity that has all of the given components,
+     * spreading the entities over the fork-join pool of the calling thread,
+     * or the common pool. The action may write fields of the entity it is
+     * given, but must not add or remove entities or components.
+     * 
+     * @param components
+     *            - the components to match
+     * @param action
+     *            - the action to run, which must be thread-safe
+     */
+    default void forEachEntityParallel(Iterable<Component> components, IntProcedure action) {
+        IntStream.of(getEntities(components).toArray()).parallel().forEach(action::value);
+    }
+
     boolean hasComponent(int entityId, Component component);
 
+    /**
+     * Checks if a component is part of this CEA, i.e. one of its systems uses
+     * it. Only those can be attached to entities.
+     * 
+     * @param component
+     *            - the component to check
+     * @return {@code true} if entities may have the component
+     */
+    boolean isRegistered(Component component);
+
+    /**
+     * Registers an observer for component lifecycle events. Systems that
+     * implement {@link ComponentObserver} are registered when the CEA is
+     * built.
+     * 
+     * @param observer
+     *            - the observer to add
+     */
+    void addObserver(ComponentObserver observer);
+
+    /**
+     * Registers a watcher that hears about changes to a component right away.
+     * 
+     * @param watcher
+     *            - the watcher to add
+     */
+    void addWatcher(ComponentWatcher watcher);
+
+    /**
+     * Starts tracking changes to a component. Setting any of its fields, or
+     * attaching it, stamps the entity with the current
+     * {@link #getChangeVersion() change version}. All existing entities count
+     * as changed in the current version.
+     * 
+     * @param component
+     *            - the component to track
+     */
+    void trackChanges(Component component);
+
+    /**
+     * Runs an action for every entity that has all of the given components,
+     * and where at least one of the tracked components among them changed in
+     * or after the given change version. Components without change tracking
+     * are only used for matching.
+     * 
+     * @param components
+     *            - the components to match
+     * @param sinceVersion
+     *            - the first change version to consider changes from,
+     *            usually from an earlier {@link #nextChangeVersion()}
+     * @param action
+     *            - the action to run
+     * @throws IllegalStateException
+     *             if none of the components are tracked
+     */
+    void forEachEntityChangedSince(Iterable<Component> components, long sinceVersion, IntProcedure action);
+
+    /**
+     * @return the change version that changes made right now are stamped
+     *         with
+     */
+    long getChangeVersion();
+
+    /**
+     * Starts a new change version. Every change made before this call has an
+     * older version, so the returned version finds exactly the changes made
+     * after it. Systems call this at the end of their run to skip their own
+     * changes next time.
+     * 
+     * @return the new change version
+     */
+    long nextChangeVersion();
+
+    /**
+     * @return the number of times {@link #tick(long)} has been called
+     */
+    long getTick();
+
+    /**
+     * Checks if an entity ID is live. The ID of a removed entity isn't
+     * reported as live again when its storage is reused, until the storage
+     * has been reused {@linkplain EntityAllocator so many times} that the
+     * generations wrap around. {@code 0} is never a live ID.
+     * 
+     * @param entityId
+     *            - the entity ID to check
+     * @return {@code true} if the entity exists
+     */
     boolean hasEntity(int entityId);
 
+    /**
+     * @return the buffer for structural changes, played back at the next sync
+     *         point
+     */
+    CommandBuffer commands();
+
+    /**
+     * Applies all commands recorded in {@link #commands()}. Called by the
+     * scheduler between stages.
+     */
+    void playbackCommands();
+
+    /**
+     * @return the scheduler that runs the systems of this CEA
+     */
+    SystemScheduler getScheduler();
+
+    /**
+     * @return the profiler that times each system as it runs, disabled by
+     *         default
+     */
+    SystemProfiler getProfiler();
+
     /**
      * Ticks all systems.
      * 
@@ -53,4 +53,34 @@ public abstract class ComponentField<T> {
 
     public abstract CFType<T> getType();
 
+    // equals and hashCode are implemented here instead of being generated, so
+    // that the primitive field handles compare equal to the generic ones
+
+    @Override
+    public final boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof ComponentField)) {
+            return false;
+        }
+        ComponentField<?> that = (ComponentField<?>) obj;
+        return getId().equals(that.getId())
+                && getName().equals(that.getName())
+                && getType().equals(that.getType());
+    }
+
+    @Override
+    public final int hashCode() {
+        int h = getId().hashCode();
+        h = h * 31 + getName().hashCode();
+        h = h * 31 + getType().hashCode();
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "ComponentField{id=" + getId() + ", name=" + getName() + ", type=" + getType() + "}";
+    }
+
 }
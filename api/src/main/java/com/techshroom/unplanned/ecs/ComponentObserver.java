@@ -0,0 +1,74 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import java.util.Set;
+
+import org.eclipse.collections.api.list.primitive.IntList;
+
+/**
+ * Receives component lifecycle events. Events are collected during a tick
+ * and delivered in batches, one call per component and kind, once all
+ * systems have run. Observers may change the CEA directly while handling
+ * events. Events caused by those changes are delivered at the end of the
+ * next tick.
+ *
+ * <p>
+ * Systems that implement this interface are registered automatically.
+ * Others can be added with {@link CompEntAssoc#addObserver(ComponentObserver)},
+ * also by an observer while handling events, in which case the new observer
+ * gets events from the next delivery on.
+ * </p>
+ */
+public interface ComponentObserver {
+
+    /**
+     * @return the components to receive events for
+     */
+    Set<Component> getObservedComponents();
+
+    /**
+     * Called with the entities a component was attached to, including newly
+     * created entities.
+     */
+    default void onAttached(CompEntAssoc assoc, Component component, IntList entities) {
+    }
+
+    /**
+     * Called with the entities a component was detached from, not counting
+     * entities that were removed.
+     */
+    default void onDetached(CompEntAssoc assoc, Component component, IntList entities) {
+    }
+
+    /**
+     * Called with the removed entities that had a component. Their IDs are no
+     * longer live.
+     */
+    default void onDestroyed(CompEntAssoc assoc, Component component, IntList entities) {
+    }
+
+}
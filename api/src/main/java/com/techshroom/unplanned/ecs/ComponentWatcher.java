@@ -0,0 +1,57 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+/**
+ * Hears about every change to a component as it happens, unlike a
+ * {@link ComponentObserver}, which is batched. Used to keep indexes such as
+ * {@link SpatialHash} in sync.
+ *
+ * <p>
+ * {@link #onChange(int)} is called on the thread making the change, possibly
+ * from several threads at once, and possibly before the new value is written.
+ * Watchers should only note that the entity needs a look, and read its fields
+ * later.
+ * </p>
+ */
+public interface ComponentWatcher {
+
+    /**
+     * @return the component to watch
+     */
+    Component getWatchedComponent();
+
+    /**
+     * Called when a field of the component is set on an entity, when the
+     * component is attached or detached, and when an entity with the component
+     * is removed.
+     *
+     * @param entityId
+     *            - the entity that changed
+     */
+    void onChange(int entityId);
+
+}
@@ -0,0 +1,325 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Arrays;
+
+/**
+ * Hands out entity handles backed by dense indices. A handle packs the index
+ * into its low {@value #INDEX_BITS} bits and a generation counter above it.
+ * Freed indices are recycled with the next generation, so a stale handle can
+ * be told apart from the entity that now uses its index.
+ *
+ * <p>
+ * Freed indices wait in a FIFO queue, and are only recycled once at least
+ * {@value #MIN_FREE_INDICES} are waiting. A spawn/despawn loop therefore
+ * cycles through many indices instead of bumping the generation of one, and
+ * a handle only comes back after its index went through every generation,
+ * which takes at least {@value #MIN_FREE_INDICES} &times; 2<sup>
+ * {@value #GENERATION_BITS}</sup> frees. The number of indices stays bounded
+ * by the peak live count plus the queue, however long the churn.
+ * </p>
+ *
+ * <p>
+ * Index {@code 0} is never handed out, so the handle {@code 0} can still be
+ * used to mean "no entity". Handles are never negative.
+ * </p>
+ */
+public final class EntityAllocator {
+
+    public static final int INDEX_BITS = 21;
+    public static final int GENERATION_BITS = 31 - INDEX_BITS;
+    public static final int MAX_INDEX = (1 << INDEX_BITS) - 1;
+    private static final int GENERATION_MASK = (1 << GENERATION_BITS) - 1;
+    /**
+     * How many freed indices must be waiting before one is recycled.
+     */
+    public static final int MIN_FREE_INDICES = 1024;
+    private static final int INITIAL_CAPACITY = 64;
+
+    public static int index(int handle) {
+        return handle & MAX_INDEX;
+    }
+
+    public static int generation(int handle) {
+        return (handle >>> INDEX_BITS) & GENERATION_MASK;
+    }
+
+    private static int handle(int index, int generation) {
+        return (generation << INDEX_BITS) | index;
+    }
+
+    /**
+     * Receives every change to an allocator, in order, so they can be undone.
+     */
+    interface Journal {
+
+        void reserved(int handle, boolean recycled);
+
+        void committed(int handle);
+
+        void freed(int handle);
+
+    }
+
+    /**
+     * The live handle for each index, or {@code 0} if the index is free.
+     */
+    private int[] handles = new int[INITIAL_CAPACITY];
+    private int[] generations = new int[INITIAL_CAPACITY];
+    // ring buffer, recycled from the head and freed onto the tail
+    private int[] free = new int[INITIAL_CAPACITY];
+    private int freeHead;
+    private int freeCount;
+    private int nextIndex = 1;
+    private int alive;
+    private Journal journal;
+
+    /**
+     * @return a new live handle
+     */
+    public int allocate() {
+        int h = reserve();
+        commit(h);
+        return h;
+    }
+
+    /**
+     * Grows the backing arrays so that the next {@code count} allocations
+     * don't have to.
+     */
+    public void ensureCapacity(int count) {
+        long needed = (long) nextIndex + Math.max(0, count - recyclable());
+        if (needed <= handles.length) {
+            return;
+        }
+        int newCapacity = (int) Math.min(Math.max(needed, handles.length * 2L), MAX_INDEX + 1);
+        handles = Arrays.copyOf(handles, newCapacity);
+        generations = Arrays.copyOf(generations, newCapacity);
+    }
+
+    private int recyclable() {
+        return Math.max(0, freeCount - MIN_FREE_INDICES + 1);
+    }
+
+    /**
+     * Reserves a handle without making it live. The handle is not handed out
+     * again, and becomes live once passed to {@link #commit(int)}.
+     *
+     * @return the reserved handle
+     */
+    public int reserve() {
+        int index;
+        // below the minimum, only recycle when there are no new indices left
+        boolean recycled = freeCount >= MIN_FREE_INDICES || (freeCount > 0 && nextIndex > MAX_INDEX);
+        if (recycled) {
+            index = free[freeHead];
+            freeHead = (freeHead + 1) & (free.length - 1);
+            freeCount--;
+        } else {
+            checkState(nextIndex <= MAX_INDEX, "out of entity indices (max %s)", MAX_INDEX);
+            index = nextIndex++;
+            if (index == handles.length) {
+                int newCapacity = Math.min(handles.length * 2, MAX_INDEX + 1);
+                handles = Arrays.copyOf(handles, newCapacity);
+                generations = Arrays.copyOf(generations, newCapacity);
+            }
+        }
+        int h = handle(index, generations[index]);
+        if (journal != null) {
+            journal.reserved(h, recycled);
+        }
+        return h;
+    }
+
+    /**
+     * Makes a reserved handle live.
+     */
+    public void commit(int handle) {
+        int index = index(handle);
+        checkState(index < nextIndex && handles[index] == 0 && generation(handle) == generations[index],
+                "handle %s was not reserved", handle);
+        handles[index] = handle;
+        alive++;
+        if (journal != null) {
+            journal.committed(handle);
+        }
+    }
+
+    /**
+     * Frees a handle, bumping the generation of its index and queueing it
+     * for reuse. Does nothing if the handle is not live.
+     *
+     * @return {@code true} if the handle was live
+     */
+    public boolean free(int handle) {
+        if (!isAlive(handle)) {
+            return false;
+        }
+        int index = index(handle);
+        handles[index] = 0;
+        alive--;
+        generations[index] = (generations[index] + 1) & GENERATION_MASK;
+        growFree();
+        free[(freeHead + freeCount) & (free.length - 1)] = index;
+        freeCount++;
+        if (journal != null) {
+            journal.freed(handle);
+        }
+        return true;
+    }
+
+    private void growFree() {
+        if (freeCount < free.length) {
+            return;
+        }
+        int[] grown = new int[free.length * 2];
+        int tail = free.length - freeHead;
+        System.arraycopy(free, freeHead, grown, 0, tail);
+        System.arraycopy(free, 0, grown, tail, freeHead);
+        free = grown;
+        freeHead = 0;
+    }
+
+    void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Undoes {@link #reserve()}. Undo calls must be made in the reverse order
+     * of the journal.
+     */
+    void undoReserve(int handle, boolean recycled) {
+        int index = index(handle);
+        checkState(handles[index] == 0, "handle %s is still live", handle);
+        if (recycled) {
+            growFree();
+            freeHead = (freeHead - 1) & (free.length - 1);
+            free[freeHead] = index;
+            freeCount++;
+        } else {
+            checkState(index == nextIndex - 1, "handle %s was not the last new index", handle);
+            nextIndex--;
+        }
+    }
+
+    /**
+     * Undoes {@link #commit(int)}.
+     */
+    void undoCommit(int handle) {
+        checkState(isAlive(handle), "handle %s is not live", handle);
+        handles[index(handle)] = 0;
+        alive--;
+    }
+
+    /**
+     * Undoes {@link #free(int)}.
+     */
+    void undoFree(int handle) {
+        int index = index(handle);
+        checkState(freeCount > 0 && free[(freeHead + freeCount - 1) & (free.length - 1)] == index,
+                "handle %s was not the last freed", handle);
+        freeCount--;
+        generations[index] = generation(handle);
+        handles[index] = handle;
+        alive++;
+    }
+
+    public boolean isAlive(int handle) {
+        int index = index(handle);
+        return handle > 0 && index < nextIndex && handles[index] == handle;
+    }
+
+    /**
+     * @return the live handle using an index, or {@code 0} if it is free
+     */
+    public int handleAt(int index) {
+        return index < nextIndex ? handles[index] : 0;
+    }
+
+    /**
+     * @return the generation the next handle for an index will use, or the
+     *         current one if the index is live
+     */
+    public int generationAt(int index) {
+        return index < nextIndex ? generations[index] : 0;
+    }
+
+    /**
+     * Restores the state of another allocator, as captured by
+     * {@link #generationAt(int)} and {@link #handleAt(int)}. Indices that are
+     * not in {@code live} become free. Only valid on an unused allocator.
+     *
+     * @param generations
+     *            - the generation of every index below the old capacity
+     * @param live
+     *            - the live handles
+     */
+    public void restore(int[] generations, int[] live) {
+        checkState(nextIndex == 1 && freeCount == 0, "allocator is already in use");
+        int capacity = Math.max(generations.length, 1);
+        checkState(capacity <= MAX_INDEX + 1, "too many indices (max %s)", MAX_INDEX);
+        this.handles = new int[Math.max(capacity, INITIAL_CAPACITY)];
+        this.generations = Arrays.copyOf(generations, handles.length);
+        this.nextIndex = capacity;
+        for (int h : live) {
+            int index = index(h);
+            checkState(index > 0 && index < capacity && generation(h) == generations[index] && handles[index] == 0,
+                    "handle %s does not fit the restored generations", h);
+            handles[index] = h;
+        }
+        this.alive = live.length;
+        int freeCapacity = INITIAL_CAPACITY;
+        while (freeCapacity < capacity - alive) {
+            freeCapacity *= 2;
+        }
+        this.free = new int[freeCapacity];
+        this.freeHead = 0;
+        for (int index = 1; index < capacity; index++) {
+            if (handles[index] == 0) {
+                free[freeCount++] = index;
+            }
+        }
+    }
+
+    /**
+     * @return the number of live handles
+     */
+    public int size() {
+        return alive;
+    }
+
+    /**
+     * @return one more than the highest index handed out so far, useful for
+     *         sizing arrays indexed by {@link #index(int)}
+     */
+    public int capacity() {
+        return nextIndex;
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+/**
+ * A {@link ComponentField} bound to one {@link CompEntAssoc}. Storages resolve
+ * where the field lives once, when the accessor is made, so reading or
+ * writing through an accessor skips the per-call field lookup of
+ * {@link CompEntAssoc#get(int, ComponentField)}. The primitive variants also
+ * avoid boxing on storages that keep primitive values.
+ *
+ * <p>
+ * Accessors stay valid for the life of their CEA, and follow the same rules
+ * as the CEA's own accessors: the entity must be live and have the field's
+ * component.
+ * </p>
+ */
+public interface FieldAccessor<T> {
+
+    T get(int entityId);
+
+    void set(int entityId, T value);
+
+    interface OfBoolean {
+
+        boolean get(int entityId);
+
+        void set(int entityId, boolean value);
+
+    }
+
+    interface OfByte {
+
+        byte get(int entityId);
+
+        void set(int entityId, byte value);
+
+    }
+
+    interface OfShort {
+
+        short get(int entityId);
+
+        void set(int entityId, short value);
+
+    }
+
+    interface OfInt {
+
+        int get(int entityId);
+
+        void set(int entityId, int value);
+
+    }
+
+    interface OfLong {
+
+        long get(int entityId);
+
+        void set(int entityId, long value);
+
+    }
+
+}
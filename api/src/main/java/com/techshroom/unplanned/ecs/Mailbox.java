@@ -0,0 +1,97 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * A lock-free, multi-producer, single-consumer message queue. Any thread may
+ * {@link #post(Object)} at any time; one thread at a time takes everything
+ * posted so far with {@link #drain(Consumer)}.
+ *
+ * <p>
+ * Messages from one producer are drained in the order they were posted.
+ * Messages from different producers may interleave in any order.
+ * </p>
+ */
+public final class Mailbox<M> {
+
+    private static final class Node<M> {
+
+        private final M message;
+        private Node<M> next;
+
+        Node(M message) {
+            this.message = message;
+        }
+
+    }
+
+    // newest first, reversed on drain
+    private final AtomicReference<Node<M>> head = new AtomicReference<>();
+
+    public void post(M message) {
+        Node<M> node = new Node<>(checkNotNull(message, "message"));
+        Node<M> h;
+        do {
+            h = head.get();
+            node.next = h;
+        } while (!head.compareAndSet(h, node));
+    }
+
+    /**
+     * Takes every message posted so far, oldest first. Messages posted while
+     * draining are left for the next drain.
+     * 
+     * @param action
+     *            - the action to run for each message
+     * @return the number of messages drained
+     */
+    public int drain(Consumer<? super M> action) {
+        Node<M> node = head.getAndSet(null);
+        Node<M> reversed = null;
+        while (node != null) {
+            Node<M> next = node.next;
+            node.next = reversed;
+            reversed = node;
+            node = next;
+        }
+        int count = 0;
+        for (; reversed != null; reversed = reversed.next) {
+            action.accept(reversed.message);
+            count++;
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return head.get() == null;
+    }
+
+}
@@ -28,21 +28,12 @@ package com.techshroom.unplanned.ecs;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 
-import java.util.Iterator;
-import java.util.Random;
-
-import org.eclipse.collections.api.list.ImmutableList;
-import org.eclipse.collections.api.map.ImmutableMap;
 import org.eclipse.collections.api.map.MutableMap;
 import org.eclipse.collections.api.map.primitive.MutableIntObjectMap;
-import org.eclipse.collections.api.set.primitive.IntSet;
-import org.eclipse.collections.api.set.primitive.MutableIntSet;
-import org.eclipse.collections.impl.factory.Lists;
 import org.eclipse.collections.impl.factory.Maps;
 import org.eclipse.collections.impl.factory.primitive.IntObjectMaps;
-import org.eclipse.collections.impl.factory.primitive.IntSets;
 
-public class ObjectCEA implements CompEntAssoc {
+public class ObjectCEA extends AbstractCEA {
 
     private static final class Entity {
 
@@ -55,69 +46,52 @@ public class ObjectCEA implements CompEntAssoc {
 
     }
 
-    private final ImmutableList<CSystem> systems;
-    private final ImmutableMap<Component, MutableIntSet> componentLists;
     private final MutableIntObjectMap<Entity> entities = IntObjectMaps.mutable.empty();
 
-    ObjectCEA(Iterable<CSystem> csys) {
-        this.systems = Lists.immutable.withAll(csys);
-        MutableMap<Component, MutableIntSet> cl = Maps.mutable.empty();
-        this.systems.forEach(cs -> {
-            for (Component c : cs.getComponents()) {
-                cl.put(c, IntSets.mutable.empty());
-            }
-        });
-        componentLists = cl.toImmutable();
-    }
-
-    private MutableIntSet cl(Component key) {
-        MutableIntSet val = componentLists.get(key);
-        checkState(val != null, "Component %s is not part of this CEA", key.getId());
-        return val;
-    }
-
-    private static final Random RANDOM = new Random();
-
-    private static int randomId() {
-        return Math.abs(Long.hashCode(java.lang.System.nanoTime()) ^ RANDOM.nextInt());
-    }
-
-    private Entity add() {
-        Entity e = new Entity(randomId());
-        entities.put(e.id, e);
-        return e;
+    ObjectCEA(Iterable<CSystem> csys, SystemScheduler.Factory scheduler) {
+        super(csys, scheduler);
     }
 
     private void associate(Entity e, Component c) {
-        cl(c).add(e.id);
         c.getFields().forEach((name, f) -> {
             e.fields.put(f, f.getType().defaultValue);
         });
     }
 
     @Override
-    public int newEntity(Component component) {
-        Entity e = add();
-        associate(e, component);
-        return e.id;
+    protected void createEntity(int entityId, Iterable<Component> components) {
+        Entity e = new Entity(entityId);
+        entities.put(e.id, e);
+        for (Component c : components) {
+            associate(e, c);
+        }
     }
 
     @Override
-    public int newEntity(Component... component) {
-        Entity e = add();
-        for (Component c : component) {
-            associate(e, c);
+    protected void createEntities(int[] entityIds, Prefab prefab) {
+        for (int entityId : entityIds) {
+            Entity e = new Entity(entityId);
+            entities.put(e.id, e);
+            e.fields.putAll(prefab.getValues());
         }
-        return e.id;
     }
 
     @Override
-    public int newEntity(Iterable<Component> component) {
-        Entity e = add();
-        for (Component c : component) {
-            associate(e, c);
-        }
-        return e.id;
+    protected void attachComponent(int entityId, Component component) {
+        associate(entities.get(entityId), component);
+    }
+
+    @Override
+    protected void detachComponent(int entityId, Component component) {
+        Entity e = entities.get(entityId);
+        component.getFields().forEach((name, f) -> {
+            e.fields.remove(f);
+        });
+    }
+
+    @Override
+    protected void destroyEntity(int entityId) {
+        entities.removeKey(entityId);
     }
 
     @Override
@@ -126,6 +100,7 @@ public class ObjectCEA implements CompEntAssoc {
         Entity e = entities.get(entityId);
         checkState(e != null, "entity %s is not associated yet!", entityId);
         checkState(e.fields.containsKey(field), "field %s is not associated with entity %s", field, entityId);
+        changed(entityId, field);
         e.fields.put(field, value);
     }
 
@@ -139,48 +114,4 @@ public class ObjectCEA implements CompEntAssoc {
         return val;
     }
 
-    @Override
-    public void remove(int entityId) {
-        entities.removeKey(entityId);
-        componentLists.forEach(s -> s.remove(entityId));
-    }
-
-    @Override
-    public IntSet getEntities(Component component) {
-        return getEntitiesNoFreeze(component).freeze();
-    }
-
-    private MutableIntSet getEntitiesNoFreeze(Component component) {
-        return componentLists.getIfAbsent(component, IntSets.mutable::empty);
-    }
-
-    @Override
-    public IntSet getEntities(Iterable<Component> components) {
-        Iterator<Component> iter = components.iterator();
-        if (!iter.hasNext()) {
-            return IntSets.immutable.empty();
-        }
-        MutableIntSet intsersection = IntSets.mutable.ofAll(getEntitiesNoFreeze(iter.next()));
-        while (iter.hasNext()) {
-            IntSet next = getEntitiesNoFreeze(iter.next());
-            intsersection.retainAll(next);
-        }
-        return intsersection.freeze();
-    }
-
-    @Override
-    public boolean hasComponent(int entityId, Component component) {
-        return componentLists.get(component).contains(entityId);
-    }
-
-    @Override
-    public boolean hasEntity(int entityId) {
-        return entities.containsKey(entityId);
-    }
-
-    @Override
-    public void tick(long nano) {
-        systems.forEach(sys -> sys.processList(this, nano));
-    }
-
 }
@@ -29,8 +29,8 @@ public enum ObjectCEAFactory implements CEAFactory {
     $;
 
     @Override
-    public CompEntAssoc build(Iterable<CSystem> systems) {
-        return new ObjectCEA(systems);
+    public CompEntAssoc build(Iterable<CSystem> systems, SystemScheduler.Factory scheduler) {
+        return new ObjectCEA(systems, scheduler);
     }
 
 }
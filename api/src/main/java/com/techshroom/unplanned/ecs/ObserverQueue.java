@@ -0,0 +1,135 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.collections.api.list.primitive.MutableIntList;
+import org.eclipse.collections.impl.factory.primitive.IntLists;
+
+/**
+ * Collects component lifecycle events for {@link ComponentObserver}s until
+ * they are delivered. Only components with observers are recorded.
+ */
+final class ObserverQueue {
+
+    private static final class Batch {
+
+        private final List<ComponentObserver> observers = new ArrayList<>();
+        private MutableIntList attached = IntLists.mutable.empty();
+        private MutableIntList detached = IntLists.mutable.empty();
+        private MutableIntList destroyed = IntLists.mutable.empty();
+
+        boolean isEmpty() {
+            return attached.isEmpty() && detached.isEmpty() && destroyed.isEmpty();
+        }
+
+    }
+
+    private final Map<Component, Batch> batches = new HashMap<>();
+    // observers added by observers, registered once delivery is over
+    private final List<ComponentObserver> pending = new ArrayList<>();
+    private boolean delivering;
+
+    /**
+     * Registers an observer. One added while events are being delivered
+     * starts receiving events with the next delivery.
+     */
+    void addObserver(ComponentObserver observer) {
+        if (delivering) {
+            pending.add(observer);
+            return;
+        }
+        for (Component c : observer.getObservedComponents()) {
+            batches.computeIfAbsent(c, k -> new Batch()).observers.add(observer);
+        }
+    }
+
+    void attached(int entityId, Component component) {
+        Batch b = batches.get(component);
+        if (b != null) {
+            b.attached.add(entityId);
+        }
+    }
+
+    void detached(int entityId, Component component) {
+        Batch b = batches.get(component);
+        if (b != null) {
+            b.detached.add(entityId);
+        }
+    }
+
+    void destroyed(int entityId, Component component) {
+        Batch b = batches.get(component);
+        if (b != null) {
+            b.destroyed.add(entityId);
+        }
+    }
+
+    /**
+     * Delivers every event recorded so far. Events recorded by the observers
+     * are kept for the next delivery.
+     */
+    void deliver(CompEntAssoc assoc) {
+        delivering = true;
+        try {
+            batches.forEach((component, b) -> deliver(assoc, component, b));
+        } finally {
+            delivering = false;
+            for (ComponentObserver o : pending) {
+                addObserver(o);
+            }
+            pending.clear();
+        }
+    }
+
+    private static void deliver(CompEntAssoc assoc, Component component, Batch b) {
+        if (b.isEmpty()) {
+            return;
+        }
+        MutableIntList attached = b.attached;
+        MutableIntList detached = b.detached;
+        MutableIntList destroyed = b.destroyed;
+        b.attached = IntLists.mutable.empty();
+        b.detached = IntLists.mutable.empty();
+        b.destroyed = IntLists.mutable.empty();
+        for (ComponentObserver o : b.observers) {
+            if (!attached.isEmpty()) {
+                o.onAttached(assoc, component, attached.asUnmodifiable());
+            }
+            if (!detached.isEmpty()) {
+                o.onDetached(assoc, component, detached.asUnmodifiable());
+            }
+            if (!destroyed.isEmpty()) {
+                o.onDestroyed(assoc, component, destroyed.asUnmodifiable());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A system whose {@link #process(int, CompEntAssoc, long)} may be called for
+ * many entities at once, from several threads. Implementations may read any
+ * field, but only write fields of the entity they are given, and must not add
+ * or remove entities or components.
+ * 
+ * @see CompEntAssoc#forEachEntityParallel
+ */
+public interface ParallelCSystem extends CSystem {
+
+    @Override
+    default void processList(CompEntAssoc assoc, long nanoDiff) {
+        LongAdder processed = new LongAdder();
+        assoc.forEachEntityParallel(getComponents(), e -> {
+            process(e, assoc, nanoDiff);
+            processed.increment();
+        });
+        SystemProfiler.countProcessed(processed.intValue());
+    }
+
+}
@@ -0,0 +1,303 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.techshroom.unplanned.core.util.Logging;
+
+/**
+ * One logical world split into several {@link CompEntAssoc} partitions, e.g.
+ * by region. Every partition is built by the same {@link CEAFactory} from its
+ * own systems, and always ticks on its own thread.
+ *
+ * <p>
+ * {@link #tick(long)} ticks all partitions at once and waits for all of them
+ * to finish before anything crosses between them. Partitions talk through
+ * {@link Partition#send(int, Object) messages} and
+ * {@link Partition#migrate(int, int) migrations}, which are recorded during
+ * the tick and applied at that barrier:
+ * </p>
+ * <ul>
+ * <li>Migrations move the entity, with all of its components and field
+ * values, once every partition has finished the tick. The entity gets a new
+ * ID in its new partition, reported to {@link MigrationListener}s. An entity
+ * with a component its target partition doesn't have stays where it is, and
+ * the rejection is reported instead.</li>
+ * <li>Messages sent during a tick are handed to the {@link MessageHandler}
+ * on the receiving partition's thread, right before its next tick.</li>
+ * </ul>
+ */
+public final class PartitionedWorld<M> implements AutoCloseable {
+
+    private static final Logger LOGGER = Logging.getLogger();
+
+    /**
+     * Handles the messages sent to a partition. Called on the partition's
+     * thread, before it ticks.
+     */
+    public interface MessageHandler<M> {
+
+        void onMessage(Partition<M> partition, M message);
+
+    }
+
+    /**
+     * Told about every migrated entity. Called on the thread calling
+     * {@link PartitionedWorld#tick(long)}, after all partitions ticked.
+     */
+    public interface MigrationListener {
+
+        void onMigrated(int fromPartition, int oldId, int toPartition, int newId);
+
+        /**
+         * Called for a migration that wasn't applied, because the target
+         * partition can't hold one of the entity's components. The entity is
+         * left untouched in its partition.
+         */
+        default void onRejected(int fromPartition, int entityId, int toPartition, Component missing) {
+        }
+
+    }
+
+    private static final class Migration {
+
+        private final int from;
+        private final int entityId;
+        private final int to;
+
+        Migration(int from, int entityId, int to) {
+            this.from = from;
+            this.entityId = entityId;
+            this.to = to;
+        }
+
+    }
+
+    /**
+     * One partition of the world, as seen by its systems.
+     */
+    public static final class Partition<M> {
+
+        private final PartitionedWorld<M> world;
+        private final int index;
+        private final Mailbox<M> mailbox = new Mailbox<>();
+        private final List<M> inbox = new ArrayList<>();
+        private final ExecutorService thread;
+        private CompEntAssoc assoc;
+
+        private Partition(PartitionedWorld<M> world, int index) {
+            this.world = world;
+            this.index = index;
+            this.thread = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("partition-" + index)
+                    .setDaemon(true)
+                    .build());
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public CompEntAssoc getAssoc() {
+            return assoc;
+        }
+
+        public PartitionedWorld<M> getWorld() {
+            return world;
+        }
+
+        /**
+         * Sends a message to a partition, possibly this one. It is handled
+         * before that partition's next tick. Safe to call from any thread.
+         */
+        public void send(int toPartition, M message) {
+            world.getPartition(toPartition).mailbox.post(message);
+        }
+
+        /**
+         * Moves an entity of this partition to another at the end of the
+         * tick. Entities removed before then are not moved. Safe to call
+         * from any thread.
+         */
+        public void migrate(int entityId, int toPartition) {
+            checkElementIndex(toPartition, world.partitions.size(), "partition");
+            world.migrations.post(new Migration(index, entityId, toPartition));
+        }
+
+        private void tick(long nanoDiff) {
+            for (M message : inbox) {
+                world.handler.onMessage(this, message);
+            }
+            inbox.clear();
+            assoc.tick(nanoDiff);
+        }
+
+    }
+
+    /**
+     * Builds a world.
+     * 
+     * @param factory
+     *            - the storage for each partition
+     * @param partitions
+     *            - the number of partitions
+     * @param systems
+     *            - makes the systems of each partition. Systems may keep
+     *            state, so each partition needs its own instances.
+     * @param handler
+     *            - handles messages between partitions
+     * @return the new world
+     */
+    public static <M> PartitionedWorld<M> create(CEAFactory factory, int partitions,
+            Function<Partition<M>, Iterable<CSystem>> systems, MessageHandler<M> handler) {
+        checkArgument(partitions > 0, "there must be at least one partition");
+        return new PartitionedWorld<>(factory, partitions, systems, handler);
+    }
+
+    private final ImmutableList<Partition<M>> partitions;
+    private final MessageHandler<M> handler;
+    private final Mailbox<Migration> migrations = new Mailbox<>();
+    private final List<MigrationListener> migrationListeners = new CopyOnWriteArrayList<>();
+
+    private PartitionedWorld(CEAFactory factory, int count, Function<Partition<M>, Iterable<CSystem>> systems,
+            MessageHandler<M> handler) {
+        this.handler = handler;
+        ImmutableList.Builder<Partition<M>> b = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            Partition<M> p = new Partition<>(this, i);
+            p.assoc = factory.build(systems.apply(p));
+            b.add(p);
+        }
+        this.partitions = b.build();
+    }
+
+    public int getPartitionCount() {
+        return partitions.size();
+    }
+
+    public Partition<M> getPartition(int index) {
+        checkElementIndex(index, partitions.size(), "partition");
+        return partitions.get(index);
+    }
+
+    public void addMigrationListener(MigrationListener listener) {
+        migrationListeners.add(listener);
+    }
+
+    /**
+     * Ticks every partition on its own thread, then, once all have finished,
+     * applies migrations and queues up messages for the next tick. Not
+     * thread-safe, one thread should drive the world.
+     * 
+     * <p>
+     * If a partition fails, the migrations and messages recorded during the
+     * tick are still applied and queued before the failure is thrown, so
+     * nothing carries over into a later tick.
+     * </p>
+     * 
+     * @param nanoDiff
+     *            - nanoseconds since last tick
+     */
+    public void tick(long nanoDiff) {
+        List<Future<?>> ticks = new ArrayList<>(partitions.size());
+        for (Partition<M> p : partitions) {
+            ticks.add(p.thread.submit(() -> p.tick(nanoDiff)));
+        }
+        // the barrier: wait for everyone, even if someone failed, so no
+        // partition is still running when we touch it below
+        Throwable failure = null;
+        for (Future<?> tick : ticks) {
+            try {
+                Uninterruptibles.getUninterruptibly(tick);
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                } else {
+                    failure.addSuppressed(e.getCause());
+                }
+            }
+        }
+        migrations.drain(this::migrate);
+        for (Partition<M> p : partitions) {
+            p.mailbox.drain(p.inbox::add);
+        }
+        if (failure != null) {
+            throw new IllegalStateException("a partition failed to tick", failure);
+        }
+    }
+
+    private void migrate(Migration m) {
+        CompEntAssoc from = partitions.get(m.from).assoc;
+        CompEntAssoc to = partitions.get(m.to).assoc;
+        if (m.from == m.to || !from.hasEntity(m.entityId)) {
+            return;
+        }
+        Prefab prefab = from.toPrefab(m.entityId);
+        // check before touching anything, so one bad migration doesn't stop the rest
+        for (Component c : prefab.getComponents()) {
+            if (!to.isRegistered(c)) {
+                LOGGER.warn("Not migrating entity {} from partition {} to {}, which has no component {}",
+                        m.entityId, m.from, m.to, c.getId());
+                for (MigrationListener listener : migrationListeners) {
+                    listener.onRejected(m.from, m.entityId, m.to, c);
+                }
+                return;
+            }
+        }
+        int newId = to.instantiate(prefab);
+        from.remove(m.entityId);
+        for (MigrationListener listener : migrationListeners) {
+            listener.onMigrated(m.from, m.entityId, m.to, newId);
+        }
+    }
+
+    /**
+     * Stops the partition threads. The partitions stay readable.
+     */
+    @Override
+    public void close() {
+        for (Partition<M> p : partitions) {
+            p.thread.shutdown();
+        }
+    }
+
+}
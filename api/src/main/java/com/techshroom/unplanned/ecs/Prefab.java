@@ -0,0 +1,228 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * A template for entities: a set of components and an initial value for each
+ * of their fields. The values are laid out once, when the prefab is built, so
+ * {@link CompEntAssoc#instantiate(Prefab) instantiating} only copies them
+ * into the new entity instead of writing defaults and then setting each
+ * field.
+ * 
+ * <p>
+ * Prefabs are immutable. Use {@link #with(ComponentField, Object)} for
+ * one-off overrides, or {@link #toBuilder()} to derive a new prefab.
+ * </p>
+ */
+public final class Prefab {
+
+    /**
+     * Sets up a template entity, e.g. {@code Plan::assign} of a generated
+     * entity plan.
+     */
+    @FunctionalInterface
+    public interface Template {
+
+        void assign(int entityId, CompEntAssoc assoc);
+
+    }
+
+    public static Builder builder(Component... components) {
+        return builder(Arrays.asList(components));
+    }
+
+    /**
+     * @param components
+     *            - the components of the prefab's entities
+     * @return a builder with every field of the components at its default
+     *         value
+     */
+    public static Builder builder(Iterable<Component> components) {
+        ImmutableSet<Component> comps = ImmutableSet.copyOf(components);
+        Map<ComponentField<?>, Object> values = new LinkedHashMap<>();
+        for (Component c : comps) {
+            for (ComponentField<?> f : c.getFields().values()) {
+                values.put(f, f.getType().defaultValue);
+            }
+        }
+        return new Builder(comps, values);
+    }
+
+    public static Prefab compile(Template template, Component... components) {
+        return compile(template, Arrays.asList(components));
+    }
+
+    /**
+     * Compiles code that sets up an entity into a prefab. The template is run
+     * once, on a scratch entity, and the values it leaves behind become the
+     * prefab's values. This works for anything that sets values through a
+     * {@link CompEntAssoc}, including {@link ComplexComponent complex
+     * components}.
+     * 
+     * @param template
+     *            - sets up the entity
+     * @param components
+     *            - the components of the prefab's entities
+     * @return the compiled prefab
+     */
+    public static Prefab compile(Template template, Iterable<Component> components) {
+        ImmutableSet<Component> comps = ImmutableSet.copyOf(components);
+        CompEntAssoc scratch = ObjectCEAFactory.$.build(new CSystem() {
+
+            @Override
+            public Set<Component> getComponents() {
+                return comps;
+            }
+
+            @Override
+            public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
+            }
+        });
+        int e = scratch.newEntity(comps);
+        template.assign(e, scratch);
+        return of(scratch, e, comps);
+    }
+
+    /**
+     * Copies an existing entity into a prefab.
+     * 
+     * @param assoc
+     *            - the CEA of the entity
+     * @param entityId
+     *            - the entity to copy
+     * @param components
+     *            - the components to copy, which the entity must have
+     * @return a prefab of the entity
+     */
+    public static Prefab of(CompEntAssoc assoc, int entityId, Iterable<Component> components) {
+        Builder b = builder(components);
+        for (ComponentField<?> f : b.values.keySet()) {
+            b.values.put(f, assoc.get(entityId, f));
+        }
+        return b.build();
+    }
+
+    public static final class Builder {
+
+        private final ImmutableSet<Component> components;
+        private final Map<ComponentField<?>, Object> values;
+
+        private Builder(ImmutableSet<Component> components, Map<ComponentField<?>, Object> values) {
+            this.components = components;
+            this.values = values;
+        }
+
+        public <T> Builder set(ComponentField<T> field, T value) {
+            checkArgument(values.containsKey(field), "field %s is not part of this prefab", field);
+            checkArgument(value != null, "values may not be null");
+            values.put(field, value);
+            return this;
+        }
+
+        public Prefab build() {
+            return new Prefab(components, ImmutableMap.copyOf(values));
+        }
+
+    }
+
+    private final ImmutableSet<Component> components;
+    private final ImmutableMap<ComponentField<?>, Object> values;
+    private final ImmutableList<ComponentField<?>> fields;
+    // one single-slot column per field, in the order of fields, for storages
+    // that copy columns
+    private final Column[] row;
+
+    private Prefab(ImmutableSet<Component> components, ImmutableMap<ComponentField<?>, Object> values) {
+        this.components = components;
+        this.values = values;
+        this.fields = values.keySet().asList();
+        this.row = new Column[fields.size()];
+        for (int i = 0; i < row.length; i++) {
+            ComponentField<?> f = fields.get(i);
+            Column col = Column.create(f.getType(), 1);
+            col.attach(0);
+            col.set(0, values.get(f));
+            row[i] = col;
+        }
+    }
+
+    public ImmutableSet<Component> getComponents() {
+        return components;
+    }
+
+    public <T> T get(ComponentField<T> field) {
+        Object value = values.get(field);
+        checkArgument(value != null, "field %s is not part of this prefab", field);
+        return field.getType().type.cast(value);
+    }
+
+    /**
+     * @return a prefab with the same values, except for the given field
+     */
+    public <T> Prefab with(ComponentField<T> field, T value) {
+        return toBuilder().set(field, value).build();
+    }
+
+    public Builder toBuilder() {
+        return new Builder(components, new LinkedHashMap<>(values));
+    }
+
+    /**
+     * @return every field of the prefab with its value
+     */
+    ImmutableMap<ComponentField<?>, Object> getValues() {
+        return values;
+    }
+
+    ImmutableList<ComponentField<?>> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return a single-slot column holding the value of the field at
+     *         {@code index} in {@link #getFields()}, at slot 0
+     */
+    Column getColumn(int index) {
+        return row[index];
+    }
+
+    @Override
+    public String toString() {
+        return "Prefab" + values;
+    }
+
+}
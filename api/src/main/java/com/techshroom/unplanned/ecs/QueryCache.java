@@ -0,0 +1,141 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.eclipse.collections.api.set.primitive.IntSet;
+import org.eclipse.collections.api.set.primitive.MutableIntSet;
+import org.eclipse.collections.impl.factory.primitive.IntSets;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Matching entity sets for multi-component queries, kept up to date as
+ * components are attached and detached. Queries are registered the first
+ * time they are asked for, and stay registered.
+ */
+final class QueryCache {
+
+    private static final class Query {
+
+        private final ImmutableSet<Component> components;
+        private final MutableIntSet entities;
+        private final IntSet view;
+
+        Query(ImmutableSet<Component> components, MutableIntSet entities) {
+            this.components = components;
+            this.entities = entities;
+            this.view = entities.asUnmodifiable();
+        }
+
+    }
+
+    private final Function<Component, IntSet> membership;
+    private final Map<Set<Component>, Query> queries = new ConcurrentHashMap<>();
+    private final Map<Component, List<Query>> byComponent = new HashMap<>();
+
+    /**
+     * @param membership
+     *            - gets the entities that have a component
+     */
+    QueryCache(Function<Component, IntSet> membership) {
+        this.membership = membership;
+    }
+
+    IntSet get(Iterable<Component> components) {
+        Set<Component> key = components instanceof Set
+                ? (Set<Component>) components
+                : ImmutableSet.copyOf(components);
+        Query q = queries.get(key);
+        if (q == null) {
+            q = register(key);
+        }
+        return q.view;
+    }
+
+    // registration may happen from systems running in parallel
+    synchronized Query register(Set<Component> components) {
+        Query q = queries.get(components);
+        if (q != null) {
+            return q;
+        }
+        ImmutableSet<Component> key = ImmutableSet.copyOf(components);
+        MutableIntSet entities = null;
+        for (Component c : key) {
+            IntSet has = membership.apply(c);
+            if (entities == null) {
+                entities = IntSets.mutable.ofAll(has);
+            } else {
+                entities.retainAll(has);
+            }
+        }
+        q = new Query(key, entities == null ? IntSets.mutable.empty() : entities);
+        for (Component c : key) {
+            byComponent.computeIfAbsent(c, k -> new ArrayList<>()).add(q);
+        }
+        queries.put(key, q);
+        return q;
+    }
+
+    void componentAdded(int entityId, Component component) {
+        List<Query> affected = byComponent.get(component);
+        if (affected == null) {
+            return;
+        }
+        for (Query q : affected) {
+            if (hasAll(entityId, q.components)) {
+                q.entities.add(entityId);
+            }
+        }
+    }
+
+    void componentRemoved(int entityId, Component component) {
+        List<Query> affected = byComponent.get(component);
+        if (affected == null) {
+            return;
+        }
+        for (Query q : affected) {
+            q.entities.remove(entityId);
+        }
+    }
+
+    private boolean hasAll(int entityId, Set<Component> components) {
+        for (Component c : components) {
+            if (!membership.apply(c).contains(entityId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits a range of work items in half until it is small enough, then runs
+ * each part on the fork-join pool of the calling thread, or the common pool.
+ * Splits are only made where {@link Boundary#canSplitAt(int)} allows it, so
+ * items sharing storage words stay on one thread.
+ */
+final class RangeTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    interface Action {
+
+        void run(int from, int to);
+
+    }
+
+    interface Boundary {
+
+        /**
+         * @return {@code true} if items {@code at - 1} and {@code at} may be
+         *         processed on different threads
+         */
+        boolean canSplitAt(int at);
+
+    }
+
+    static void run(int size, int grain, Boundary boundary, Action action) {
+        if (size <= 0) {
+            return;
+        }
+        new RangeTask(0, size, grain, boundary, action).invoke();
+    }
+
+    private final int from;
+    private final int to;
+    private final int grain;
+    private final Boundary boundary;
+    private final Action action;
+
+    private RangeTask(int from, int to, int grain, Boundary boundary, Action action) {
+        this.from = from;
+        this.to = to;
+        this.grain = grain;
+        this.boundary = boundary;
+        this.action = action;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from > grain) {
+            int mid = (from + to) >>> 1;
+            while (mid < to && !boundary.canSplitAt(mid)) {
+                mid++;
+            }
+            if (mid < to) {
+                invokeAll(new RangeTask(from, mid, grain, boundary, action),
+                        new RangeTask(mid, to, grain, boundary, action));
+                return;
+            }
+        }
+        action.run(from, to);
+    }
+
+}
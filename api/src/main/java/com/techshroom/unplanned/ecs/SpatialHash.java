@@ -0,0 +1,373 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+
+import com.google.common.primitives.Ints;
+
+/**
+ * Uniform grid index over a position component with two integer fields.
+ * Entities are bucketed by the grid cell they are in, so point, rectangle and
+ * radius queries only look at nearby entities instead of every entity with
+ * the component.
+ *
+ * <p>
+ * The index watches the position component, and catches up on changed
+ * entities at the next query. Queries fill a caller-provided array, so they
+ * don't allocate. Queries may be made from several threads, but may not see
+ * writes that race with them.
+ * </p>
+ */
+public final class SpatialHash implements ComponentWatcher {
+
+    private static final int NONE = -1;
+    private static final int INITIAL_BUCKETS = 1024;
+
+    /**
+     * Creates an index of all entities with a position component, now and
+     * later.
+     *
+     * @param assoc
+     *            - the CEA to index
+     * @param position
+     *            - the position component
+     * @param x
+     *            - the X field of the position component
+     * @param y
+     *            - the Y field of the position component
+     * @param cellSize
+     *            - the width and height of a grid cell. Queries are fastest
+     *            when this is near the usual query size.
+     * @return the index, already registered with the CEA
+     */
+    public static SpatialHash create(CompEntAssoc assoc, Component position, ComponentField<Integer> x,
+            ComponentField<Integer> y, int cellSize) {
+        checkArgument(assoc instanceof AbstractCEA, "spatial hashes need an AbstractCEA, not %s", assoc.getClass());
+        checkArgument(position.getFields().containsValue(x) && position.getFields().containsValue(y),
+                "%s and %s must be fields of %s", x, y, position);
+        checkArgument(cellSize > 0, "cell size must be positive");
+        SpatialHash hash = new SpatialHash((AbstractCEA) assoc, position, x, y, cellSize);
+        assoc.addWatcher(hash);
+        assoc.getEntities(position).forEach(hash::onChange);
+        return hash;
+    }
+
+    private final AbstractCEA assoc;
+    private final Component position;
+    private final ComponentField<Integer> x;
+    private final ComponentField<Integer> y;
+    private final int cellSize;
+
+    // bucket -> first entity index in it
+    private int[] buckets = new int[INITIAL_BUCKETS];
+    // per entity index, a doubly-linked list through each bucket
+    private int[] handles = new int[0];
+    private int[] xs = new int[0];
+    private int[] ys = new int[0];
+    private int[] next = new int[0];
+    private int[] prev = new int[0];
+    private int[] bucketOf = new int[0];
+    private int size;
+
+    // entity indices to look at before the next query
+    private long[] dirtyBits = new long[0];
+    private int[] dirty = new int[16];
+    private int dirtyCount;
+
+    private SpatialHash(AbstractCEA assoc, Component position, ComponentField<Integer> x, ComponentField<Integer> y,
+            int cellSize) {
+        this.assoc = assoc;
+        this.position = position;
+        this.x = x;
+        this.y = y;
+        this.cellSize = cellSize;
+        Arrays.fill(buckets, NONE);
+    }
+
+    @Override
+    public Component getWatchedComponent() {
+        return position;
+    }
+
+    @Override
+    public synchronized void onChange(int entityId) {
+        int index = EntityAllocator.index(entityId);
+        if (index >= dirtyBits.length << 6) {
+            dirtyBits = Arrays.copyOf(dirtyBits, Math.max(Column.words(index + 1), dirtyBits.length * 2));
+        }
+        if (Column.getBit(dirtyBits, index)) {
+            return;
+        }
+        Column.setBit(dirtyBits, index, true);
+        if (dirtyCount == dirty.length) {
+            dirty = Arrays.copyOf(dirty, dirty.length * 2);
+        }
+        dirty[dirtyCount++] = index;
+    }
+
+    /**
+     * @return the number of indexed entities
+     */
+    public synchronized int size() {
+        update();
+        return size;
+    }
+
+    private int read(int entityId, ComponentField<Integer> field) {
+        if (field instanceof IntComponentField) {
+            return assoc.getInt(entityId, (IntComponentField) field);
+        }
+        return assoc.get(entityId, field);
+    }
+
+    private void update() {
+        for (int i = 0; i < dirtyCount; i++) {
+            int index = dirty[i];
+            Column.setBit(dirtyBits, index, false);
+            // the entity at the index may have been replaced since
+            int entityId = assoc.getAllocator().handleAt(index);
+            if (entityId != 0 && assoc.hasComponent(entityId, position)) {
+                place(index, entityId, read(entityId, x), read(entityId, y));
+            } else if (index < handles.length && handles[index] != 0) {
+                unlink(index);
+                handles[index] = 0;
+                size--;
+            }
+        }
+        dirtyCount = 0;
+    }
+
+    private void ensureCapacity(int index) {
+        if (index < handles.length) {
+            return;
+        }
+        int capacity = Math.max(index + 1, handles.length * 2);
+        handles = Arrays.copyOf(handles, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        bucketOf = Arrays.copyOf(bucketOf, capacity);
+    }
+
+    private int cell(int coordinate) {
+        return Math.floorDiv(coordinate, cellSize);
+    }
+
+    private int bucket(int cellX, int cellY) {
+        int h = cellX * 0x9E3779B1 + cellY * 0x85EBCA6B;
+        return (h ^ (h >>> 16)) & (buckets.length - 1);
+    }
+
+    private void place(int index, int entityId, int px, int py) {
+        ensureCapacity(index);
+        int bucket = bucket(cell(px), cell(py));
+        if (handles[index] == 0) {
+            size++;
+        } else if (bucketOf[index] == bucket) {
+            handles[index] = entityId;
+            xs[index] = px;
+            ys[index] = py;
+            return;
+        } else {
+            unlink(index);
+        }
+        handles[index] = entityId;
+        xs[index] = px;
+        ys[index] = py;
+        link(index, bucket);
+        if (size > buckets.length * 2) {
+            rehash(buckets.length * 2);
+        }
+    }
+
+    private void link(int index, int bucket) {
+        int head = buckets[bucket];
+        next[index] = head;
+        prev[index] = NONE;
+        if (head != NONE) {
+            prev[head] = index;
+        }
+        buckets[bucket] = index;
+        bucketOf[index] = bucket;
+    }
+
+    private void unlink(int index) {
+        int p = prev[index];
+        int n = next[index];
+        if (p == NONE) {
+            buckets[bucketOf[index]] = n;
+        } else {
+            next[p] = n;
+        }
+        if (n != NONE) {
+            prev[n] = p;
+        }
+    }
+
+    private void rehash(int bucketCount) {
+        buckets = new int[bucketCount];
+        Arrays.fill(buckets, NONE);
+        for (int index = 0; index < handles.length; index++) {
+            if (handles[index] != 0) {
+                link(index, bucket(cell(xs[index]), cell(ys[index])));
+            }
+        }
+    }
+
+    /**
+     * Finds the entities at a point.
+     *
+     * @param px
+     *            - the X coordinate
+     * @param py
+     *            - the Y coordinate
+     * @param out
+     *            - receives as many of the entities as fit
+     * @return the number of entities found, which may be more than
+     *         {@code out.length}
+     */
+    public synchronized int queryPoint(int px, int py, int[] out) {
+        return queryRect(px, py, px, py, out);
+    }
+
+    /**
+     * Finds the entities in a rectangle.
+     *
+     * @param minX
+     *            - the lowest X coordinate, inclusive
+     * @param minY
+     *            - the lowest Y coordinate, inclusive
+     * @param maxX
+     *            - the highest X coordinate, inclusive
+     * @param maxY
+     *            - the highest Y coordinate, inclusive
+     * @param out
+     *            - receives as many of the entities as fit
+     * @return the number of entities found, which may be more than
+     *         {@code out.length}
+     */
+    public synchronized int queryRect(int minX, int minY, int maxX, int maxY, int[] out) {
+        return query(minX, minY, maxX, maxY, -1, 0, 0, out);
+    }
+
+    /**
+     * Finds the entities within a distance of a point.
+     *
+     * @param px
+     *            - the X coordinate of the center
+     * @param py
+     *            - the Y coordinate of the center
+     * @param radius
+     *            - the largest distance to include
+     * @param out
+     *            - receives as many of the entities as fit
+     * @return the number of entities found, which may be more than
+     *         {@code out.length}
+     */
+    public synchronized int queryRadius(int px, int py, int radius, int[] out) {
+        checkArgument(radius >= 0, "radius must not be negative");
+        // clamped, no entity can be outside the int range anyway
+        return query(Ints.saturatedCast((long) px - radius), Ints.saturatedCast((long) py - radius),
+                Ints.saturatedCast((long) px + radius), Ints.saturatedCast((long) py + radius),
+                (long) radius * radius, px, py, out);
+    }
+
+    private int query(int minX, int minY, int maxX, int maxY, long radiusSq, int cx, int cy, int[] out) {
+        update();
+        if (minX > maxX || minY > maxY) {
+            return 0;
+        }
+        int cellMinX = cell(minX);
+        int cellMinY = cell(minY);
+        int cellMaxX = cell(maxX);
+        int cellMaxY = cell(maxY);
+        long cells = ((long) cellMaxX - cellMinX + 1) * ((long) cellMaxY - cellMinY + 1);
+        int found = 0;
+        if (cells > buckets.length) {
+            // cheaper to look at every bucket once
+            for (int b = 0; b < buckets.length; b++) {
+                found = scan(buckets[b], minX, minY, maxX, maxY, radiusSq, cx, cy, out, found);
+            }
+            return found;
+        }
+        for (int i = cellMinX; i <= cellMaxX; i++) {
+            for (int j = cellMinY; j <= cellMaxY; j++) {
+                found = scanCell(i, j, minX, minY, maxX, maxY, radiusSq, cx, cy, out, found);
+            }
+        }
+        return found;
+    }
+
+    private int scanCell(int cellX, int cellY, int minX, int minY, int maxX, int maxY, long radiusSq, int cx,
+            int cy, int[] out, int found) {
+        // a bucket may hold other cells too, only take this cell's entities
+        // so they aren't reported twice
+        for (int index = buckets[bucket(cellX, cellY)]; index != NONE; index = next[index]) {
+            if (cell(xs[index]) == cellX && cell(ys[index]) == cellY
+                    && matches(index, minX, minY, maxX, maxY, radiusSq, cx, cy)) {
+                if (found < out.length) {
+                    out[found] = handles[index];
+                }
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private int scan(int head, int minX, int minY, int maxX, int maxY, long radiusSq, int cx, int cy, int[] out,
+            int found) {
+        for (int index = head; index != NONE; index = next[index]) {
+            if (matches(index, minX, minY, maxX, maxY, radiusSq, cx, cy)) {
+                if (found < out.length) {
+                    out[found] = handles[index];
+                }
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private boolean matches(int index, int minX, int minY, int maxX, int maxY, long radiusSq, int cx, int cy) {
+        int px = xs[index];
+        int py = ys[index];
+        if (px < minX || px > maxX || py < minY || py > maxY) {
+            return false;
+        }
+        if (radiusSq < 0) {
+            return true;
+        }
+        // inside the box, so |dx| and |dy| are at most the radius, and the
+        // sum of their squares fits a long
+        long dx = (long) px - cx;
+        long dy = (long) py - cy;
+        return dx * dx + dy * dy <= radiusSq;
+    }
+
+}
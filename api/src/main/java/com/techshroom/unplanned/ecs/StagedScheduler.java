@@ -0,0 +1,148 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Groups systems into stages using their declared reads and writes. Each
+ * system goes in the stage after the last earlier system it conflicts with,
+ * so conflicting systems always keep their registration order. Recorded
+ * commands are played back after every stage.
+ */
+final class StagedScheduler implements SystemScheduler {
+
+    static boolean conflicts(CSystem a, CSystem b) {
+        if (a.isExclusive() || b.isExclusive()) {
+            return true;
+        }
+        return intersects(a.getWriteComponents(), b.getReadComponents())
+                || intersects(a.getWriteComponents(), b.getWriteComponents())
+                || intersects(b.getWriteComponents(), a.getReadComponents());
+    }
+
+    private static boolean intersects(Set<Component> a, Set<Component> b) {
+        return !Collections.disjoint(a, b);
+    }
+
+    private static final class StageImpl implements Stage {
+
+        private final List<CSystem> systems;
+        private volatile long lastTickNanos;
+
+        StageImpl(List<CSystem> systems) {
+            this.systems = systems;
+        }
+
+        @Override
+        public List<CSystem> getSystems() {
+            return systems;
+        }
+
+        @Override
+        public long getLastTickNanos() {
+            return lastTickNanos;
+        }
+
+    }
+
+    private final ImmutableList<Stage> stages;
+    @Nullable
+    private final ForkJoinPool pool;
+
+    StagedScheduler(List<CSystem> systems, @Nullable ForkJoinPool pool) {
+        this.pool = pool;
+        int[] stageOf = new int[systems.size()];
+        List<List<CSystem>> grouped = new ArrayList<>();
+        for (int i = 0; i < systems.size(); i++) {
+            CSystem sys = systems.get(i);
+            int stage = 0;
+            for (int j = 0; j < i; j++) {
+                if (stageOf[j] >= stage && conflicts(systems.get(j), sys)) {
+                    stage = stageOf[j] + 1;
+                }
+            }
+            stageOf[i] = stage;
+            if (stage == grouped.size()) {
+                grouped.add(new ArrayList<>());
+            }
+            grouped.get(stage).add(sys);
+        }
+        ImmutableList.Builder<Stage> b = ImmutableList.builder();
+        for (List<CSystem> group : grouped) {
+            b.add(new StageImpl(ImmutableList.copyOf(group)));
+        }
+        this.stages = b.build();
+    }
+
+    @Override
+    public List<Stage> getStages() {
+        return stages;
+    }
+
+    @Override
+    public void tick(CompEntAssoc assoc, long nanoDiff) {
+        SystemProfiler profiler = assoc.getProfiler();
+        for (Stage stage : stages) {
+            StageImpl impl = (StageImpl) stage;
+            long start = System.nanoTime();
+            if (pool == null || impl.systems.size() == 1) {
+                impl.systems.forEach(sys -> profiler.run(sys, assoc, nanoDiff));
+            } else {
+                runParallel(impl.systems, profiler, assoc, nanoDiff);
+            }
+            assoc.playbackCommands();
+            impl.lastTickNanos = System.nanoTime() - start;
+        }
+    }
+
+    private void runParallel(List<CSystem> systems, SystemProfiler profiler, CompEntAssoc assoc, long nanoDiff) {
+        pool.invoke(new RecursiveAction() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                List<ForkJoinTask<?>> tasks = new ArrayList<>(systems.size());
+                for (CSystem sys : systems) {
+                    tasks.add(ForkJoinTask.adapt(() -> profiler.run(sys, assoc, nanoDiff)));
+                }
+                invokeAll(tasks);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,263 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+
+import com.google.common.collect.ImmutableList;
+import com.techshroom.unplanned.core.util.Logging;
+
+/**
+ * Records how long each system of a CEA takes per tick. The last
+ * {@link #getCapacity()} runs of every system are kept in preallocated ring
+ * buffers, and summarized with percentiles on request.
+ *
+ * <p>
+ * Profiling is off by default. When off, it costs one flag check per system
+ * per tick, so it can be left in production builds and switched on when
+ * needed.
+ * </p>
+ *
+ * <p>
+ * Besides wall time, each run records the number of entities the system
+ * processed, as reported through {@link #countProcessed(int)}, and, on JVMs
+ * that support it, the bytes allocated by the ticking thread. Allocations
+ * made on other threads, e.g. by {@link ParallelCSystem}s, are not counted.
+ * </p>
+ */
+public final class SystemProfiler {
+
+    private static final Logger LOGGER = Logging.getLogger();
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        try {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+                if (sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled()) {
+                    return sun;
+                }
+            }
+        } catch (LinkageError e) {
+            // not a HotSpot-like JVM
+        }
+        return null;
+    }
+
+    /**
+     * The processed-entity count of the run in progress on each thread, or
+     * {@code null} if that thread isn't running a profiled system.
+     */
+    private static final ThreadLocal<int[]> PROCESSED = new ThreadLocal<>();
+
+    /**
+     * Adds to the number of entities processed by the system this thread is
+     * running. The {@code processList} implementations in this package report
+     * for themselves; systems that override it to call
+     * {@link CSystem#process(int, CompEntAssoc, long)} directly should report
+     * their count once per run. Does nothing unless the run is profiled.
+     * 
+     * @param entities
+     *            - the number of entities processed
+     */
+    public static void countProcessed(int entities) {
+        int[] processed = PROCESSED.get();
+        if (processed != null) {
+            processed[0] += entities;
+        }
+    }
+
+    private static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static final class Samples {
+
+        private final CSystem system;
+        private final long[] nanos;
+        private final int[] entities;
+        private final long[] allocated;
+        private int next;
+        private int size;
+
+        Samples(CSystem system, int capacity) {
+            this.system = system;
+            this.nanos = new long[capacity];
+            this.entities = new int[capacity];
+            this.allocated = new long[capacity];
+        }
+
+        synchronized void add(long time, int entityCount, long allocatedBytes) {
+            nanos[next] = time;
+            entities[next] = entityCount;
+            allocated[next] = allocatedBytes;
+            next = (next + 1) % nanos.length;
+            size = Math.min(size + 1, nanos.length);
+        }
+
+        synchronized void clear() {
+            next = 0;
+            size = 0;
+        }
+
+        synchronized SystemStats summarize() {
+            if (size == 0) {
+                return SystemStats.create(system, 0, 0, 0, 0, 0, 0, 0, THREADS == null ? -1 : 0);
+            }
+            long[] sorted = Arrays.copyOf(nanos, size);
+            Arrays.sort(sorted);
+            long totalNanos = 0;
+            long totalEntities = 0;
+            long totalAllocated = 0;
+            for (int i = 0; i < size; i++) {
+                totalNanos += nanos[i];
+                totalEntities += entities[i];
+                totalAllocated += allocated[i];
+            }
+            return SystemStats.create(system, size, totalNanos / size,
+                    percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), sorted[size - 1],
+                    totalEntities / (double) size, THREADS == null ? -1 : totalAllocated / size);
+        }
+
+        private static long percentile(long[] sorted, int percent) {
+            // nearest rank
+            int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+            return sorted[Math.max(rank, 1) - 1];
+        }
+
+    }
+
+    private final ImmutableList<CSystem> systems;
+    private final Map<CSystem, Samples> samples = new IdentityHashMap<>();
+    private final int capacity;
+    private volatile boolean enabled;
+
+    SystemProfiler(List<CSystem> systems, int capacity) {
+        checkArgument(capacity > 0, "capacity must be positive");
+        this.systems = ImmutableList.copyOf(systems);
+        this.capacity = capacity;
+        for (CSystem sys : this.systems) {
+            samples.put(sys, new Samples(sys, capacity));
+        }
+    }
+
+    /**
+     * @return the number of runs kept per system
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Runs {@link CSystem#processList(CompEntAssoc, long)}, recording it if
+     * profiling is on. Called by {@link SystemScheduler}s.
+     */
+    public void run(CSystem system, CompEntAssoc assoc, long nanoDiff) {
+        if (!enabled) {
+            system.processList(assoc, nanoDiff);
+            return;
+        }
+        Samples s = samples.get(system);
+        if (s == null) {
+            system.processList(assoc, nanoDiff);
+            return;
+        }
+        int[] processed = { 0 };
+        int[] outer = PROCESSED.get();
+        PROCESSED.set(processed);
+        try {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            system.processList(assoc, nanoDiff);
+            long time = System.nanoTime() - start;
+            s.add(time, processed[0], allocatedBytes() - allocatedBefore);
+        } finally {
+            PROCESSED.set(outer);
+        }
+    }
+
+    /**
+     * Forgets all recorded runs.
+     */
+    public void reset() {
+        samples.values().forEach(Samples::clear);
+    }
+
+    /**
+     * @return the summary of a system's recent runs
+     */
+    public SystemStats getStats(CSystem system) {
+        Samples s = samples.get(system);
+        checkArgument(s != null, "%s is not a system of this CEA", system);
+        return s.summarize();
+    }
+
+    /**
+     * @return the summaries of all systems, in registration order
+     */
+    public List<SystemStats> getStats() {
+        ImmutableList.Builder<SystemStats> stats = ImmutableList.builder();
+        for (CSystem sys : systems) {
+            stats.add(samples.get(sys).summarize());
+        }
+        return stats.build();
+    }
+
+    /**
+     * Writes the summaries of all systems to the log.
+     */
+    public void logStats() {
+        StringBuilder out = new StringBuilder("System profile (last ").append(capacity).append(" ticks):");
+        for (SystemStats stats : getStats()) {
+            out.append(String.format("%n  %s: n=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms"
+                    + " entities=%.1f alloc=%dB",
+                    stats.getSystem(), stats.getSamples(), stats.getMeanNanos() / 1e6, stats.getP50Nanos() / 1e6,
+                    stats.getP90Nanos() / 1e6, stats.getP99Nanos() / 1e6, stats.getMaxNanos() / 1e6,
+                    stats.getMeanEntities(), stats.getMeanAllocatedBytes()));
+        }
+        LOGGER.info(out.toString());
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import java.util.List;
+
+/**
+ * Decides how the systems of a {@link CompEntAssoc} are run each tick.
+ * Systems are grouped into stages: systems in the same stage do not
+ * conflict, and stages run one after another in a fixed order. Commands
+ * recorded in {@link CompEntAssoc#commands()} are played back between
+ * stages.
+ */
+public interface SystemScheduler {
+
+    interface Factory {
+
+        SystemScheduler create(List<CSystem> systems);
+
+    }
+
+    interface Stage {
+
+        /**
+         * @return the systems of this stage, in registration order
+         */
+        List<CSystem> getSystems();
+
+        /**
+         * @return how long this stage took during the last tick, in
+         *         nanoseconds
+         */
+        long getLastTickNanos();
+
+    }
+
+    /**
+     * @return the stages, in the order they run
+     */
+    List<Stage> getStages();
+
+    /**
+     * Ticks all systems.
+     * 
+     * @param assoc
+     *            - the CEA the systems belong to
+     * @param nanoDiff
+     *            - nanoseconds since last tick
+     */
+    void tick(CompEntAssoc assoc, long nanoDiff);
+
+}
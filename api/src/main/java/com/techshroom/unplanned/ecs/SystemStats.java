@@ -0,0 +1,73 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * Summary of the recent runs of a system, from {@link SystemProfiler}.
+ */
+@AutoValue
+public abstract class SystemStats {
+
+    static SystemStats create(CSystem system, int samples, long meanNanos, long p50Nanos, long p90Nanos,
+            long p99Nanos, long maxNanos, double meanEntities, long meanAllocatedBytes) {
+        return new AutoValue_SystemStats(system, samples, meanNanos, p50Nanos, p90Nanos, p99Nanos, maxNanos,
+                meanEntities, meanAllocatedBytes);
+    }
+
+    SystemStats() {
+    }
+
+    public abstract CSystem getSystem();
+
+    /**
+     * @return the number of runs summarized
+     */
+    public abstract int getSamples();
+
+    public abstract long getMeanNanos();
+
+    public abstract long getP50Nanos();
+
+    public abstract long getP90Nanos();
+
+    public abstract long getP99Nanos();
+
+    public abstract long getMaxNanos();
+
+    /**
+     * @return the mean number of entities the system processed per run
+     */
+    public abstract double getMeanEntities();
+
+    /**
+     * @return the mean bytes allocated by the ticking thread while the system
+     *         ran, or {@code -1} if the JVM can't measure it
+     */
+    public abstract long getMeanAllocatedBytes();
+
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs.defaults;
+
+import com.techshroom.unplanned.ecs.CSystem;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+import com.techshroom.unplanned.ecs.Component;
+import com.techshroom.unplanned.ecs.SystemProfiler;
+
+/**
+ * A system that spreads a pass over its entities across several ticks,
+ * stopping each tick once {@link #getBudgetNanos()} of wall time is used. A
+ * new pass starts when the last one is done and {@link #getIntervalNanos()}
+ * has passed since the last one started. This avoids the single slow tick an
+ * interval system has when it processes a large set at once.
+ *
+ * <p>
+ * The entities of a pass are fixed when it starts. Entities removed, or that
+ * lost one of the components, before their turn are skipped, and entities
+ * added during a pass wait for the next one. {@code nanoDiff} is the time
+ * covered by the previous pass, roughly the time since the entity was last
+ * processed.
+ * </p>
+ */
+public abstract class BudgetedCSystem implements CSystem {
+
+    /**
+     * How many entities to process between clock checks.
+     */
+    private static final int CHECK_EVERY = 16;
+    private static final int[] NO_ENTITIES = new int[0];
+
+    private int[] pending = NO_ENTITIES;
+    private int cursor;
+    private long sincePassStart;
+    private long lastPassNanos;
+
+    /**
+     * @return the wall time each tick may spend processing, in nanoseconds
+     */
+    protected abstract long getBudgetNanos();
+
+    /**
+     * @return the shortest time between the starts of two passes, in
+     *         nanoseconds. Defaults to {@code 0}, starting a new pass as soon
+     *         as the last one is done.
+     */
+    protected long getIntervalNanos() {
+        return 0;
+    }
+
+    @Override
+    public void processList(CompEntAssoc assoc, long nanoDiff) {
+        sincePassStart += nanoDiff;
+        if (cursor == pending.length) {
+            if (sincePassStart < getIntervalNanos()) {
+                return;
+            }
+            pending = assoc.getEntities(getComponents()).toArray();
+            cursor = 0;
+            lastPassNanos = sincePassStart;
+            sincePassStart = 0;
+        }
+        long deadline = System.nanoTime() + getBudgetNanos();
+        int processed = 0;
+        while (cursor < pending.length) {
+            int e = pending[cursor++];
+            if (isStillMatching(e, assoc)) {
+                process(e, assoc, lastPassNanos);
+                processed++;
+            }
+            if (cursor % CHECK_EVERY == 0 && System.nanoTime() - deadline >= 0) {
+                break;
+            }
+        }
+        SystemProfiler.countProcessed(processed);
+    }
+
+    private boolean isStillMatching(int entityId, CompEntAssoc assoc) {
+        if (!assoc.hasEntity(entityId)) {
+            return false;
+        }
+        for (Component c : getComponents()) {
+            if (!assoc.hasComponent(entityId, c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return how much of the current pass is done, from {@code 0} to
+     *         {@code 1}
+     */
+    public double getPassProgress() {
+        return pending.length == 0 ? 1 : cursor / (double) pending.length;
+    }
+
+}
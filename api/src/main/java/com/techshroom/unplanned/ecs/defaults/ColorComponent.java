@@ -30,55 +30,55 @@ import java.util.Map;
 import com.google.auto.value.AutoValue;
 import com.google.auto.value.extension.memoized.Memoized;
 import com.techshroom.unplanned.core.util.Color;
-import com.techshroom.unplanned.ecs.CFType;
 import com.techshroom.unplanned.ecs.CompEntAssoc;
 import com.techshroom.unplanned.ecs.ComplexComponent;
 import com.techshroom.unplanned.ecs.Component;
 import com.techshroom.unplanned.ecs.ComponentField;
+import com.techshroom.unplanned.ecs.IntComponentField;
 
 @AutoValue
 public abstract class ColorComponent extends ComplexComponent<Color> {
 
     public static final ColorComponent INSTANCE = new AutoValue_ColorComponent();
 
-    private final ComponentField<Integer> r = ComponentField.createNoId(getId(), "r", CFType.INTEGER);
-    private final ComponentField<Integer> g = ComponentField.createNoId(getId(), "g", CFType.INTEGER);
-    private final ComponentField<Integer> b = ComponentField.createNoId(getId(), "b", CFType.INTEGER);
-    private final ComponentField<Integer> a = ComponentField.createNoId(getId(), "a", CFType.INTEGER);
+    private final IntComponentField r = IntComponentField.createNoId(getId(), "r");
+    private final IntComponentField g = IntComponentField.createNoId(getId(), "g");
+    private final IntComponentField b = IntComponentField.createNoId(getId(), "b");
+    private final IntComponentField a = IntComponentField.createNoId(getId(), "a");
 
     ColorComponent() {
     }
 
     @Override
     public void set(CompEntAssoc assoc, int entityId, Color color) {
-        assoc.set(entityId, this.r, color.getRed());
-        assoc.set(entityId, this.g, color.getGreen());
-        assoc.set(entityId, this.b, color.getBlue());
-        assoc.set(entityId, this.a, color.getAlpha());
+        assoc.setInt(entityId, this.r, color.getRed());
+        assoc.setInt(entityId, this.g, color.getGreen());
+        assoc.setInt(entityId, this.b, color.getBlue());
+        assoc.setInt(entityId, this.a, color.getAlpha());
     }
 
     @Override
     public Color get(CompEntAssoc assoc, int entityId) {
-        int r = assoc.get(entityId, this.r);
-        int g = assoc.get(entityId, this.g);
-        int b = assoc.get(entityId, this.b);
-        int a = assoc.get(entityId, this.a);
+        int r = assoc.getInt(entityId, this.r);
+        int g = assoc.getInt(entityId, this.g);
+        int b = assoc.getInt(entityId, this.b);
+        int a = assoc.getInt(entityId, this.a);
         return Color.fromInt(r, g, b, a);
     }
 
-    public ComponentField<Integer> getR() {
+    public IntComponentField getR() {
         return r;
     }
 
-    public ComponentField<Integer> getG() {
+    public IntComponentField getG() {
         return g;
     }
 
-    public ComponentField<Integer> getB() {
+    public IntComponentField getB() {
         return b;
     }
 
-    public ComponentField<Integer> getA() {
+    public IntComponentField getA() {
         return a;
     }
 
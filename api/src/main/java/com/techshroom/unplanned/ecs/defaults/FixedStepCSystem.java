@@ -0,0 +1,84 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs.defaults;
+
+import com.techshroom.unplanned.ecs.CSystem;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+
+/**
+ * A system that runs in fixed time steps, independent of the frame rate. The
+ * time passed to {@link CompEntAssoc#tick(long)} is accumulated, and every
+ * entity is processed once per whole step in it, with {@code nanoDiff} set to
+ * the step length.
+ *
+ * <p>
+ * At most {@link #getMaxStepsPerTick()} steps are run per tick. If a tick
+ * falls further behind than that, the rest of the backlog is dropped rather
+ * than making the next tick even slower. The time left over after the steps
+ * is available as {@link #getAlpha()}, to interpolate between the last two
+ * steps when rendering.
+ * </p>
+ */
+public abstract class FixedStepCSystem implements CSystem {
+
+    private long accNanoDiff;
+
+    /**
+     * @return the length of a step, in nanoseconds
+     */
+    protected abstract long getStepNanos();
+
+    /**
+     * @return the most steps to run in one tick
+     */
+    protected int getMaxStepsPerTick() {
+        return 5;
+    }
+
+    @Override
+    public void processList(CompEntAssoc assoc, long nanoDiff) {
+        long step = getStepNanos();
+        accNanoDiff += nanoDiff;
+        int maxSteps = getMaxStepsPerTick();
+        for (int i = 0; i < maxSteps && accNanoDiff >= step; i++) {
+            CSystem.super.processList(assoc, step);
+            accNanoDiff -= step;
+        }
+        if (accNanoDiff >= step) {
+            // too far behind to catch up, drop the backlog
+            accNanoDiff %= step;
+        }
+    }
+
+    /**
+     * @return how far into the next step the accumulated time is, from
+     *         {@code 0} (inclusive) to {@code 1} (exclusive)
+     */
+    public double getAlpha() {
+        return accNanoDiff / (double) getStepNanos();
+    }
+
+}
@@ -27,7 +27,16 @@ package com.techshroom.unplanned.ecs.defaults;
 
 import com.techshroom.unplanned.ecs.CSystem;
 import com.techshroom.unplanned.ecs.CompEntAssoc;
+import com.techshroom.unplanned.ecs.SystemProfiler;
 
+/**
+ * A system that processes every entity once every few ticks.
+ *
+ * @deprecated counts ticks, so its speed depends on the frame rate, and does
+ *             all of the work in one tick. Use {@link FixedStepCSystem} or
+ *             {@link BudgetedCSystem}.
+ */
+@Deprecated
 public abstract class IntervalCSystem implements CSystem {
 
     private int tick;
@@ -44,7 +53,12 @@ public abstract class IntervalCSystem implements CSystem {
         tick++;
         if (tick > getInterval()) {
             try {
-                assoc.getEntities(getComponents()).forEach(e -> processInterval(e, assoc, accNanoDiff));
+                int[] processed = { 0 };
+                assoc.forEachEntity(getComponents(), e -> {
+                    processInterval(e, assoc, accNanoDiff);
+                    processed[0]++;
+                });
+                SystemProfiler.countProcessed(processed[0]);
             } finally {
                 tick = 0;
                 accNanoDiff = 0;
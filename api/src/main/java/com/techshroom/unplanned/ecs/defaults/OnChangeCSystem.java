@@ -0,0 +1,65 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.ecs.defaults;
+
+import com.techshroom.unplanned.ecs.CSystem;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+import com.techshroom.unplanned.ecs.Component;
+import com.techshroom.unplanned.ecs.SystemProfiler;
+
+/**
+ * A system that only processes entities where one of its components changed
+ * since it last ran. Change tracking is turned on for all of its components
+ * the first time it runs, and every entity is processed then.
+ * 
+ * <p>
+ * Each run ends by starting a new {@link CompEntAssoc#nextChangeVersion()
+ * change version}, so changes this system makes itself are not seen again.
+ * </p>
+ */
+public abstract class OnChangeCSystem implements CSystem {
+
+    private boolean tracking;
+    private long since = Long.MIN_VALUE;
+
+    @Override
+    public void processList(CompEntAssoc assoc, long nanoDiff) {
+        if (!tracking) {
+            for (Component c : getComponents()) {
+                assoc.trackChanges(c);
+            }
+            tracking = true;
+        }
+        int[] processed = { 0 };
+        assoc.forEachEntityChangedSince(getComponents(), since, e -> {
+            process(e, assoc, nanoDiff);
+            processed[0]++;
+        });
+        SystemProfiler.countProcessed(processed[0]);
+        since = assoc.nextChangeVersion();
+    }
+
+}
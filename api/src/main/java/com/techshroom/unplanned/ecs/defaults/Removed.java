@@ -29,7 +29,7 @@ import java.util.Map;
 
 import com.google.auto.value.AutoValue;
 import com.google.auto.value.extension.memoized.Memoized;
-import com.techshroom.unplanned.ecs.CFType;
+import com.techshroom.unplanned.ecs.BooleanComponentField;
 import com.techshroom.unplanned.ecs.CompEntAssoc;
 import com.techshroom.unplanned.ecs.ComplexComponent;
 import com.techshroom.unplanned.ecs.Component;
@@ -40,19 +40,19 @@ public abstract class Removed extends ComplexComponent<Boolean> {
 
     public static final Removed INSTANCE = new AutoValue_Removed();
 
-    private final ComponentField<Boolean> removed = ComponentField.createNoId(getId(), "removed", CFType.BOOLEAN);
+    private final BooleanComponentField removed = BooleanComponentField.createNoId(getId(), "removed");
 
     Removed() {
     }
 
     @Override
     public void set(CompEntAssoc assoc, int entityId, Boolean removed) {
-        assoc.set(entityId, this.removed, removed);
+        assoc.setBoolean(entityId, this.removed, removed);
     }
 
     @Override
     public Boolean get(CompEntAssoc assoc, int entityId) {
-        return assoc.get(entityId, this.removed);
+        return assoc.getBoolean(entityId, this.removed);
     }
 
     @Override
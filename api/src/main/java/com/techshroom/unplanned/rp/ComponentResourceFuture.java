@@ -0,0 +1,124 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.rp;
+
+import java.util.concurrent.CompletionException;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Asks component packs for a resource one after another, like the blocking
+ * {@link ResourcePack#loadResource(RId)}, but through their
+ * {@link ResourcePack#loadResourceAsync(RId, int) async loads}. Bumps and
+ * cancels go to the pack currently being asked.
+ */
+final class ComponentResourceFuture extends ResourceFuture {
+
+    static ComponentResourceFuture start(ImmutableList<ResourcePack> packs, RId id, int priority) {
+        ComponentResourceFuture future = new ComponentResourceFuture(packs, id, priority);
+        future.askNext();
+        return future;
+    }
+
+    private final ImmutableList<ResourcePack> packs;
+    private final RId id;
+    private final ImmutableMap.Builder<ResourcePack, ResourceLoadException> suppressed = ImmutableMap.builder();
+    private volatile int priority;
+    private boolean allNotFound = true;
+    private int next;
+    private ResourceFuture current;
+
+    private ComponentResourceFuture(ImmutableList<ResourcePack> packs, RId id, int priority) {
+        this.packs = packs;
+        this.id = id;
+        this.priority = priority;
+    }
+
+    private synchronized void askNext() {
+        if (isDone()) {
+            return;
+        }
+        if (next == packs.size()) {
+            completeExceptionally(RPCommon.notFoundInComponents(id, suppressed.build(), allNotFound));
+            return;
+        }
+        ResourcePack pack = packs.get(next++);
+        ResourceFuture asking = pack.loadResourceAsync(id, priority);
+        current = asking;
+        asking.whenComplete((resource, error) -> {
+            if (error == null) {
+                if (!complete(resource)) {
+                    // cancelled meanwhile
+                    resource.useStream(s -> null);
+                }
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause()
+                    : error;
+            if (!(cause instanceof ResourceLoadException)) {
+                completeExceptionally(cause);
+                return;
+            }
+            synchronized (this) {
+                suppressed.put(pack, (ResourceLoadException) cause);
+                if (!(cause instanceof ResourceNotFoundException)) {
+                    allNotFound = false;
+                }
+            }
+            askNext();
+        });
+    }
+
+    @Override
+    public int getPriority() {
+        return priority;
+    }
+
+    @Override
+    public void bumpPriority(int priority) {
+        ResourceFuture asking;
+        synchronized (this) {
+            if (priority <= this.priority) {
+                return;
+            }
+            this.priority = priority;
+            asking = current;
+        }
+        asking.bumpPriority(priority);
+    }
+
+    @Override
+    void onCancel() {
+        ResourceFuture asking;
+        synchronized (this) {
+            asking = current;
+        }
+        asking.cancel(false);
+    }
+
+}
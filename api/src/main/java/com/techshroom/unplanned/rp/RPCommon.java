@@ -26,7 +26,10 @@
 package com.techshroom.unplanned.rp;
 
 import java.nio.file.Path;
+import java.util.Map;
+import java.util.stream.Collectors;
 
+import com.google.common.collect.Maps;
 import com.techshroom.unplanned.app.App;
 
 /**
@@ -41,4 +44,27 @@ public class RPCommon {
         return null;
     }
 
+    static ResourceNotFoundException notFoundInComponents(RId id, Map<ResourcePack, ResourceLoadException> errors,
+            boolean allNotFound) {
+        if (allNotFound) {
+            // just collect reasons
+            String reasons = errors.entrySet().stream()
+                    .map(e -> Maps.immutableEntry(e.getKey().getId(), (ResourceNotFoundException) e.getValue()))
+                    .map(e -> {
+                        // $PACK_ID=$REASON
+                        return e.getKey() + "=" + e.getValue().getReason();
+                    }).collect(Collectors.joining("\n"));
+            return new ResourceNotFoundException(id, "Component Pack Reasons: [" + reasons + "]");
+        } else {
+            // collect messages!
+            String reasons = errors.entrySet().stream()
+                    .map(e -> Maps.immutableEntry(e.getKey().getId(), e.getValue()))
+                    .map(e -> {
+                        // $PACK_ID=$MESSAGE
+                        return e.getKey() + "=" + e.getValue().getMessage();
+                    }).collect(Collectors.joining("\n"));
+            return new ResourceNotFoundException(id, "Component Pack Errors: [" + reasons + "]");
+        }
+    }
+
 }
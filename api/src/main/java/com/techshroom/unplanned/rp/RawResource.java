@@ -31,11 +31,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.io.ByteStreams;
 import com.google.common.io.CharStreams;
 import com.techshroom.unplanned.core.util.IOFunction;
+import com.techshroom.unplanned.core.util.files.ByteBufferInputStream;
 
 /**
  * Represents a "loaded" resource. This may still be streamed from disk if it is
@@ -50,19 +53,70 @@ import com.techshroom.unplanned.core.util.IOFunction;
 public class RawResource {
 
     private InputStream source;
+    private ByteBuffer buffer;
+    private Runnable release;
 
     public RawResource(InputStream source) {
         this.source = source;
     }
 
+    /**
+     * Creates a resource backed by a buffer, e.g. a slice of a memory-mapped
+     * file. The buffer's remaining content is the resource.
+     */
+    public RawResource(ByteBuffer buffer) {
+        this.buffer = buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Creates a resource backed by a borrowed buffer, e.g. one from a
+     * {@link com.techshroom.unplanned.core.util.files.DirectBufferPool pool}.
+     * {@code release} is called once a {@code use*} function returns, but
+     * not when the buffer is handed off by {@link #asByteBuffer()}.
+     */
+    public RawResource(ByteBuffer buffer, Runnable release) {
+        this(buffer);
+        this.release = release;
+    }
+
     public <T> T useStream(IOFunction<InputStream, T> func) throws ResourceLoadException {
-        checkState(source != null, "resource already used");
-        try (InputStream s = source) {
+        checkState(source != null || buffer != null, "resource already used");
+        try (InputStream s = source != null ? source : new ByteBufferInputStream(buffer)) {
             return func.apply(s);
         } catch (IOException e) {
             throw new ResourceLoadException(e);
         } finally {
             source = null;
+            buffer = null;
+            release();
+        }
+    }
+
+    private void release() {
+        if (release != null) {
+            release.run();
+            release = null;
+        }
+    }
+
+    /**
+     * Uses the resource as a read-only buffer. For buffer-backed resources
+     * this is the buffer itself, with no copy, and it is direct if it was
+     * mapped from a file. Stream-backed resources are read into a heap buffer
+     * first.
+     */
+    public <T> T useBuffer(IOFunction<ByteBuffer, T> func) throws ResourceLoadException {
+        if (buffer == null) {
+            return useStream(s -> func.apply(ByteBuffer.wrap(ByteStreams.toByteArray(s)).asReadOnlyBuffer()));
+        }
+        ByteBuffer b = buffer;
+        buffer = null;
+        try {
+            return func.apply(b);
+        } catch (IOException e) {
+            throw new ResourceLoadException(e);
+        } finally {
+            release();
         }
     }
 
@@ -79,4 +133,51 @@ public class RawResource {
     public byte[] asBytes() throws ResourceLoadException {
         return useStream(ByteStreams::toByteArray);
     }
+
+    /**
+     * Splits this resource into {@code count} resources over the same
+     * content, each with its own position. A borrowed buffer is given back
+     * once all of them are used.
+     */
+    RawResource[] share(int count) throws ResourceLoadException {
+        checkState(source != null || buffer != null, "resource already used");
+        RawResource[] shares = new RawResource[count];
+        if (buffer == null) {
+            ByteBuffer read = useBuffer(b -> b);
+            for (int i = 0; i < count; i++) {
+                shares[i] = new RawResource(read);
+            }
+            return shares;
+        }
+        ByteBuffer b = buffer;
+        Runnable r = release;
+        buffer = null;
+        release = null;
+        if (r == null) {
+            for (int i = 0; i < count; i++) {
+                shares[i] = new RawResource(b);
+            }
+            return shares;
+        }
+        AtomicInteger unused = new AtomicInteger(count);
+        Runnable releaseLast = () -> {
+            if (unused.decrementAndGet() == 0) {
+                r.run();
+            }
+        };
+        for (int i = 0; i < count; i++) {
+            shares[i] = new RawResource(b, releaseLast);
+        }
+        return shares;
+    }
+
+    /**
+     * @return the resource as a read-only buffer
+     * @see #useBuffer(IOFunction)
+     */
+    public ByteBuffer asByteBuffer() throws ResourceLoadException {
+        // the buffer outlives this call, so it is never given back
+        release = null;
+        return useBuffer(b -> b);
+    }
 }
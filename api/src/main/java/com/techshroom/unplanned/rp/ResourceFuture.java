@@ -0,0 +1,70 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.rp;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A resource that is loading in the background. Waiting requests run highest
+ * priority first, and their priority can be raised later, e.g. when something
+ * that was being prefetched is suddenly needed for the next frame.
+ * 
+ * <p>
+ * Cancelling a future drops it from its request. The load itself only stops if
+ * no one else is waiting for it and it hasn't started.
+ * </p>
+ */
+public abstract class ResourceFuture extends CompletableFuture<RawResource> {
+
+    ResourceFuture() {
+    }
+
+    /**
+     * @return the priority the load is waiting with
+     */
+    public abstract int getPriority();
+
+    /**
+     * Raises the priority of the load if it is still waiting. Lower
+     * priorities than the current one are ignored.
+     * 
+     * @param priority
+     *            - the new priority
+     */
+    public abstract void bumpPriority(int priority);
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            onCancel();
+        }
+        return cancelled;
+    }
+
+    abstract void onCancel();
+
+}
@@ -0,0 +1,322 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.rp;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Loads resources on a fixed number of I/O threads, highest priority first.
+ * Requests for a resource of a pack that is already waiting or loading share
+ * the one load.
+ * 
+ * <p>
+ * A shared resource is read into a single buffer, and every requester gets
+ * its own {@link RawResource} over it. A pooled buffer is given back once
+ * every requester has used its resource.
+ * </p>
+ */
+public final class ResourceLoader implements AutoCloseable {
+
+    public static final int DEFAULT_THREADS = 2;
+
+    private static final Supplier<ResourceLoader> SHARED = Suppliers.memoize(() -> create(DEFAULT_THREADS));
+
+    /**
+     * @return the loader used by {@link ResourcePack#loadResourceAsync}, with
+     *         {@value #DEFAULT_THREADS} daemon threads
+     */
+    public static ResourceLoader shared() {
+        return SHARED.get();
+    }
+
+    public static ResourceLoader create(int threads) {
+        checkArgument(threads > 0, "at least one thread is needed");
+        return new ResourceLoader(threads);
+    }
+
+    private final class Request implements Runnable, Comparable<Request> {
+
+        private final Map.Entry<ResourcePack, RId> key;
+        // FIFO among equal priorities
+        private final long sequence = sequences.getAndIncrement();
+        // only changed while out of the queue
+        private volatile int priority;
+        private final List<Waiter> waiters = new ArrayList<>(1);
+        private boolean queued;
+        private boolean started;
+        private boolean finished;
+
+        Request(Map.Entry<ResourcePack, RId> key, int priority) {
+            this.key = key;
+            this.priority = priority;
+        }
+
+        synchronized boolean addWaiter(Waiter waiter) {
+            if (finished) {
+                return false;
+            }
+            waiters.add(waiter);
+            return true;
+        }
+
+        synchronized void submit() {
+            queued = true;
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                abandon(this);
+            }
+        }
+
+        synchronized void removeWaiter(Waiter waiter) {
+            waiters.remove(waiter);
+            if (waiters.isEmpty() && !started) {
+                // no one wants it anymore, drop it before it runs
+                finished = true;
+                executor.getQueue().remove(this);
+                inFlight.remove(key, this);
+            }
+        }
+
+        synchronized void bump(int newPriority) {
+            if (newPriority <= priority || started || finished) {
+                return;
+            }
+            if (!queued) {
+                priority = newPriority;
+                return;
+            }
+            // re-insert so the queue sees the new order
+            if (executor.getQueue().remove(this)) {
+                priority = newPriority;
+                if (executor.isShutdown()) {
+                    // close() won't see it in the queue anymore
+                    abandon(this);
+                    return;
+                }
+                executor.getQueue().add(this);
+                if (executor.isShutdown() && executor.getQueue().remove(this)) {
+                    // closed while re-inserting, after close() drained the queue
+                    abandon(this);
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(Request o) {
+            int cmp = Integer.compare(o.priority, priority);
+            return cmp != 0 ? cmp : Long.compare(sequence, o.sequence);
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                started = true;
+            }
+            RawResource result = null;
+            Throwable error = null;
+            try {
+                result = key.getKey().loadResource(key.getValue());
+            } catch (Throwable t) {
+                error = t;
+            }
+            List<Waiter> done;
+            synchronized (this) {
+                finished = true;
+                done = new ArrayList<>(waiters);
+            }
+            inFlight.remove(key, this);
+            if (error != null) {
+                for (Waiter w : done) {
+                    w.completeExceptionally(error);
+                }
+            } else {
+                deliver(result, done);
+            }
+        }
+
+        private void deliver(RawResource result, List<Waiter> done) {
+            if (done.isEmpty()) {
+                // everyone cancelled while loading, give back any borrowed buffer
+                result.useStream(s -> null);
+                return;
+            }
+            if (done.size() == 1) {
+                hand(done.get(0), result);
+                return;
+            }
+            RawResource[] shares;
+            try {
+                shares = result.share(done.size());
+            } catch (Throwable t) {
+                for (Waiter w : done) {
+                    w.completeExceptionally(t);
+                }
+                return;
+            }
+            for (int i = 0; i < shares.length; i++) {
+                hand(done.get(i), shares[i]);
+            }
+        }
+
+        private void hand(Waiter waiter, RawResource resource) {
+            if (!waiter.complete(resource)) {
+                // cancelled before it could be handed over, nobody will use it
+                resource.useStream(s -> null);
+            }
+        }
+
+    }
+
+    private final class Waiter extends ResourceFuture {
+
+        private final Request request;
+
+        Waiter(Request request) {
+            this.request = request;
+        }
+
+        @Override
+        public int getPriority() {
+            return request.priority;
+        }
+
+        @Override
+        public void bumpPriority(int priority) {
+            request.bump(priority);
+        }
+
+        @Override
+        void onCancel() {
+            request.removeWaiter(this);
+        }
+
+    }
+
+    private final AtomicLong sequences = new AtomicLong();
+    private final ConcurrentMap<Map.Entry<ResourcePack, RId>, Request> inFlight = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+
+    private ResourceLoader(int threads) {
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("resource-loader-%d")
+                        .setDaemon(true)
+                        .build());
+        // everything goes through the queue, so it is all ordered by priority
+        executor.prestartAllCoreThreads();
+    }
+
+    /**
+     * Loads a resource in the background.
+     * 
+     * @param pack
+     *            - the pack to load from, using
+     *            {@link ResourcePack#loadResource(RId)}
+     * @param id
+     *            - the resource to load
+     * @param priority
+     *            - higher priorities are loaded first
+     * @return the future resource
+     */
+    public ResourceFuture load(ResourcePack pack, RId id, int priority) {
+        Map.Entry<ResourcePack, RId> key = Maps.immutableEntry(pack, id);
+        while (true) {
+            Request request = inFlight.get(key);
+            boolean created = false;
+            if (request == null) {
+                Request fresh = new Request(key, priority);
+                request = inFlight.putIfAbsent(key, fresh);
+                if (request == null) {
+                    request = fresh;
+                    created = true;
+                }
+            }
+            Waiter waiter = new Waiter(request);
+            if (request.addWaiter(waiter)) {
+                if (created) {
+                    request.submit();
+                } else {
+                    request.bump(priority);
+                }
+                return waiter;
+            }
+            // finished or dropped between the lookup and now
+            inFlight.remove(key, request);
+        }
+    }
+
+    /**
+     * @return the number of requests waiting for a thread
+     */
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stops the threads. Requests that haven't started fail with a
+     * {@link ResourceLoadException}.
+     */
+    @Override
+    public void close() {
+        for (Runnable r : executor.shutdownNow()) {
+            abandon((Request) r);
+        }
+    }
+
+    private void abandon(Request request) {
+        List<Waiter> waiters;
+        synchronized (request) {
+            request.finished = true;
+            waiters = new ArrayList<>(request.waiters);
+        }
+        inFlight.remove(request.key, request);
+        for (Waiter w : waiters) {
+            w.completeExceptionally(new ResourceLoadException("loader closed before loading " + request.key.getValue()));
+        }
+    }
+
+}
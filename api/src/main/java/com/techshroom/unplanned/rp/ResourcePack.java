@@ -25,11 +25,8 @@
 
 package com.techshroom.unplanned.rp;
 
-import java.util.stream.Collectors;
-
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
 
 /**
  * Resource pack representation.
@@ -52,26 +49,26 @@ public interface ResourcePack {
                 }
             }
         }
-        ImmutableMap<ResourcePack, ResourceLoadException> errors = suppressed.build();
-        if (allNotFound) {
-            // just collect reasons
-            String reasons = errors.entrySet().stream()
-                    .map(e -> Maps.immutableEntry(e.getKey().getId(), (ResourceNotFoundException) e.getValue()))
-                    .map(e -> {
-                        // $PACK_ID=$REASON
-                        return e.getKey() + "=" + e.getValue().getReason();
-                    }).collect(Collectors.joining("\n"));
-            throw new ResourceNotFoundException(id, "Component Pack Reasons: [" + reasons + "]");
-        } else {
-            // collect messages!
-            String reasons = errors.entrySet().stream()
-                    .map(e -> Maps.immutableEntry(e.getKey().getId(), e.getValue()))
-                    .map(e -> {
-                        // $PACK_ID=$MESSAGE
-                        return e.getKey() + "=" + e.getValue().getMessage();
-                    }).collect(Collectors.joining("\n"));
-            throw new ResourceNotFoundException(id, "Component Pack Errors: [" + reasons + "]");
+        throw RPCommon.notFoundInComponents(id, suppressed.build(), allNotFound);
+    }
+
+    /**
+     * Loads a resource in the background, at the given priority. By default,
+     * packs with component packs ask each of them in turn, and other packs
+     * run {@link #loadResource(RId)} on the {@link ResourceLoader#shared()
+     * shared loader}.
+     * 
+     * @param id
+     *            - the resource to load
+     * @param priority
+     *            - higher priorities are loaded first
+     * @return the future resource
+     */
+    default ResourceFuture loadResourceAsync(RId id, int priority) {
+        if (getComponentPacks().isEmpty()) {
+            return ResourceLoader.shared().load(this, id, priority);
         }
+        return ComponentResourceFuture.start(getComponentPacks(), id, priority);
     }
 
     String getId();
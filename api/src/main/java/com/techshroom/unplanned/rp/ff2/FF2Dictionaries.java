@@ -0,0 +1,89 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.rp.ff2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The zstd dictionaries of an FF2 pack, stored next to the index in the
+ * {@value #FILE_NAME} file. Entries refer to them by their position.
+ * 
+ * <p>
+ * Format: {@code int} count, then for each dictionary {@code int} length and
+ * the dictionary bytes.
+ * </p>
+ */
+public final class FF2Dictionaries {
+
+    public static final String FILE_NAME = "dictionaries";
+
+    public static void write(List<byte[]> dictionaries, Path packFolder) throws IOException {
+        Path file = packFolder.resolve(FILE_NAME);
+        try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            data.writeInt(dictionaries.size());
+            for (byte[] dict : dictionaries) {
+                data.writeInt(dict.length);
+                data.write(dict);
+            }
+        }
+    }
+
+    /**
+     * @param packFolder
+     *            - the pack folder
+     * @return the dictionaries of the pack, or none if it has no dictionary
+     *         file
+     */
+    public static ImmutableList<byte[]> read(Path packFolder) throws IOException {
+        Path file = packFolder.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return ImmutableList.of();
+        }
+        try (DataInputStream data = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int count = data.readInt();
+            ImmutableList.Builder<byte[]> dictionaries = ImmutableList.builder();
+            for (int i = 0; i < count; i++) {
+                byte[] dict = new byte[data.readInt()];
+                data.readFully(dict);
+                dictionaries.add(dict);
+            }
+            return dictionaries.build();
+        }
+    }
+
+    private FF2Dictionaries() {
+    }
+
+}
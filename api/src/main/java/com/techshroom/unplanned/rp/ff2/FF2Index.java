@@ -25,6 +25,8 @@
 
 package com.techshroom.unplanned.rp.ff2;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.google.auto.value.AutoValue;
 import com.google.auto.value.extension.memoized.Memoized;
 import com.google.common.collect.ImmutableMap;
@@ -35,13 +37,24 @@ import com.techshroom.unplanned.rp.RId;
  * stored.
  */
 @AutoValue
-public abstract class FF2Index {
+public abstract class FF2Index implements FF2Lookup {
 
     @AutoValue
     public static abstract class Value {
 
+        /**
+         * Marks a value that uses no dictionary.
+         */
+        public static final int NO_DICTIONARY = -1;
+
         public static Value create(byte index, long offset, long size) {
-            return new AutoValue_FF2Index_Value(index, offset, size);
+            return create(index, offset, size, FF2Codec.NONE, size, NO_DICTIONARY);
+        }
+
+        public static Value create(byte index, long offset, long size, FF2Codec codec, long rawSize, int dictionary) {
+            checkArgument(codec != FF2Codec.NONE || (size == rawSize && dictionary == NO_DICTIONARY),
+                    "uncompressed resources have no raw size or dictionary");
+            return new AutoValue_FF2Index_Value(index, offset, size, codec, rawSize, dictionary);
         }
 
         Value() {
@@ -51,8 +64,24 @@ public abstract class FF2Index {
 
         public abstract long getOffset();
 
+        /**
+         * @return the size stored in the part file
+         */
         public abstract long getSize();
 
+        public abstract FF2Codec getCodec();
+
+        /**
+         * @return the size of the resource once decompressed
+         */
+        public abstract long getRawSize();
+
+        /**
+         * @return the index of the pack dictionary the resource was
+         *         compressed with, or {@link #NO_DICTIONARY}
+         */
+        public abstract int getDictionary();
+
     }
 
     public static Builder builder() {
@@ -78,10 +107,12 @@ public abstract class FF2Index {
 
     public abstract ImmutableMap<RId, Value> getDataLookup();
 
+    @Override
     public final Value getData(RId resourceId) {
         return getDataLookup().get(resourceId);
     }
 
+    @Override
     @Memoized
     public int getFileCount() {
         return getDataLookup().values().stream().mapToInt(Value::getIndex).max().getAsInt() + 1;
@@ -0,0 +1,317 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.rp.ff2;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.UnsignedBytes;
+import com.techshroom.unplanned.rp.RId;
+import com.techshroom.unplanned.rp.ResourceLoadException;
+
+/**
+ * Versions 2 and 3 of the FF2 index file, read straight from a memory mapping.
+ * Opening the index only checks the header, entries are found by a binary
+ * search over their hashes when looked up.
+ * 
+ * <p>
+ * Format, all numbers big-endian:
+ * </p>
+ * <ul>
+ * <li>Header: {@code int} {@link #MAGIC}, {@code int} version,
+ * {@code int} entry count, {@code int} part file count.</li>
+ * <li>Entries, each {@value #ENTRY_SIZE} bytes ({@value #V2_ENTRY_SIZE} in
+ * version 2), sorted by hash and then key: {@code long} hash of the key,
+ * {@code int} key offset, {@code int} key length, {@code long} offset,
+ * {@code long} stored size, {@code byte} part file. Version 3 follows with
+ * {@code byte} {@link FF2Codec codec}, {@code short} dictionary (-1 for none),
+ * two reserved zeros and {@code long} raw size, version 2 with reserved zeros
+ * and only stores uncompressed resources.</li>
+ * <li>Keys: the UTF-8 {@link RId#toString() string form} of each ID, at the
+ * entry's key offset from the start of this section.</li>
+ * </ul>
+ * 
+ * <p>
+ * Version 1 indexes start with the entry count instead of the magic, so they
+ * are told apart by the first {@code int}.
+ * </p>
+ */
+public final class FF2MappedIndex implements FF2Lookup {
+
+    /**
+     * "FF2I". No version 1 index has this many entries.
+     */
+    static final int MAGIC = 0x46463249;
+    public static final int VERSION = 3;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int ENTRY_SIZE = 48;
+    private static final int V2_ENTRY_SIZE = 40;
+
+    private static final int HASH = 0;
+    private static final int KEY_OFFSET = 8;
+    private static final int KEY_LENGTH = 12;
+    private static final int OFFSET = 16;
+    private static final int SIZE = 24;
+    private static final int PART = 32;
+    private static final int CODEC = 33;
+    private static final int DICTIONARY = 34;
+    private static final int RAW_SIZE = 40;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private static long hash(byte[] key) {
+        return HASH_FUNCTION.hashBytes(key).asLong();
+    }
+
+    private static final class Entry {
+
+        private final byte[] key;
+        private final long hash;
+        private final FF2Index.Value value;
+
+        Entry(RId id, FF2Index.Value value) {
+            this.key = id.toString().getBytes(UTF_8);
+            this.hash = hash(key);
+            this.value = value;
+        }
+
+    }
+
+    /**
+     * Writes an index of the current {@link #VERSION}.
+     * 
+     * @param lookup
+     *            - the entries to write
+     * @param indexFile
+     *            - the file to write to
+     */
+    public static void write(Map<RId, FF2Index.Value> lookup, Path indexFile) throws IOException {
+        write(lookup, indexFile, VERSION);
+    }
+
+    /**
+     * Writes an index.
+     * 
+     * @param lookup
+     *            - the entries to write
+     * @param indexFile
+     *            - the file to write to
+     * @param version
+     *            - the index version, 2 or 3. Version 2 can only hold
+     *            uncompressed resources.
+     */
+    public static void write(Map<RId, FF2Index.Value> lookup, Path indexFile, int version) throws IOException {
+        checkArgument(version == 2 || version == VERSION, "unknown index version %s", version);
+        List<Entry> entries = new ArrayList<>(lookup.size());
+        int fileCount = 0;
+        for (Map.Entry<RId, FF2Index.Value> e : lookup.entrySet()) {
+            checkArgument(version == VERSION || e.getValue().getCodec() == FF2Codec.NONE,
+                    "version %s indexes cannot hold compressed resource %s", version, e.getKey());
+            checkArgument(e.getValue().getDictionary() <= Short.MAX_VALUE, "too many dictionaries");
+            entries.add(new Entry(e.getKey(), e.getValue()));
+            fileCount = Math.max(fileCount, e.getValue().getIndex() + 1);
+        }
+        entries.sort(Comparator.<Entry> comparingLong(e -> e.hash)
+                .thenComparing(e -> e.key, UnsignedBytes.lexicographicalComparator()));
+        try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
+            data.writeInt(MAGIC);
+            data.writeInt(version);
+            data.writeInt(entries.size());
+            data.writeInt(fileCount);
+            int keyOffset = 0;
+            for (Entry e : entries) {
+                data.writeLong(e.hash);
+                data.writeInt(keyOffset);
+                data.writeInt(e.key.length);
+                data.writeLong(e.value.getOffset());
+                data.writeLong(e.value.getSize());
+                data.writeByte(e.value.getIndex());
+                if (version == 2) {
+                    data.write(new byte[V2_ENTRY_SIZE - CODEC]);
+                } else {
+                    data.writeByte(e.value.getCodec().ordinal());
+                    data.writeShort(e.value.getDictionary());
+                    data.write(new byte[RAW_SIZE - DICTIONARY - 2]);
+                    data.writeLong(e.value.getRawSize());
+                }
+                keyOffset += e.key.length;
+            }
+            for (Entry e : entries) {
+                data.write(e.key);
+            }
+        }
+    }
+
+    /**
+     * Maps a version 2 or 3 index.
+     * 
+     * @param indexFile
+     *            - the index file
+     * @return the mapped index
+     */
+    public static FF2MappedIndex open(Path indexFile) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            checkArgument(channel.size() <= Integer.MAX_VALUE, "index %s is too large to map", indexFile);
+            buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new ResourceLoadException("Not a mapped FF2 index: " + indexFile);
+        }
+        int version = buffer.getInt(4);
+        if (version != 2 && version != VERSION) {
+            throw new ResourceLoadException("Unsupported FF2 index version " + version + ": " + indexFile);
+        }
+        int count = buffer.getInt(8);
+        int entrySize = version == 2 ? V2_ENTRY_SIZE : ENTRY_SIZE;
+        if ((long) HEADER_SIZE + (long) count * entrySize > buffer.capacity()) {
+            throw new ResourceLoadException("Truncated FF2 index: " + indexFile);
+        }
+        return new FF2MappedIndex(buffer, version, count, buffer.getInt(12));
+    }
+
+    // only absolute gets are used, so lookups are safe from any thread
+    private final ByteBuffer buffer;
+    private final int version;
+    private final int count;
+    private final int fileCount;
+    private final int entrySize;
+    private final int keysStart;
+
+    private FF2MappedIndex(ByteBuffer buffer, int version, int count, int fileCount) {
+        this.buffer = buffer;
+        this.version = version;
+        this.count = count;
+        this.fileCount = fileCount;
+        this.entrySize = version == 2 ? V2_ENTRY_SIZE : ENTRY_SIZE;
+        this.keysStart = HEADER_SIZE + count * entrySize;
+    }
+
+    private int entry(int i) {
+        return HEADER_SIZE + i * entrySize;
+    }
+
+    @Override
+    @Nullable
+    public FF2Index.Value getData(RId resourceId) {
+        byte[] key = resourceId.toString().getBytes(UTF_8);
+        long hash = hash(key);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Long.compare(buffer.getLong(entry(mid) + HASH), hash);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return scan(mid, hash, key);
+            }
+        }
+        return null;
+    }
+
+    // check every entry with the same hash, found at any of them
+    @Nullable
+    private FF2Index.Value scan(int found, long hash, byte[] key) {
+        int first = found;
+        while (first > 0 && buffer.getLong(entry(first - 1) + HASH) == hash) {
+            first--;
+        }
+        for (int i = first; i < count && buffer.getLong(entry(i) + HASH) == hash; i++) {
+            int e = entry(i);
+            if (keyEquals(e, key)) {
+                return value(e);
+            }
+        }
+        return null;
+    }
+
+    private FF2Index.Value value(int entry) {
+        byte part = buffer.get(entry + PART);
+        long offset = buffer.getLong(entry + OFFSET);
+        long size = buffer.getLong(entry + SIZE);
+        if (version == 2) {
+            return FF2Index.Value.create(part, offset, size);
+        }
+        return FF2Index.Value.create(part, offset, size, FF2Codec.byId(buffer.get(entry + CODEC)),
+                buffer.getLong(entry + RAW_SIZE), buffer.getShort(entry + DICTIONARY));
+    }
+
+    private boolean keyEquals(int entry, byte[] key) {
+        if (buffer.getInt(entry + KEY_LENGTH) != key.length) {
+            return false;
+        }
+        int start = keysStart + buffer.getInt(entry + KEY_OFFSET);
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the index version, 2 or 3
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the number of resources in the index
+     */
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public int getFileCount() {
+        return fileCount;
+    }
+
+}
@@ -25,32 +25,44 @@
 
 package com.techshroom.unplanned.rp.ff2;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.List;
 
-import com.google.common.io.ByteStreams;
-import com.techshroom.unplanned.core.util.files.FileRetentionPolicies;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+import com.techshroom.unplanned.core.util.files.DirectBufferPool;
 import com.techshroom.unplanned.core.util.files.FileRetentionPolicy;
 import com.techshroom.unplanned.rp.NoComponentResourcePack;
 import com.techshroom.unplanned.rp.RId;
 import com.techshroom.unplanned.rp.RawResource;
 import com.techshroom.unplanned.rp.ResourceLoadException;
+import com.techshroom.unplanned.rp.ResourceNotFoundException;
 
 /**
- * FF2 resource pack.
+ * FF2 resource pack. Compressed resources are decompressed into buffers from
+ * a pool, which are returned once the resource is used.
  */
 class FF2ResourcePack implements NoComponentResourcePack {
 
-    // we are free to change this as performance metrics prove which is best
-    private final FileRetentionPolicy fileManager = FileRetentionPolicies.singleMemoryMappedFile();
-
     private final Path folderSource;
-    private final FF2Index index;
+    private final FF2Lookup index;
+    private final FileRetentionPolicy fileManager;
+    private final ImmutableList<ZstdDictDecompress> dictionaries;
+    private final DirectBufferPool buffers;
 
-    public FF2ResourcePack(Path folderSource, FF2Index index) {
+    public FF2ResourcePack(Path folderSource, FF2Lookup index, FileRetentionPolicy fileManager,
+            List<byte[]> dictionaries, DirectBufferPool buffers) {
         this.folderSource = folderSource;
         this.index = index;
+        this.fileManager = fileManager;
+        this.dictionaries = dictionaries.stream().map(ZstdDictDecompress::new).collect(toImmutableList());
+        this.buffers = buffers;
     }
 
     @Override
@@ -61,14 +73,59 @@ class FF2ResourcePack implements NoComponentResourcePack {
     @Override
     public RawResource loadResource(RId id) throws ResourceLoadException {
         FF2Index.Value val = index.getData(id);
+        if (val == null) {
+            throw new ResourceNotFoundException(id, "not in the index of " + getId());
+        }
         try {
             Path file = folderSource.resolve(String.valueOf(val.getIndex()));
-            InputStream stream = fileManager.openStream(file);
-            stream.skip(val.getOffset());
-            return new RawResource(ByteStreams.limit(stream, val.getSize()));
+            ByteBuffer stored = fileManager.openBuffer(file, val.getOffset(), Ints.checkedCast(val.getSize()));
+            switch (val.getCodec()) {
+                case NONE:
+                    return new RawResource(stored);
+                case ZSTD:
+                    return decompress(id, val, stored);
+                default:
+                    throw new AssertionError("unhandled codec " + val.getCodec());
+            }
         } catch (IOException e) {
             throw new ResourceLoadException(e);
         }
     }
 
+    private RawResource decompress(RId id, FF2Index.Value val, ByteBuffer stored) {
+        ZstdDictDecompress dict = null;
+        if (val.getDictionary() != FF2Index.Value.NO_DICTIONARY) {
+            if (val.getDictionary() >= dictionaries.size()) {
+                throw new ResourceLoadException("Missing dictionary " + val.getDictionary() + " for " + id);
+            }
+            dict = dictionaries.get(val.getDictionary());
+        }
+        ByteBuffer src = stored;
+        ByteBuffer copy = null;
+        if (!src.isDirect()) {
+            // zstd reads from native memory only
+            copy = buffers.take(src.remaining());
+            copy.put(src).flip();
+            src = copy;
+        }
+        int rawSize = Ints.checkedCast(val.getRawSize());
+        ByteBuffer raw = buffers.take(rawSize);
+        long result;
+        try {
+            result = dict == null
+                    ? Zstd.decompressDirectByteBuffer(raw, 0, rawSize, src, src.position(), src.remaining())
+                    : Zstd.decompressDirectByteBufferFastDict(raw, 0, rawSize, src, src.position(), src.remaining(), dict);
+        } finally {
+            if (copy != null) {
+                buffers.release(copy);
+            }
+        }
+        if (Zstd.isError(result) || result != rawSize) {
+            buffers.release(raw);
+            String error = Zstd.isError(result) ? Zstd.getErrorName(result) : result + " of " + rawSize + " bytes";
+            throw new ResourceLoadException("Failed to decompress " + id + ": " + error);
+        }
+        return new RawResource(raw, () -> buffers.release(raw));
+    }
+
 }
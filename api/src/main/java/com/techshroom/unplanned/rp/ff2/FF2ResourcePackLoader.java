@@ -30,7 +30,12 @@ import java.io.DataInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Supplier;
 
+import com.techshroom.unplanned.core.util.files.DirectBufferPool;
+import com.techshroom.unplanned.core.util.files.FileRetentionPolicies;
+import com.techshroom.unplanned.core.util.files.FileRetentionPolicy;
 import com.techshroom.unplanned.rp.RId;
 import com.techshroom.unplanned.rp.ResourceLoadException;
 import com.techshroom.unplanned.rp.ResourcePack;
@@ -39,6 +44,38 @@ import com.techshroom.unplanned.rp.SimpleResourcePackLoader;
 
 public class FF2ResourcePackLoader implements SimpleResourcePackLoader {
 
+    /**
+     * The mapped size budget of each pack by default.
+     */
+    public static final long DEFAULT_MAPPED_BYTES = 512L * 1024 * 1024;
+
+    /**
+     * The size budget of the decompression buffers kept by each loader.
+     */
+    public static final long POOLED_BUFFER_BYTES = 64L * 1024 * 1024;
+
+    private final Supplier<FileRetentionPolicy> fileManagers;
+    // shared by the packs, most of them are not loading at the same time
+    private final DirectBufferPool buffers = DirectBufferPool.create(POOLED_BUFFER_BYTES);
+
+    /**
+     * Creates a loader that gives each pack an LRU of mapped part files, with
+     * a budget of {@link #DEFAULT_MAPPED_BYTES}.
+     */
+    public FF2ResourcePackLoader() {
+        this(() -> FileRetentionPolicies.lruMemoryMappedFiles(DEFAULT_MAPPED_BYTES));
+    }
+
+    /**
+     * @param fileManagers
+     *            - called once per pack for the policy reading its part
+     *            files. Return the same policy every time to share it
+     *            between packs.
+     */
+    public FF2ResourcePackLoader(Supplier<FileRetentionPolicy> fileManagers) {
+        this.fileManagers = fileManagers;
+    }
+
     @Override
     public ResourcePackLoaderType getType() {
         return ResourcePackLoaderType.FF2;
@@ -47,16 +84,38 @@ public class FF2ResourcePackLoader implements SimpleResourcePackLoader {
     @Override
     public ResourcePack load(Path resourcePackFile) {
         // the "file" is actually a folder: [index, 0,1,2,3,...]
-        FF2Index index = loadIndex(resourcePackFile.resolve("index"));
+        FF2Lookup index = loadIndex(resourcePackFile.resolve("index"));
         for (int i = 0; i < index.getFileCount(); i++) {
             if (!Files.exists(resourcePackFile.resolve(String.valueOf(i)))) {
                 throw new ResourceLoadException("Missing part of resource pack: " + i);
             }
         }
-        return new FF2ResourcePack(resourcePackFile, index);
+        List<byte[]> dictionaries;
+        try {
+            dictionaries = FF2Dictionaries.read(resourcePackFile);
+        } catch (IOException e) {
+            throw new ResourceLoadException(e);
+        }
+        return new FF2ResourcePack(resourcePackFile, index, fileManagers.get(), dictionaries, buffers);
     }
 
-    private FF2Index loadIndex(Path indexFile) {
+    private FF2Lookup loadIndex(Path indexFile) {
+        try {
+            // mapped indexes start with a magic number, v1 with the entry count
+            int head;
+            try (DataInputStream data = new DataInputStream(Files.newInputStream(indexFile))) {
+                head = data.readInt();
+            }
+            if (head == FF2MappedIndex.MAGIC) {
+                return FF2MappedIndex.open(indexFile);
+            }
+            return loadIndexV1(indexFile);
+        } catch (IOException e) {
+            throw new ResourceLoadException(e);
+        }
+    }
+
+    private FF2Index loadIndexV1(Path indexFile) throws IOException {
         FF2Index.Builder idx = FF2Index.builder();
         try (DataInputStream data = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
             int entries = data.readInt();
@@ -67,8 +126,6 @@ public class FF2ResourcePackLoader implements SimpleResourcePackLoader {
                 long size = data.readLong();
                 idx.putValue(id, FF2Index.Value.create(index, offset, size));
             }
-        } catch (IOException e) {
-            throw new ResourceLoadException(e);
         }
         return idx.build();
     }
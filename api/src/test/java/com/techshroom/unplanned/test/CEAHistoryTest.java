@@ -0,0 +1,166 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.eclipse.collections.api.set.primitive.IntSet;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.techshroom.unplanned.core.util.Color;
+import com.techshroom.unplanned.ecs.ArchetypeCEAFactory;
+import com.techshroom.unplanned.ecs.CEAFactory;
+import com.techshroom.unplanned.ecs.CEAHistory;
+import com.techshroom.unplanned.ecs.CSystem;
+import com.techshroom.unplanned.ecs.ColumnarCEAFactory;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+import com.techshroom.unplanned.ecs.Component;
+import com.techshroom.unplanned.ecs.ObjectCEAFactory;
+import com.techshroom.unplanned.ecs.defaults.ColorComponent;
+import com.techshroom.unplanned.ecs.defaults.Removed;
+
+public class CEAHistoryTest {
+
+    private static final ImmutableList<CEAFactory> FACTORIES = ImmutableList.of(
+            ObjectCEAFactory.$,
+            ColumnarCEAFactory.$,
+            ArchetypeCEAFactory.$);
+
+    /**
+     * Brightens every colored entity each tick.
+     */
+    private static final class Brighten implements CSystem {
+
+        @Override
+        public Set<Component> getComponents() {
+            return ImmutableSet.of(ColorComponent.INSTANCE);
+        }
+
+        @Override
+        public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
+            assoc.setInt(entityId, ColorComponent.INSTANCE.getR(),
+                    assoc.getInt(entityId, ColorComponent.INSTANCE.getR()) + 1);
+        }
+
+    }
+
+    private static CompEntAssoc build(CEAFactory factory) {
+        return factory.build(new Brighten(), new CSystem() {
+
+            @Override
+            public Set<Component> getComponents() {
+                return ImmutableSet.of(Removed.INSTANCE);
+            }
+
+            @Override
+            public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
+            }
+        });
+    }
+
+    @Test
+    public void testRewindFieldsAndStructure() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            int a = assoc.newEntity(ColorComponent.INSTANCE);
+            int b = assoc.newEntity(ColorComponent.INSTANCE, Removed.INSTANCE);
+            assoc.tick(0);
+            CEAHistory history = CEAHistory.record(assoc, 16, 1024);
+
+            assoc.tick(0);
+            long mark = assoc.getTick();
+            ColorComponent.INSTANCE.set(assoc, a, Color.BLUE);
+            assoc.remove(b);
+            assoc.addComponent(a, Removed.INSTANCE);
+            Removed.INSTANCE.set(assoc, a, true);
+            int c = assoc.newEntity(ColorComponent.INSTANCE);
+            assoc.tick(0);
+            assoc.tick(0);
+
+            history.rewind(mark);
+            assertEquals(factory.toString(), mark, assoc.getTick());
+            assertEquals(factory.toString(), 2, assoc.getInt(a, ColorComponent.INSTANCE.getR()));
+            assertFalse(factory.toString(), assoc.hasComponent(a, Removed.INSTANCE));
+            assertTrue(factory.toString(), assoc.hasEntity(b));
+            assertEquals(factory.toString(), 2, assoc.getInt(b, ColorComponent.INSTANCE.getR()));
+            assertFalse(factory.toString(), Removed.INSTANCE.get(assoc, b));
+            assertFalse(factory.toString(), assoc.hasEntity(c));
+            IntSet both = assoc.getEntities(ImmutableSet.of(ColorComponent.INSTANCE, Removed.INSTANCE));
+            assertEquals(factory.toString(), 1, both.size());
+            assertTrue(factory.toString(), both.contains(b));
+
+            // re-simulating hands out the same IDs
+            assoc.remove(b);
+            assertEquals(factory.toString(), c, assoc.newEntity(ColorComponent.INSTANCE));
+            assoc.tick(0);
+            assertEquals(factory.toString(), 1, assoc.getInt(c, ColorComponent.INSTANCE.getR()));
+        }
+    }
+
+    @Test
+    public void testRewindToStart() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            CEAHistory history = CEAHistory.record(assoc, 4, 64);
+            int a = assoc.newEntity(ColorComponent.INSTANCE);
+            assoc.tick(0);
+            assoc.tick(0);
+
+            history.rewind(0);
+            assertFalse(factory.toString(), assoc.hasEntity(a));
+            assertTrue(factory.toString(), assoc.getEntities(ColorComponent.INSTANCE).isEmpty());
+            assertEquals(factory.toString(), a, assoc.newEntity(ColorComponent.INSTANCE));
+        }
+    }
+
+    @Test
+    public void testOldTicksAreDropped() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            assoc.newEntity(ColorComponent.INSTANCE);
+            CEAHistory history = CEAHistory.record(assoc, 4, 64);
+            for (int i = 0; i < 10; i++) {
+                assoc.tick(0);
+            }
+            assertEquals(factory.toString(), 6, history.getOldestTick());
+            try {
+                history.rewind(5);
+                throw new AssertionError(factory + " rewound past the oldest tick");
+            } catch (IllegalArgumentException expected) {
+            }
+            history.rewind(6);
+            assertEquals(factory.toString(), 6, assoc.getInt(
+                    assoc.getEntities(ColorComponent.INSTANCE).toArray()[0], ColorComponent.INSTANCE.getR()));
+        }
+    }
+
+}
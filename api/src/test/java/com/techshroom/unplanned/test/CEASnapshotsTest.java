@@ -0,0 +1,171 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.techshroom.unplanned.core.util.Color;
+import com.techshroom.unplanned.ecs.ArchetypeCEAFactory;
+import com.techshroom.unplanned.ecs.CEAFactory;
+import com.techshroom.unplanned.ecs.CEASnapshots;
+import com.techshroom.unplanned.ecs.CFType;
+import com.techshroom.unplanned.ecs.CSystem;
+import com.techshroom.unplanned.ecs.ColumnarCEAFactory;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+import com.techshroom.unplanned.ecs.Component;
+import com.techshroom.unplanned.ecs.ComponentField;
+import com.techshroom.unplanned.ecs.IntComponentField;
+import com.techshroom.unplanned.ecs.ObjectCEAFactory;
+import com.techshroom.unplanned.ecs.defaults.ColorComponent;
+import com.techshroom.unplanned.ecs.defaults.Removed;
+
+public class CEASnapshotsTest {
+
+    private static final ImmutableList<CEAFactory> FACTORIES = ImmutableList.of(
+            ObjectCEAFactory.$,
+            ColumnarCEAFactory.$,
+            ArchetypeCEAFactory.$);
+
+    private static final UUID NAMED_ID = UUID.fromString("5b0d8f8e-6a3c-4a55-9c2e-3f1d2b6c7a10");
+
+    /**
+     * The same component before and after gaining a field.
+     */
+    private static final class Named implements Component {
+
+        private final IntComponentField score = IntComponentField.createNoId(NAMED_ID, "score");
+        private final ComponentField<String> name = ComponentField.createNoId(NAMED_ID, "name", CFType.STRING);
+        private final Map<String, ComponentField<?>> fields;
+
+        Named(boolean withName) {
+            fields = withName ? Component.makeFieldMap(score, name) : Component.makeFieldMap(score);
+        }
+
+        @Override
+        public UUID getId() {
+            return NAMED_ID;
+        }
+
+        @Override
+        public Map<String, ComponentField<?>> getFields() {
+            return fields;
+        }
+
+    }
+
+    private static CSystem registering(Component... components) {
+        Set<Component> set = ImmutableSet.copyOf(components);
+        return new CSystem() {
+
+            @Override
+            public Set<Component> getComponents() {
+                return set;
+            }
+
+            @Override
+            public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
+            }
+        };
+    }
+
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("snapshot", ".bin");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = factory.build(registering(ColorComponent.INSTANCE, Removed.INSTANCE));
+            int a = assoc.newEntity(ColorComponent.INSTANCE);
+            int b = assoc.newEntity(ColorComponent.INSTANCE, Removed.INSTANCE);
+            int c = assoc.newEntity(Removed.INSTANCE);
+            ColorComponent.INSTANCE.set(assoc, a, Color.RED);
+            ColorComponent.INSTANCE.set(assoc, b, Color.BLUE);
+            Removed.INSTANCE.set(assoc, c, true);
+            assoc.remove(a);
+            assoc.tick(0);
+
+            CEASnapshots.write(assoc, file);
+            CompEntAssoc restored = factory.build(registering(ColorComponent.INSTANCE, Removed.INSTANCE));
+            CEASnapshots.read(file, restored);
+
+            assertEquals(factory.toString(), assoc.getTick(), restored.getTick());
+            assertFalse(factory.toString(), restored.hasEntity(a));
+            assertEquals(factory.toString(), Color.BLUE, ColorComponent.INSTANCE.get(restored, b));
+            assertFalse(factory.toString(), Removed.INSTANCE.get(restored, b));
+            assertTrue(factory.toString(), Removed.INSTANCE.get(restored, c));
+            assertFalse(factory.toString(), restored.hasComponent(c, ColorComponent.INSTANCE));
+            assertEquals(factory.toString(), 2, restored.getEntities(Removed.INSTANCE).size());
+            // the freed index is reused with a new generation, as it would be
+            // in the original
+            int d = restored.newEntity(ColorComponent.INSTANCE);
+            assertEquals(factory.toString(), assoc.newEntity(ColorComponent.INSTANCE), d);
+            assertNotEquals(factory.toString(), a, d);
+        }
+    }
+
+    @Test
+    public void testReadAfterFieldAdded() throws Exception {
+        Named before = new Named(false);
+        Named after = new Named(true);
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = factory.build(registering(before));
+            int e = assoc.newEntity(before);
+            assoc.setInt(e, before.score, 42);
+
+            CEASnapshots.write(assoc, file);
+            CompEntAssoc restored = factory.build(registering(after));
+            CEASnapshots.read(file, restored);
+
+            assertEquals(factory.toString(), 42, restored.getInt(e, after.score));
+            assertEquals(factory.toString(), "", restored.get(e, after.name));
+        }
+    }
+
+}
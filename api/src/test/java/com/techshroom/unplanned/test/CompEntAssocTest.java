@@ -0,0 +1,570 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.collections.api.list.primitive.IntList;
+import org.eclipse.collections.api.list.primitive.MutableIntList;
+import org.eclipse.collections.api.set.primitive.IntSet;
+import org.eclipse.collections.api.set.primitive.MutableIntSet;
+import org.eclipse.collections.impl.factory.primitive.IntLists;
+import org.eclipse.collections.impl.factory.primitive.IntSets;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.techshroom.unplanned.core.util.Color;
+import com.techshroom.unplanned.ecs.ArchetypeCEAFactory;
+import com.techshroom.unplanned.ecs.CEAFactory;
+import com.techshroom.unplanned.ecs.CSystem;
+import com.techshroom.unplanned.ecs.ColumnarCEAFactory;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+import com.techshroom.unplanned.ecs.Component;
+import com.techshroom.unplanned.ecs.ComponentObserver;
+import com.techshroom.unplanned.ecs.EntityAllocator;
+import com.techshroom.unplanned.ecs.FieldAccessor;
+import com.techshroom.unplanned.ecs.ObjectCEAFactory;
+import com.techshroom.unplanned.ecs.Prefab;
+import com.techshroom.unplanned.ecs.defaults.ColorComponent;
+import com.techshroom.unplanned.ecs.defaults.OnChangeCSystem;
+import com.techshroom.unplanned.ecs.defaults.Removed;
+
+public class CompEntAssocTest {
+
+    private static final ImmutableList<CEAFactory> FACTORIES = ImmutableList.of(
+            ObjectCEAFactory.$,
+            ColumnarCEAFactory.$,
+            ArchetypeCEAFactory.$);
+
+    private static CSystem registering(Component... components) {
+        Set<Component> set = ImmutableSet.copyOf(components);
+        return new CSystem() {
+
+            @Override
+            public Set<Component> getComponents() {
+                return set;
+            }
+
+            @Override
+            public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
+            }
+        };
+    }
+
+    private static CompEntAssoc build(CEAFactory factory) {
+        return factory.build(registering(ColorComponent.INSTANCE, Removed.INSTANCE));
+    }
+
+    @Test
+    public void testDefaults() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            int e = assoc.newEntity(ColorComponent.INSTANCE, Removed.INSTANCE);
+            assertEquals(factory.toString(), Color.fromInt(0, 0, 0, 0), ColorComponent.INSTANCE.get(assoc, e));
+            assertFalse(factory.toString(), Removed.INSTANCE.get(assoc, e));
+        }
+    }
+
+    @Test
+    public void testSetGet() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            int e = assoc.newEntity(ColorComponent.INSTANCE, Removed.INSTANCE);
+            ColorComponent.INSTANCE.set(assoc, e, Color.GREEN);
+            Removed.INSTANCE.set(assoc, e, true);
+            assertEquals(factory.toString(), Color.GREEN, ColorComponent.INSTANCE.get(assoc, e));
+            assertTrue(factory.toString(), Removed.INSTANCE.get(assoc, e));
+        }
+    }
+
+    @Test
+    public void testPrimitiveAccessorsMatchBoxed() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            int e = assoc.newEntity(ColorComponent.INSTANCE, Removed.INSTANCE);
+            assoc.setInt(e, ColorComponent.INSTANCE.getG(), 200);
+            assertEquals(factory.toString(), Integer.valueOf(200), assoc.get(e, ColorComponent.INSTANCE.getG()));
+            assoc.set(e, ColorComponent.INSTANCE.getB(), 17);
+            assertEquals(factory.toString(), 17, assoc.getInt(e, ColorComponent.INSTANCE.getB()));
+        }
+    }
+
+    @Test
+    public void testRemoveKeepsOtherEntities() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            int a = assoc.newEntity(ColorComponent.INSTANCE);
+            int b = assoc.newEntity(ColorComponent.INSTANCE);
+            int c = assoc.newEntity(ColorComponent.INSTANCE);
+            ColorComponent.INSTANCE.set(assoc, a, Color.RED);
+            ColorComponent.INSTANCE.set(assoc, b, Color.GREEN);
+            ColorComponent.INSTANCE.set(assoc, c, Color.BLUE);
+
+            assoc.remove(a);
+
+            assertFalse(factory.toString(), assoc.hasEntity(a));
+            assertEquals(factory.toString(), Color.GREEN, ColorComponent.INSTANCE.get(assoc, b));
+            assertEquals(factory.toString(), Color.BLUE, ColorComponent.INSTANCE.get(assoc, c));
+            IntSet entities = assoc.getEntities(ColorComponent.INSTANCE);
+            assertEquals(factory.toString(), 2, entities.size());
+            assertTrue(factory.toString(), entities.containsAll(b, c));
+        }
+    }
+
+    @Test
+    public void testStaleHandleIsNotAlive() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            assertFalse(factory.toString(), assoc.hasEntity(0));
+            int old = assoc.newEntity(ColorComponent.INSTANCE);
+            assertTrue(factory.toString(), old != 0);
+            assoc.remove(old);
+            int reused = assoc.newEntity(ColorComponent.INSTANCE);
+            ColorComponent.INSTANCE.set(assoc, reused, Color.RED);
+
+            assertTrue(factory.toString(), old != reused);
+            assertFalse(factory.toString(), assoc.hasEntity(old));
+            assertTrue(factory.toString(), assoc.hasEntity(reused));
+            assertFalse(factory.toString(), assoc.hasComponent(old, ColorComponent.INSTANCE));
+            // removing the stale handle must not touch the new entity
+            assoc.remove(old);
+            assertEquals(factory.toString(), Color.RED, ColorComponent.INSTANCE.get(assoc, reused));
+            try {
+                ColorComponent.INSTANCE.get(assoc, old);
+                fail(factory + " allowed access through a stale handle");
+            } catch (IllegalStateException expected) {
+                // ok!
+            }
+        }
+    }
+
+    @Test
+    public void testChurnedIndexNeverRepeatsHandle() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            int first = assoc.newEntity(ColorComponent.INSTANCE);
+            assoc.remove(first);
+            MutableIntSet seen = IntSets.mutable.of(first);
+            // more frees than there are generations of one index
+            for (int i = 0; i < 3 << EntityAllocator.GENERATION_BITS; i++) {
+                int e = assoc.newEntity(ColorComponent.INSTANCE);
+                assertTrue(factory + " reused handle " + e, seen.add(e));
+                assertFalse(factory.toString(), assoc.hasEntity(first));
+                assoc.remove(e);
+            }
+        }
+    }
+
+    @Test
+    public void testChurnKeepsIndicesBounded() throws Exception {
+        EntityAllocator allocator = new EntityAllocator();
+        int live = 100;
+        int[] handles = new int[live];
+        for (int i = 0; i < live; i++) {
+            handles[i] = allocator.allocate();
+        }
+        // far more frees than one index has generations, per live entity
+        long frees = 16L * live << EntityAllocator.GENERATION_BITS;
+        for (long i = 0; i < frees; i++) {
+            int slot = (int) (i % live);
+            assertTrue(allocator.free(handles[slot]));
+            handles[slot] = allocator.allocate();
+        }
+        assertEquals(live, allocator.size());
+        assertTrue("capacity grew to " + allocator.capacity(),
+                allocator.capacity() <= live + EntityAllocator.MIN_FREE_INDICES + 1);
+    }
+
+    @Test
+    public void testUnattachedFieldFails() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            int e = assoc.newEntity(ColorComponent.INSTANCE);
+            assertFalse(factory.toString(), assoc.hasComponent(e, Removed.INSTANCE));
+            try {
+                Removed.INSTANCE.get(assoc, e);
+                fail(factory + " allowed access to an unattached field");
+            } catch (IllegalStateException expected) {
+                // ok!
+            }
+        }
+    }
+
+    @Test
+    public void testMultiComponentQuery() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            int both = assoc.newEntity(ColorComponent.INSTANCE, Removed.INSTANCE);
+            assoc.newEntity(ColorComponent.INSTANCE);
+            assoc.newEntity(Removed.INSTANCE);
+            IntSet result = assoc.getEntities(ImmutableList.of(ColorComponent.INSTANCE, Removed.INSTANCE));
+            assertEquals(factory.toString(), 1, result.size());
+            assertTrue(factory.toString(), result.contains(both));
+        }
+    }
+
+    @Test
+    public void testMultiComponentQueryStaysCurrent() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            ImmutableList<Component> query = ImmutableList.of(ColorComponent.INSTANCE, Removed.INSTANCE);
+            int before = assoc.newEntity(ColorComponent.INSTANCE, Removed.INSTANCE);
+            IntSet result = assoc.getEntities(query);
+            assertTrue(factory.toString(), result.contains(before));
+
+            int after = assoc.newEntity(ColorComponent.INSTANCE);
+            assertFalse(factory.toString(), result.contains(after));
+            assoc.addComponent(after, Removed.INSTANCE);
+            assertTrue(factory.toString(), result.contains(after));
+
+            assoc.removeComponent(before, ColorComponent.INSTANCE);
+            assoc.remove(after);
+            assertTrue(factory.toString(), result.isEmpty());
+        }
+    }
+
+    @Test
+    public void testChangedSince() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            assoc.trackChanges(ColorComponent.INSTANCE);
+            int a = assoc.newEntity(ColorComponent.INSTANCE);
+            int b = assoc.newEntity(ColorComponent.INSTANCE);
+            assoc.tick(0);
+            long since = assoc.nextChangeVersion();
+            ColorComponent.INSTANCE.set(assoc, b, Color.RED);
+
+            MutableIntSet changed = IntSets.mutable.empty();
+            assoc.forEachEntityChangedSince(ImmutableSet.of(ColorComponent.INSTANCE), since, changed::add);
+            assertEquals(factory.toString(), IntSets.mutable.of(b), changed);
+
+            changed.clear();
+            assoc.forEachEntityChangedSince(ImmutableSet.of(ColorComponent.INSTANCE), 0, changed::add);
+            assertTrue(factory.toString(), changed.containsAll(a, b));
+        }
+    }
+
+    @Test
+    public void testOnChangeSystemSkipsOwnWrites() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            MutableIntSet processed = IntSets.mutable.empty();
+            CSystem brighten = new OnChangeCSystem() {
+
+                @Override
+                public Set<Component> getComponents() {
+                    return ImmutableSet.of(ColorComponent.INSTANCE);
+                }
+
+                @Override
+                public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
+                    processed.add(entityId);
+                    ColorComponent.INSTANCE.set(assoc, entityId, Color.BLUE);
+                }
+            };
+            CompEntAssoc assoc = factory.build(brighten, registering(Removed.INSTANCE));
+            int a = assoc.newEntity(ColorComponent.INSTANCE);
+            int b = assoc.newEntity(ColorComponent.INSTANCE);
+            assoc.tick(0);
+            assertEquals(factory.toString(), IntSets.mutable.of(a, b), processed);
+
+            processed.clear();
+            assoc.tick(0);
+            assoc.tick(0);
+            assertTrue(factory + " saw its own writes", processed.isEmpty());
+
+            ColorComponent.INSTANCE.set(assoc, b, Color.RED);
+            assoc.tick(0);
+            assertEquals(factory.toString(), IntSets.mutable.of(b), processed);
+            processed.clear();
+            assoc.tick(0);
+            assertTrue(factory.toString(), processed.isEmpty());
+        }
+    }
+
+    @Test
+    public void testNewEntities() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            int single = assoc.newEntity(ColorComponent.INSTANCE);
+            assoc.remove(single);
+            int[] es = assoc.newEntities(300, ColorComponent.INSTANCE, Removed.INSTANCE);
+
+            assertEquals(factory.toString(), 300, es.length);
+            assertEquals(factory.toString(), 300, assoc.getEntities(ColorComponent.INSTANCE).size());
+            assertEquals(factory.toString(), 300,
+                    assoc.getEntities(ImmutableSet.of(ColorComponent.INSTANCE, Removed.INSTANCE)).size());
+            MutableIntSet unique = IntSets.mutable.of(es);
+            assertEquals(factory.toString(), 300, unique.size());
+            for (int e : es) {
+                assertEquals(factory.toString(), Color.fromInt(0, 0, 0, 0), ColorComponent.INSTANCE.get(assoc, e));
+                assertFalse(factory.toString(), Removed.INSTANCE.get(assoc, e));
+            }
+            ColorComponent.INSTANCE.set(assoc, es[299], Color.RED);
+            assertEquals(factory.toString(), Color.RED, ColorComponent.INSTANCE.get(assoc, es[299]));
+            assertEquals(factory.toString(), 0, assoc.newEntities(0, ColorComponent.INSTANCE).length);
+        }
+    }
+
+    @Test
+    public void testInstantiatePrefab() throws Exception {
+        Prefab red = Prefab.compile((e, assoc) -> ColorComponent.INSTANCE.set(assoc, e, Color.RED),
+                ColorComponent.INSTANCE, Removed.INSTANCE);
+        Prefab blue = red.with(ColorComponent.INSTANCE.getB(), 255);
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            int a = assoc.instantiate(red);
+            int[] bs = assoc.instantiate(blue, 100);
+
+            assertTrue(factory.toString(), assoc.hasComponent(a, Removed.INSTANCE));
+            assertEquals(factory.toString(), Color.RED, ColorComponent.INSTANCE.get(assoc, a));
+            assertEquals(factory.toString(), 101, assoc.getEntities(ColorComponent.INSTANCE).size());
+            for (int b : bs) {
+                assertEquals(factory.toString(), Color.fromInt(255, 0, 255, 255), ColorComponent.INSTANCE.get(assoc, b));
+            }
+            ColorComponent.INSTANCE.set(assoc, bs[0], Color.GREEN);
+            assertEquals(factory.toString(), 255, assoc.getInt(bs[1], ColorComponent.INSTANCE.getB()));
+
+            Prefab copy = assoc.toPrefab(bs[0]);
+            assertEquals(factory.toString(), ImmutableSet.of(ColorComponent.INSTANCE, Removed.INSTANCE), copy.getComponents());
+            int c = assoc.instantiate(copy);
+            assertEquals(factory.toString(), Color.GREEN, ColorComponent.INSTANCE.get(assoc, c));
+        }
+    }
+
+    @Test
+    public void testFieldAccessors() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            assoc.trackChanges(ColorComponent.INSTANCE);
+            FieldAccessor.OfInt red = assoc.intAccessor(ColorComponent.INSTANCE.getR());
+            FieldAccessor.OfBoolean removed = assoc.booleanAccessor(Removed.INSTANCE.getField("removed"));
+            FieldAccessor<Integer> green = assoc.accessor(ColorComponent.INSTANCE.getG());
+            int a = assoc.newEntity(ColorComponent.INSTANCE, Removed.INSTANCE);
+            int b = assoc.newEntity(ColorComponent.INSTANCE);
+            assoc.tick(0);
+            long since = assoc.nextChangeVersion();
+
+            red.set(b, 200);
+            green.set(b, 100);
+            removed.set(a, true);
+            assertEquals(factory.toString(), 200, red.get(b));
+            assertEquals(factory.toString(), 200, assoc.getInt(b, ColorComponent.INSTANCE.getR()));
+            assertEquals(factory.toString(), Integer.valueOf(100), green.get(b));
+            assertTrue(factory.toString(), removed.get(a));
+            assertEquals(factory.toString(), 0, red.get(a));
+
+            MutableIntSet changed = IntSets.mutable.empty();
+            assoc.forEachEntityChangedSince(ImmutableSet.of(ColorComponent.INSTANCE), since, changed::add);
+            assertEquals(factory.toString(), IntSets.mutable.of(b), changed);
+
+            try {
+                removed.get(b);
+                fail(factory + " read a field the entity doesn't have");
+            } catch (IllegalStateException expected) {
+            }
+            try {
+                assoc.longAccessor(Removed.INSTANCE.getField("removed"));
+                fail(factory + " bound a field to the wrong type");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testObserverBatchesAtTickEnd() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            MutableIntList attached = IntLists.mutable.empty();
+            MutableIntList detached = IntLists.mutable.empty();
+            MutableIntList destroyed = IntLists.mutable.empty();
+            int[] calls = { 0 };
+            assoc.addObserver(new ComponentObserver() {
+
+                @Override
+                public Set<Component> getObservedComponents() {
+                    return ImmutableSet.of(Removed.INSTANCE);
+                }
+
+                @Override
+                public void onAttached(CompEntAssoc assoc, Component component, IntList entities) {
+                    calls[0]++;
+                    attached.addAll(entities);
+                }
+
+                @Override
+                public void onDetached(CompEntAssoc assoc, Component component, IntList entities) {
+                    detached.addAll(entities);
+                }
+
+                @Override
+                public void onDestroyed(CompEntAssoc assoc, Component component, IntList entities) {
+                    destroyed.addAll(entities);
+                }
+            });
+            int a = assoc.newEntity(Removed.INSTANCE);
+            int b = assoc.newEntity(ColorComponent.INSTANCE);
+            assoc.addComponent(b, Removed.INSTANCE);
+            int c = assoc.newEntity(Removed.INSTANCE, ColorComponent.INSTANCE);
+            assoc.removeComponent(c, Removed.INSTANCE);
+            assoc.remove(a);
+            assoc.remove(b);
+            assertTrue(factory.toString(), attached.isEmpty());
+
+            assoc.tick(0);
+            assertEquals(factory.toString(), 1, calls[0]);
+            assertEquals(factory.toString(), IntLists.mutable.of(a, b, c), attached);
+            assertEquals(factory.toString(), IntLists.mutable.of(c), detached);
+            assertEquals(factory.toString(), IntLists.mutable.of(a, b), destroyed);
+
+            assoc.tick(0);
+            assertEquals(factory.toString(), 1, calls[0]);
+        }
+    }
+
+    @Test
+    public void testObserverAddedWhileDelivering() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            MutableIntList late = IntLists.mutable.empty();
+            ComponentObserver lateObserver = new ComponentObserver() {
+
+                @Override
+                public Set<Component> getObservedComponents() {
+                    return ImmutableSet.of(Removed.INSTANCE, ColorComponent.INSTANCE);
+                }
+
+                @Override
+                public void onAttached(CompEntAssoc assoc, Component component, IntList entities) {
+                    late.addAll(entities);
+                }
+            };
+            assoc.addObserver(new ComponentObserver() {
+
+                @Override
+                public Set<Component> getObservedComponents() {
+                    return ImmutableSet.of(Removed.INSTANCE);
+                }
+
+                @Override
+                public void onAttached(CompEntAssoc assoc, Component component, IntList entities) {
+                    assoc.addObserver(lateObserver);
+                }
+            });
+            assoc.newEntity(Removed.INSTANCE);
+
+            assoc.tick(0);
+            assertTrue(factory.toString(), late.isEmpty());
+
+            int e = assoc.newEntity(ColorComponent.INSTANCE);
+            assoc.tick(0);
+            assertEquals(factory.toString(), IntLists.mutable.of(e), late);
+        }
+    }
+
+    @Test
+    public void testAddRemoveComponentKeepsFields() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            int e = assoc.newEntity(ColorComponent.INSTANCE);
+            ColorComponent.INSTANCE.set(assoc, e, Color.RED);
+
+            assoc.addComponent(e, Removed.INSTANCE);
+            assertTrue(factory.toString(), assoc.hasComponent(e, Removed.INSTANCE));
+            assertFalse(factory.toString(), Removed.INSTANCE.get(assoc, e));
+            assertEquals(factory.toString(), Color.RED, ColorComponent.INSTANCE.get(assoc, e));
+
+            assoc.removeComponent(e, ColorComponent.INSTANCE);
+            assertFalse(factory.toString(), assoc.hasComponent(e, ColorComponent.INSTANCE));
+            assertTrue(factory.toString(), assoc.getEntities(Removed.INSTANCE).contains(e));
+            assertFalse(factory.toString(), assoc.getEntities(ColorComponent.INSTANCE).contains(e));
+        }
+    }
+
+    @Test
+    public void testForEachEntityWithDeferredRemoval() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            for (int i = 0; i < 1000; i++) {
+                assoc.newEntity(ColorComponent.INSTANCE, Removed.INSTANCE);
+            }
+            int[] visited = { 0 };
+            assoc.forEachEntity(ImmutableSet.of(Removed.INSTANCE), e -> {
+                visited[0]++;
+                assoc.commands().remove(e);
+            });
+            assertEquals(factory.toString(), 1000, visited[0]);
+            assertEquals(factory.toString(), 1000, assoc.getEntities(ColorComponent.INSTANCE).size());
+            assoc.playbackCommands();
+            assertTrue(factory.toString(), assoc.getEntities(ColorComponent.INSTANCE).isEmpty());
+        }
+    }
+
+    @Test
+    public void testCommandBufferCreate() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            IntSet colored = assoc.getEntities(ColorComponent.INSTANCE);
+            int e = assoc.commands().create(ColorComponent.INSTANCE);
+            assoc.commands().defer(a -> ColorComponent.INSTANCE.set(a, e, Color.BLUE));
+            assertFalse(factory.toString(), assoc.hasEntity(e));
+            assertTrue(factory.toString(), colored.isEmpty());
+
+            assoc.playbackCommands();
+            assertTrue(factory.toString(), assoc.hasEntity(e));
+            assertTrue(factory.toString(), assoc.commands().isEmpty());
+            assertEquals(factory.toString(), Color.BLUE, ColorComponent.INSTANCE.get(assoc, e));
+            // the set handed out earlier is a live view
+            assertTrue(factory.toString(), colored.contains(e));
+        }
+    }
+
+    @Test
+    public void testForEachEntityParallelWritesEveryEntity() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            for (int i = 0; i < 10000; i++) {
+                assoc.newEntity(ColorComponent.INSTANCE, Removed.INSTANCE);
+            }
+            AtomicInteger visited = new AtomicInteger();
+            assoc.forEachEntityParallel(ImmutableSet.of(Removed.INSTANCE), e -> {
+                visited.incrementAndGet();
+                Removed.INSTANCE.set(assoc, e, true);
+            });
+            assertEquals(factory.toString(), 10000, visited.get());
+            assoc.forEachEntity(ImmutableSet.of(Removed.INSTANCE), e -> {
+                assertTrue(factory.toString(), Removed.INSTANCE.get(assoc, e));
+            });
+        }
+    }
+
+}
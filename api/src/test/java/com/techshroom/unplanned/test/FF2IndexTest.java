@@ -0,0 +1,161 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Bytes;
+import com.techshroom.unplanned.rp.RId;
+import com.techshroom.unplanned.rp.ResourceNotFoundException;
+import com.techshroom.unplanned.rp.ResourcePack;
+import com.techshroom.unplanned.rp.ff2.FF2Codec;
+import com.techshroom.unplanned.rp.ff2.FF2Dictionaries;
+import com.techshroom.unplanned.rp.ff2.FF2Index;
+import com.techshroom.unplanned.rp.ff2.FF2MappedIndex;
+import com.techshroom.unplanned.rp.ff2.FF2ResourcePackLoader;
+
+public class FF2IndexTest {
+
+    private static final RId HELLO = RId.parse("test:text/hello");
+    private static final RId WORLD = RId.parse("test:text/deep/world");
+    private static final RId MISSING = RId.parse("test:text/missing");
+
+    private static final Map<RId, FF2Index.Value> INDEX = ImmutableMap.of(
+            HELLO, FF2Index.Value.create((byte) 0, 0, 5),
+            WORLD, FF2Index.Value.create((byte) 0, 5, 5));
+
+    private static Path pack() throws Exception {
+        Path pack = Files.createTempDirectory("ff2");
+        Files.write(pack.resolve("0"), "helloworld".getBytes(UTF_8));
+        return pack;
+    }
+
+    private static void checkPack(Path pack) throws Exception {
+        ResourcePack rp = new FF2ResourcePackLoader().load(pack);
+        assertEquals("hello", rp.loadResource(HELLO).asString());
+        assertEquals("world", rp.loadResource(WORLD).asString());
+        try {
+            rp.loadResource(MISSING);
+            fail("loaded a missing resource");
+        } catch (ResourceNotFoundException expected) {
+        }
+    }
+
+    @Test
+    public void testV1Index() throws Exception {
+        Path pack = pack();
+        try (DataOutputStream data = new DataOutputStream(Files.newOutputStream(pack.resolve("index")))) {
+            data.writeInt(INDEX.size());
+            for (Map.Entry<RId, FF2Index.Value> e : INDEX.entrySet()) {
+                data.writeUTF(e.getKey().toString());
+                data.writeByte(e.getValue().getIndex());
+                data.writeLong(e.getValue().getOffset());
+                data.writeLong(e.getValue().getSize());
+            }
+        }
+        checkPack(pack);
+    }
+
+    @Test
+    public void testV2Index() throws Exception {
+        Path pack = pack();
+        FF2MappedIndex.write(INDEX, pack.resolve("index"), 2);
+        assertEquals(2, FF2MappedIndex.open(pack.resolve("index")).getVersion());
+        checkPack(pack);
+    }
+
+    @Test
+    public void testV3Index() throws Exception {
+        Path pack = pack();
+        FF2MappedIndex.write(INDEX, pack.resolve("index"));
+        assertEquals(3, FF2MappedIndex.open(pack.resolve("index")).getVersion());
+        checkPack(pack);
+    }
+
+    @Test
+    public void testCompressedPack() throws Exception {
+        byte[] hello = Strings.repeat("hello", 100).getBytes(UTF_8);
+        byte[] world = Strings.repeat("world", 100).getBytes(UTF_8);
+        byte[] dictionary = "world".getBytes(UTF_8);
+        byte[] helloZstd = Zstd.compress(hello, 3);
+        byte[] worldZstd = Zstd.compress(world, new ZstdDictCompress(dictionary, 3));
+
+        Path pack = Files.createTempDirectory("ff2");
+        Files.write(pack.resolve("0"), Bytes.concat(helloZstd, worldZstd));
+        FF2Dictionaries.write(ImmutableList.of(dictionary), pack);
+        FF2MappedIndex.write(ImmutableMap.of(
+                HELLO, FF2Index.Value.create((byte) 0, 0, helloZstd.length, FF2Codec.ZSTD, hello.length,
+                        FF2Index.Value.NO_DICTIONARY),
+                WORLD, FF2Index.Value.create((byte) 0, helloZstd.length, worldZstd.length, FF2Codec.ZSTD, world.length, 0)),
+                pack.resolve("index"));
+
+        ResourcePack rp = new FF2ResourcePackLoader().load(pack);
+        assertArrayEquals(hello, rp.loadResource(HELLO).asBytes());
+        ByteBuffer worldBuffer = rp.loadResource(WORLD).asByteBuffer();
+        assertTrue(worldBuffer.isDirect());
+        assertEquals(ByteBuffer.wrap(world), worldBuffer);
+    }
+
+    @Test
+    public void testMappedLookupAll() throws Exception {
+        Path file = Files.createTempFile("ff2", "index");
+        ImmutableMap.Builder<RId, FF2Index.Value> b = ImmutableMap.builder();
+        for (int i = 0; i < 5000; i++) {
+            RId id = RId.from("test", "cat" + (i % 7), "id" + i);
+            if (i % 2 == 0) {
+                b.put(id, FF2Index.Value.create((byte) (i % 3), i, i * 2));
+            } else {
+                b.put(id, FF2Index.Value.create((byte) (i % 3), i, i * 2, FF2Codec.ZSTD, i * 3, i % 5 - 1));
+            }
+        }
+        ImmutableMap<RId, FF2Index.Value> index = b.build();
+        FF2MappedIndex.write(index, file);
+
+        FF2MappedIndex mapped = FF2MappedIndex.open(file);
+        assertEquals(index.size(), mapped.size());
+        assertEquals(3, mapped.getFileCount());
+        index.forEach((id, value) -> assertEquals(id.toString(), value, mapped.getData(id)));
+        assertEquals(null, mapped.getData(MISSING));
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+import com.techshroom.unplanned.core.util.files.FileRetentionPolicies;
+import com.techshroom.unplanned.core.util.files.LruMappedFilesPolicy;
+
+public class LruMappedFilesPolicyTest {
+
+    private static Path[] parts(int count, int size) throws Exception {
+        Path dir = Files.createTempDirectory("lru");
+        Path[] parts = new Path[count];
+        for (int i = 0; i < count; i++) {
+            byte[] data = new byte[size];
+            for (int j = 0; j < size; j++) {
+                data[j] = (byte) (i * 31 + j);
+            }
+            parts[i] = Files.write(dir.resolve(String.valueOf(i)), data);
+        }
+        return parts;
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        Path[] parts = parts(3, 100);
+        LruMappedFilesPolicy policy = FileRetentionPolicies.lruMemoryMappedFiles(250);
+
+        policy.openBuffer(parts[0], 0, 1);
+        policy.openBuffer(parts[1], 0, 1);
+        policy.openBuffer(parts[0], 0, 1);
+        assertEquals(2, policy.getRemaps());
+        assertEquals(1, policy.getHits());
+        assertEquals(200, policy.getMappedBytes());
+
+        // over budget, 1 was used least recently
+        policy.openBuffer(parts[2], 0, 1);
+        assertEquals(200, policy.getMappedBytes());
+        policy.openBuffer(parts[0], 0, 1);
+        assertEquals(2, policy.getHits());
+        policy.openBuffer(parts[1], 0, 1);
+        assertEquals(4, policy.getRemaps());
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        int size = 4096;
+        Path[] parts = parts(4, size);
+        // room for two parts, so reads keep remapping
+        LruMappedFilesPolicy policy = FileRetentionPolicies.lruMemoryMappedFiles(2 * size);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> reads = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                reads.add(pool.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 2000; i++) {
+                        int part = random.nextInt(parts.length);
+                        int offset = random.nextInt(size - 16);
+                        ByteBuffer buffer = policy.openBuffer(parts[part], offset, 16);
+                        for (int j = 0; j < 16; j++) {
+                            assertEquals((byte) (part * 31 + offset + j), buffer.get(j));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> read : reads) {
+                read.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(8 * 2000, policy.getHits() + policy.getRemaps());
+        assertEquals(2 * size, policy.getMappedBytes());
+    }
+
+}
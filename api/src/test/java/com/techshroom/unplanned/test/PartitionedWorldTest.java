@@ -0,0 +1,272 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.techshroom.unplanned.core.util.Color;
+import com.techshroom.unplanned.ecs.CSystem;
+import com.techshroom.unplanned.ecs.ColumnarCEAFactory;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+import com.techshroom.unplanned.ecs.Component;
+import com.techshroom.unplanned.ecs.Mailbox;
+import com.techshroom.unplanned.ecs.PartitionedWorld;
+import com.techshroom.unplanned.ecs.PartitionedWorld.Partition;
+import com.techshroom.unplanned.ecs.defaults.ColorComponent;
+import com.techshroom.unplanned.ecs.defaults.Removed;
+
+public class PartitionedWorldTest {
+
+    /**
+     * Moves every colored entity in partition 0 to partition 1, and tells
+     * partition 1 about it.
+     */
+    private static final class Mover implements CSystem {
+
+        private final Partition<String> partition;
+
+        Mover(Partition<String> partition) {
+            this.partition = partition;
+        }
+
+        @Override
+        public Set<Component> getComponents() {
+            return ImmutableSet.of(ColorComponent.INSTANCE);
+        }
+
+        @Override
+        public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
+            if (partition.getIndex() == 0) {
+                partition.migrate(entityId, 1);
+                partition.send(1, "moved " + entityId);
+            }
+        }
+
+    }
+
+    /**
+     * Registers a component without doing anything with it.
+     */
+    private static final class Holder implements CSystem {
+
+        private final Component component;
+
+        Holder(Component component) {
+            this.component = component;
+        }
+
+        @Override
+        public Set<Component> getComponents() {
+            return ImmutableSet.of(component);
+        }
+
+        @Override
+        public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
+        }
+
+    }
+
+    /**
+     * Fails every tick of the partition it is in.
+     */
+    private static final class Failer implements CSystem {
+
+        @Override
+        public Set<Component> getComponents() {
+            return ImmutableSet.of(ColorComponent.INSTANCE);
+        }
+
+        @Override
+        public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
+            throw new IllegalStateException("failing on purpose");
+        }
+
+    }
+
+    private static PartitionedWorld<String> world(List<String> received) {
+        return PartitionedWorld.create(ColumnarCEAFactory.$, 2,
+                p -> ImmutableList.of(new Mover(p)),
+                (p, msg) -> received.add(p.getIndex() + ": " + msg));
+    }
+
+    @Test
+    public void testMigrationKeepsFields() throws Exception {
+        List<String> received = new ArrayList<>();
+        try (PartitionedWorld<String> world = world(received)) {
+            List<int[]> migrations = new ArrayList<>();
+            world.addMigrationListener((from, oldId, to, newId) -> migrations.add(new int[] { from, oldId, to, newId }));
+            CompEntAssoc first = world.getPartition(0).getAssoc();
+            CompEntAssoc second = world.getPartition(1).getAssoc();
+            int e = first.newEntity(ColorComponent.INSTANCE);
+            Color color = Color.fromInt(1, 2, 3, 4);
+            ColorComponent.INSTANCE.set(first, e, color);
+
+            world.tick(1);
+
+            assertFalse(first.hasEntity(e));
+            assertEquals(1, migrations.size());
+            int[] m = migrations.get(0);
+            assertEquals(0, m[0]);
+            assertEquals(e, m[1]);
+            assertEquals(1, m[2]);
+            assertTrue(second.hasComponent(m[3], ColorComponent.INSTANCE));
+            assertEquals(color, ColorComponent.INSTANCE.get(second, m[3]));
+        }
+    }
+
+    @Test
+    public void testMigrationToPartitionWithoutComponentIsRejected() throws Exception {
+        // only partition 0 knows Removed
+        try (PartitionedWorld<String> world = PartitionedWorld.create(ColumnarCEAFactory.$, 2,
+                p -> p.getIndex() == 0
+                        ? ImmutableList.of(new Mover(p), new Holder(Removed.INSTANCE))
+                        : ImmutableList.of(new Mover(p)),
+                (p, msg) -> {
+                })) {
+            List<int[]> migrated = new ArrayList<>();
+            List<int[]> rejected = new ArrayList<>();
+            world.addMigrationListener(new PartitionedWorld.MigrationListener() {
+
+                @Override
+                public void onMigrated(int fromPartition, int oldId, int toPartition, int newId) {
+                    migrated.add(new int[] { fromPartition, oldId, toPartition, newId });
+                }
+
+                @Override
+                public void onRejected(int fromPartition, int entityId, int toPartition, Component missing) {
+                    assertEquals(Removed.INSTANCE, missing);
+                    rejected.add(new int[] { fromPartition, entityId, toPartition });
+                }
+            });
+            CompEntAssoc first = world.getPartition(0).getAssoc();
+            CompEntAssoc second = world.getPartition(1).getAssoc();
+            int stuck = first.newEntity(ColorComponent.INSTANCE, Removed.INSTANCE);
+            int moving = first.newEntity(ColorComponent.INSTANCE);
+
+            world.tick(1);
+
+            assertEquals(1, rejected.size());
+            assertEquals(stuck, rejected.get(0)[1]);
+            assertTrue(first.hasEntity(stuck));
+            assertTrue(first.hasComponent(stuck, Removed.INSTANCE));
+            // the rejection didn't stop the other migration
+            assertEquals(1, migrated.size());
+            assertEquals(moving, migrated.get(0)[1]);
+            assertFalse(first.hasEntity(moving));
+            assertTrue(second.hasComponent(migrated.get(0)[3], ColorComponent.INSTANCE));
+        }
+    }
+
+    @Test
+    public void testFailedTickStillAppliesMigrations() throws Exception {
+        List<String> received = new ArrayList<>();
+        try (PartitionedWorld<String> world = PartitionedWorld.create(ColumnarCEAFactory.$, 2,
+                p -> p.getIndex() == 0
+                        ? ImmutableList.of(new Mover(p))
+                        : ImmutableList.of(new Failer()),
+                (p, msg) -> received.add(p.getIndex() + ": " + msg))) {
+            CompEntAssoc first = world.getPartition(0).getAssoc();
+            int e = first.newEntity(ColorComponent.INSTANCE);
+            // gives partition 1 something to fail on
+            world.getPartition(1).getAssoc().newEntity(ColorComponent.INSTANCE);
+
+            try {
+                world.tick(1);
+                fail("partition 1 should have failed");
+            } catch (IllegalStateException expected) {
+            }
+            assertFalse(first.hasEntity(e));
+            assertEquals(2, world.getPartition(1).getAssoc().getEntities(ColorComponent.INSTANCE).size());
+        }
+    }
+
+    @Test
+    public void testMessagesArriveNextTick() throws Exception {
+        List<String> received = new ArrayList<>();
+        try (PartitionedWorld<String> world = world(received)) {
+            int e = world.getPartition(0).getAssoc().newEntity(ColorComponent.INSTANCE);
+
+            world.tick(1);
+            assertEquals(ImmutableList.of(), received);
+
+            world.tick(1);
+            assertEquals(ImmutableList.of("1: moved " + e), received);
+
+            world.tick(1);
+            assertEquals(1, received.size());
+        }
+    }
+
+    @Test
+    public void testMailboxKeepsPerProducerOrder() throws Exception {
+        Mailbox<int[]> mailbox = new Mailbox<>();
+        int producers = 4;
+        int perProducer = 10000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    mailbox.post(new int[] { producer, i });
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+        int[] next = new int[producers];
+        int total = 0;
+        while (total < producers * perProducer) {
+            total += mailbox.drain(msg -> {
+                assertEquals(next[msg[0]], msg[1]);
+                next[msg[0]]++;
+            });
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertTrue(mailbox.isEmpty());
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+import com.techshroom.unplanned.core.util.files.DirectBufferPool;
+import com.techshroom.unplanned.core.util.files.FileRetentionPolicies;
+import com.techshroom.unplanned.core.util.files.FileRetentionPolicy;
+import com.techshroom.unplanned.rp.RawResource;
+
+public class RawResourceTest {
+
+    private static final byte[] DATA = { 1, 2, (byte) 0xFF, 4, 5, 6 };
+
+    @Test
+    public void testMappedBufferIsZeroCopy() throws Exception {
+        Path file = Files.createTempFile("raw", "resource");
+        Files.write(file, DATA);
+        FileRetentionPolicy mmap = FileRetentionPolicies.singleMemoryMappedFile();
+
+        ByteBuffer buffer = new RawResource(mmap.openBuffer(file, 2, 3)).asByteBuffer();
+        assertTrue(buffer.isDirect());
+        assertTrue(buffer.isReadOnly());
+        assertEquals(3, buffer.remaining());
+        assertEquals((byte) 0xFF, buffer.get(0));
+        assertEquals(5, buffer.get(2));
+
+        ByteBuffer heap = FileRetentionPolicies.noRetention().openBuffer(file, 2, 3);
+        assertEquals(buffer, heap);
+    }
+
+    @Test
+    public void testBufferAsStream() throws Exception {
+        RawResource resource = new RawResource(ByteBuffer.wrap(DATA));
+        byte[] read = resource.useStream(s -> {
+            assertEquals(1, s.read());
+            assertEquals(2, s.read());
+            assertEquals(0xFF, s.read());
+            return ByteStreams.toByteArray(s);
+        });
+        assertArrayEquals(new byte[] { 4, 5, 6 }, read);
+    }
+
+    @Test
+    public void testPooledBufferIsReleased() throws Exception {
+        DirectBufferPool pool = DirectBufferPool.create(1 << 20);
+        ByteBuffer buffer = pool.take(DATA.length);
+        buffer.put(DATA).flip();
+        assertArrayEquals(DATA, new RawResource(buffer, () -> pool.release(buffer)).asBytes());
+        assertEquals(4096, pool.getRetainedBytes());
+        assertSame(buffer, pool.take(100));
+
+        // handed off, so never returned
+        ByteBuffer kept = pool.take(DATA.length);
+        new RawResource(kept, () -> pool.release(kept)).asByteBuffer();
+        assertEquals(0, pool.getRetainedBytes());
+    }
+
+}
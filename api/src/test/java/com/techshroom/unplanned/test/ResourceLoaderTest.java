@@ -0,0 +1,218 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.techshroom.unplanned.core.util.files.DirectBufferPool;
+import com.techshroom.unplanned.rp.NoComponentResourcePack;
+import com.techshroom.unplanned.rp.RId;
+import com.techshroom.unplanned.rp.RawResource;
+import com.techshroom.unplanned.rp.ResourceFuture;
+import com.techshroom.unplanned.rp.ResourceLoader;
+import com.techshroom.unplanned.rp.ResourceNotFoundException;
+import com.techshroom.unplanned.rp.SimpleComponentResourcePack;
+
+public class ResourceLoaderTest {
+
+    private static final RId BLOCK = RId.parse("test:text/block");
+
+    /**
+     * Has every resource in {@code ids}, the content being the ID. Loading
+     * {@link #BLOCK} waits for {@link #release}. Resources are read into
+     * buffers from {@link #pool} if it is set.
+     */
+    private static final class TestPack implements NoComponentResourcePack {
+
+        private final String id;
+        private final ImmutableSet<RId> ids;
+        final List<RId> loads = new CopyOnWriteArrayList<>();
+        final CountDownLatch blocking = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        DirectBufferPool pool;
+
+        TestPack(String id, RId... ids) {
+            this.id = id;
+            this.ids = ImmutableSet.copyOf(ids);
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public RawResource loadResource(RId resource) {
+            if (!ids.contains(resource)) {
+                throw new ResourceNotFoundException(resource, "not in " + id);
+            }
+            loads.add(resource);
+            if (resource.equals(BLOCK)) {
+                blocking.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+            }
+            byte[] content = resource.toString().getBytes(UTF_8);
+            if (pool == null) {
+                return new RawResource(ByteBuffer.wrap(content));
+            }
+            ByteBuffer buffer = pool.take(content.length);
+            buffer.put(content).flip();
+            return new RawResource(buffer, () -> pool.release(buffer));
+        }
+
+    }
+
+    private final ResourceLoader loader = ResourceLoader.create(1);
+
+    @After
+    public void tearDown() {
+        loader.close();
+    }
+
+    private static RId id(String name) {
+        return RId.parse("test:text/" + name);
+    }
+
+    private static String content(ResourceFuture future) throws Exception {
+        return future.get(10, TimeUnit.SECONDS).asString();
+    }
+
+    @Test
+    public void testCoalescesDuplicates() throws Exception {
+        TestPack pack = new TestPack("pack", BLOCK);
+        ResourceFuture first = loader.load(pack, BLOCK, 0);
+        ResourceFuture second = loader.load(pack, BLOCK, 0);
+        pack.release.countDown();
+        assertEquals(BLOCK.toString(), content(first));
+        assertEquals(BLOCK.toString(), content(second));
+        assertEquals(ImmutableList.of(BLOCK), pack.loads);
+    }
+
+    @Test
+    public void testCoalescedPooledBufferIsReleased() throws Exception {
+        TestPack pack = new TestPack("pack", BLOCK);
+        pack.pool = DirectBufferPool.create(1 << 20);
+        ResourceFuture first = loader.load(pack, BLOCK, 0);
+        ResourceFuture second = loader.load(pack, BLOCK, 0);
+        ResourceFuture third = loader.load(pack, BLOCK, 0);
+        pack.release.countDown();
+
+        assertEquals(BLOCK.toString(), content(first));
+        assertEquals(BLOCK.toString(), content(second));
+        // still in use by the third
+        assertEquals(0, pack.pool.getRetainedBytes());
+        assertEquals(BLOCK.toString(), content(third));
+        assertEquals(4096, pack.pool.getRetainedBytes());
+        assertEquals(ImmutableList.of(BLOCK), pack.loads);
+    }
+
+    @Test
+    public void testHighestPriorityFirst() throws Exception {
+        RId low = id("low");
+        RId mid = id("mid");
+        RId high = id("high");
+        RId bumped = id("bumped");
+        TestPack pack = new TestPack("pack", BLOCK, low, mid, high, bumped);
+        ResourceFuture block = loader.load(pack, BLOCK, 0);
+        assertTrue(pack.blocking.await(10, TimeUnit.SECONDS));
+
+        loader.load(pack, low, 1);
+        loader.load(pack, mid, 5);
+        ResourceFuture last = loader.load(pack, high, 10);
+        loader.load(pack, bumped, 0).bumpPriority(20);
+        // asking again at a higher priority bumps too
+        loader.load(pack, low, 7);
+        assertEquals(4, loader.getQueuedCount());
+
+        pack.release.countDown();
+        content(block);
+        content(last);
+        while (pack.loads.size() < 5) {
+            Thread.sleep(1);
+        }
+        assertEquals(ImmutableList.of(BLOCK, bumped, high, low, mid), pack.loads);
+    }
+
+    @Test
+    public void testCancelWaiting() throws Exception {
+        RId cancelled = id("cancelled");
+        RId shared = id("shared");
+        TestPack pack = new TestPack("pack", BLOCK, cancelled, shared);
+        ResourceFuture block = loader.load(pack, BLOCK, 0);
+        assertTrue(pack.blocking.await(10, TimeUnit.SECONDS));
+
+        assertTrue(loader.load(pack, cancelled, 0).cancel(false));
+        // still loaded for the other requester
+        ResourceFuture kept = loader.load(pack, shared, 0);
+        loader.load(pack, shared, 0).cancel(false);
+        assertEquals(1, loader.getQueuedCount());
+
+        pack.release.countDown();
+        content(block);
+        assertEquals(shared.toString(), content(kept));
+        assertEquals(ImmutableList.of(BLOCK, shared), pack.loads);
+    }
+
+    @Test
+    public void testComponentsAskedInOrder() throws Exception {
+        RId both = id("both");
+        RId second = id("second");
+        TestPack first = new TestPack("first", both);
+        TestPack fallback = new TestPack("fallback", both, second);
+        SimpleComponentResourcePack pack = new SimpleComponentResourcePack("components", ImmutableList.of(first, fallback));
+
+        assertEquals(both.toString(), content(pack.loadResourceAsync(both, 0)));
+        assertEquals(second.toString(), content(pack.loadResourceAsync(second, 0)));
+        assertEquals(ImmutableList.of(both), first.loads);
+        assertEquals(ImmutableList.of(second), fallback.loads);
+        try {
+            content(pack.loadResourceAsync(id("missing"), 0));
+            fail("loaded a missing resource");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof ResourceNotFoundException);
+        }
+    }
+
+}
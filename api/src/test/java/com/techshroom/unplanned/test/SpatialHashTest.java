@@ -0,0 +1,175 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.techshroom.unplanned.ecs.ArchetypeCEAFactory;
+import com.techshroom.unplanned.ecs.CEAFactory;
+import com.techshroom.unplanned.ecs.CSystem;
+import com.techshroom.unplanned.ecs.ColumnarCEAFactory;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+import com.techshroom.unplanned.ecs.Component;
+import com.techshroom.unplanned.ecs.ComponentBase;
+import com.techshroom.unplanned.ecs.ComponentField;
+import com.techshroom.unplanned.ecs.IntComponentField;
+import com.techshroom.unplanned.ecs.ObjectCEAFactory;
+import com.techshroom.unplanned.ecs.SpatialHash;
+
+public class SpatialHashTest {
+
+    private static final ImmutableList<CEAFactory> FACTORIES = ImmutableList.of(
+            ObjectCEAFactory.$,
+            ColumnarCEAFactory.$,
+            ArchetypeCEAFactory.$);
+
+    private static final class Position extends ComponentBase {
+
+        private static final Position INSTANCE = new Position();
+
+        private final IntComponentField x = IntComponentField.createNoId(getId(), "x");
+        private final IntComponentField y = IntComponentField.createNoId(getId(), "y");
+        private final Map<String, ComponentField<?>> fields = Component.makeFieldMap(x, y);
+
+        @Override
+        public Map<String, ComponentField<?>> getFields() {
+            return fields;
+        }
+
+    }
+
+    private static CompEntAssoc build(CEAFactory factory) {
+        return factory.build(new CSystem() {
+
+            @Override
+            public Set<Component> getComponents() {
+                return ImmutableSet.of(Position.INSTANCE);
+            }
+
+            @Override
+            public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
+            }
+        });
+    }
+
+    private static int at(CompEntAssoc assoc, int x, int y) {
+        int e = assoc.newEntity(Position.INSTANCE);
+        assoc.setInt(e, Position.INSTANCE.x, x);
+        assoc.setInt(e, Position.INSTANCE.y, y);
+        return e;
+    }
+
+    private static int[] sorted(int[] out, int count) {
+        int[] found = Arrays.copyOf(out, count);
+        Arrays.sort(found);
+        return found;
+    }
+
+    @Test
+    public void testQueries() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            int before = at(assoc, 1, 1);
+            SpatialHash hash = SpatialHash.create(assoc, Position.INSTANCE, Position.INSTANCE.x, Position.INSTANCE.y, 4);
+            int a = at(assoc, 5, 5);
+            int b = at(assoc, -3, 7);
+            int c = at(assoc, 100, 100);
+            int[] out = new int[8];
+
+            assertEquals(factory.toString(), 4, hash.size());
+            assertEquals(factory.toString(), 1, hash.queryPoint(1, 1, out));
+            assertEquals(factory.toString(), before, out[0]);
+            int n = hash.queryRect(-5, 0, 5, 7, out);
+            assertTrue(factory.toString(), Arrays.equals(sorted(new int[] { before, a, b }, 3), sorted(out, n)));
+            assertEquals(factory.toString(), 0, hash.queryRadius(4, 4, 1, out));
+            assertEquals(factory.toString(), 1, hash.queryRadius(4, 4, 2, out));
+            assertEquals(factory.toString(), a, out[0]);
+            assertEquals(factory.toString(), 0, hash.queryRadius(98, 98, 2, out));
+            assertEquals(factory.toString(), 1, hash.queryRadius(98, 98, 3, out));
+            assertEquals(factory.toString(), c, out[0]);
+        }
+    }
+
+    @Test
+    public void testQueriesNearIntRange() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            SpatialHash hash = SpatialHash.create(assoc, Position.INSTANCE, Position.INSTANCE.x, Position.INSTANCE.y, 4);
+            int max = at(assoc, Integer.MAX_VALUE, Integer.MAX_VALUE);
+            int min = at(assoc, Integer.MIN_VALUE, Integer.MIN_VALUE);
+            int[] out = new int[8];
+
+            assertEquals(factory.toString(), 1, hash.queryRadius(Integer.MAX_VALUE - 1, Integer.MAX_VALUE, 10, out));
+            assertEquals(factory.toString(), max, out[0]);
+            assertEquals(factory.toString(), 1, hash.queryRadius(Integer.MIN_VALUE + 1, Integer.MIN_VALUE, 10, out));
+            assertEquals(factory.toString(), min, out[0]);
+            // the distance between the two doesn't fit an int
+            assertEquals(factory.toString(), 1,
+                    hash.queryRadius(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, out));
+            assertEquals(factory.toString(), min, out[0]);
+            assertEquals(factory.toString(), 2,
+                    hash.queryRect(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, out));
+        }
+    }
+
+    @Test
+    public void testFollowsChanges() throws Exception {
+        for (CEAFactory factory : FACTORIES) {
+            CompEntAssoc assoc = build(factory);
+            SpatialHash hash = SpatialHash.create(assoc, Position.INSTANCE, Position.INSTANCE.x, Position.INSTANCE.y, 4);
+            int a = at(assoc, 0, 0);
+            int b = at(assoc, 0, 0);
+            int[] out = new int[8];
+            assertEquals(factory.toString(), 2, hash.queryPoint(0, 0, out));
+
+            assoc.setInt(a, Position.INSTANCE.x, 50);
+            assertEquals(factory.toString(), 1, hash.queryPoint(0, 0, out));
+            assertEquals(factory.toString(), b, out[0]);
+            assertEquals(factory.toString(), 1, hash.queryPoint(50, 0, out));
+            assertEquals(factory.toString(), a, out[0]);
+
+            assoc.remove(b);
+            assertEquals(factory.toString(), 0, hash.queryPoint(0, 0, out));
+            // the new entity may reuse b's index
+            int c = at(assoc, 0, 0);
+            assertEquals(factory.toString(), 1, hash.queryPoint(0, 0, out));
+            assertEquals(factory.toString(), c, out[0]);
+
+            assoc.removeComponent(a, Position.INSTANCE);
+            assertEquals(factory.toString(), 1, hash.size());
+        }
+    }
+
+}
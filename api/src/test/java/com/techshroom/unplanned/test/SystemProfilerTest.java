@@ -0,0 +1,140 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+import com.techshroom.unplanned.ecs.CSystem;
+import com.techshroom.unplanned.ecs.ColumnarCEAFactory;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+import com.techshroom.unplanned.ecs.Component;
+import com.techshroom.unplanned.ecs.SystemProfiler;
+import com.techshroom.unplanned.ecs.SystemStats;
+import com.techshroom.unplanned.ecs.defaults.BudgetedCSystem;
+import com.techshroom.unplanned.ecs.defaults.ColorComponent;
+
+public class SystemProfilerTest {
+
+    private static final class Noop implements CSystem {
+
+        @Override
+        public Set<Component> getComponents() {
+            return ImmutableSet.of(ColorComponent.INSTANCE);
+        }
+
+        @Override
+        public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
+        }
+
+    }
+
+    private static final class NoBudget extends BudgetedCSystem {
+
+        @Override
+        public Set<Component> getComponents() {
+            return ImmutableSet.of(ColorComponent.INSTANCE);
+        }
+
+        @Override
+        protected long getBudgetNanos() {
+            // always over budget, stops at the first clock check
+            return 0;
+        }
+
+        @Override
+        public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
+        }
+
+    }
+
+    @Test
+    public void testDisabledRecordsNothing() throws Exception {
+        Noop system = new Noop();
+        CompEntAssoc assoc = ColumnarCEAFactory.$.build(system);
+        assoc.newEntity(ColorComponent.INSTANCE);
+        assoc.tick(1);
+
+        SystemProfiler profiler = assoc.getProfiler();
+        assertEquals(false, profiler.isEnabled());
+        assertEquals(0, profiler.getStats(system).getSamples());
+    }
+
+    @Test
+    public void testRecordsRuns() throws Exception {
+        Noop system = new Noop();
+        CompEntAssoc assoc = ColumnarCEAFactory.$.build(system);
+        assoc.newEntity(ColorComponent.INSTANCE);
+        assoc.newEntity(ColorComponent.INSTANCE);
+        assoc.newEntity();
+        SystemProfiler profiler = assoc.getProfiler();
+        profiler.setEnabled(true);
+
+        for (int i = 0; i < profiler.getCapacity() + 10; i++) {
+            assoc.tick(1);
+        }
+
+        SystemStats stats = profiler.getStats(system);
+        assertEquals(profiler.getCapacity(), stats.getSamples());
+        assertEquals(2, stats.getMeanEntities(), 1e-9);
+        assertTrue(stats.getP50Nanos() <= stats.getP90Nanos());
+        assertTrue(stats.getP90Nanos() <= stats.getP99Nanos());
+        assertTrue(stats.getP99Nanos() <= stats.getMaxNanos());
+        assertEquals(1, profiler.getStats().size());
+        assertEquals(system, profiler.getStats().get(0).getSystem());
+        profiler.logStats();
+
+        profiler.reset();
+        assertEquals(0, profiler.getStats(system).getSamples());
+    }
+
+    @Test
+    public void testCountsProcessedEntities() throws Exception {
+        NoBudget system = new NoBudget();
+        CompEntAssoc assoc = ColumnarCEAFactory.$.build(system);
+        for (int i = 0; i < 40; i++) {
+            assoc.newEntity(ColorComponent.INSTANCE);
+        }
+        SystemProfiler profiler = assoc.getProfiler();
+        profiler.setEnabled(true);
+
+        // 40 entities match, but the budget only allows one batch of 16
+        assoc.tick(1);
+        assertEquals(16, profiler.getStats(system).getMeanEntities(), 1e-9);
+
+        // then 16 more and the last 8
+        profiler.reset();
+        assoc.tick(1);
+        assoc.tick(1);
+        assertEquals(12, profiler.getStats(system).getMeanEntities(), 1e-9);
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.techshroom.unplanned.ecs.CSystem;
+import com.techshroom.unplanned.ecs.ColumnarCEAFactory;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+import com.techshroom.unplanned.ecs.Component;
+import com.techshroom.unplanned.ecs.SystemScheduler;
+import com.techshroom.unplanned.ecs.SystemSchedulers;
+import com.techshroom.unplanned.ecs.defaults.ColorComponent;
+import com.techshroom.unplanned.ecs.defaults.Removed;
+
+public class SystemSchedulerTest {
+
+    private static final class Recording implements CSystem {
+
+        private final String name;
+        private final Set<Component> reads;
+        private final Set<Component> writes;
+        private final List<String> log;
+
+        Recording(String name, Set<Component> reads, Set<Component> writes, List<String> log) {
+            this.name = name;
+            this.reads = reads;
+            this.writes = writes;
+            this.log = log;
+        }
+
+        @Override
+        public Set<Component> getComponents() {
+            return ImmutableSet.<Component> builder().addAll(reads).addAll(writes).build();
+        }
+
+        @Override
+        public Set<Component> getReadComponents() {
+            return reads;
+        }
+
+        @Override
+        public Set<Component> getWriteComponents() {
+            return writes;
+        }
+
+        @Override
+        public boolean isExclusive() {
+            return false;
+        }
+
+        @Override
+        public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
+        }
+
+        @Override
+        public void processList(CompEntAssoc assoc, long nanoDiff) {
+            log.add(name);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+
+    }
+
+    private static final Set<Component> COLOR = ImmutableSet.of(ColorComponent.INSTANCE);
+    private static final Set<Component> REMOVED = ImmutableSet.of(Removed.INSTANCE);
+    private static final Set<Component> NONE = ImmutableSet.of();
+
+    @Test
+    public void testStages() throws Exception {
+        List<String> log = new CopyOnWriteArrayList<>();
+        CSystem writeColor = new Recording("writeColor", NONE, COLOR, log);
+        CSystem readColor1 = new Recording("readColor1", COLOR, NONE, log);
+        CSystem writeRemoved = new Recording("writeRemoved", COLOR, REMOVED, log);
+        CSystem readColor2 = new Recording("readColor2", COLOR, NONE, log);
+        CSystem writeColor2 = new Recording("writeColor2", NONE, COLOR, log);
+        CompEntAssoc assoc = ColumnarCEAFactory.$.build(
+                ImmutableList.of(writeColor, readColor1, writeRemoved, readColor2, writeColor2),
+                SystemSchedulers.parallel(new ForkJoinPool(4)));
+
+        List<SystemScheduler.Stage> stages = assoc.getScheduler().getStages();
+        assertEquals(3, stages.size());
+        assertEquals(ImmutableList.of(writeColor), stages.get(0).getSystems());
+        assertEquals(ImmutableList.of(readColor1, writeRemoved, readColor2), stages.get(1).getSystems());
+        assertEquals(ImmutableList.of(writeColor2), stages.get(2).getSystems());
+
+        assoc.tick(0);
+        assertEquals(5, log.size());
+        assertEquals("writeColor", log.get(0));
+        assertEquals("writeColor2", log.get(4));
+        for (SystemScheduler.Stage stage : stages) {
+            assertTrue(stage.getLastTickNanos() >= 0);
+        }
+    }
+
+    @Test
+    public void testExclusiveSystemsStaySerial() throws Exception {
+        CSystem a = new CSystem() {
+
+            @Override
+            public Set<Component> getComponents() {
+                return COLOR;
+            }
+
+            @Override
+            public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
+            }
+        };
+        CSystem b = new Recording("b", NONE, REMOVED, new CopyOnWriteArrayList<>());
+        CompEntAssoc assoc = ColumnarCEAFactory.$.build(ImmutableList.of(a, b), SystemSchedulers.parallel());
+        assertEquals(2, assoc.getScheduler().getStages().size());
+    }
+
+}
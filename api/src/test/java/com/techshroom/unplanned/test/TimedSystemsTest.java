@@ -0,0 +1,128 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+import com.techshroom.unplanned.ecs.ColumnarCEAFactory;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+import com.techshroom.unplanned.ecs.Component;
+import com.techshroom.unplanned.ecs.defaults.BudgetedCSystem;
+import com.techshroom.unplanned.ecs.defaults.ColorComponent;
+import com.techshroom.unplanned.ecs.defaults.FixedStepCSystem;
+
+public class TimedSystemsTest {
+
+    private static final class Counting extends FixedStepCSystem {
+
+        private int steps;
+
+        @Override
+        public Set<Component> getComponents() {
+            return ImmutableSet.of(ColorComponent.INSTANCE);
+        }
+
+        @Override
+        protected long getStepNanos() {
+            return 10;
+        }
+
+        @Override
+        public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
+            assertEquals(10, nanoDiff);
+            steps++;
+        }
+
+    }
+
+    private static final class Spread extends BudgetedCSystem {
+
+        private int processed;
+
+        @Override
+        public Set<Component> getComponents() {
+            return ImmutableSet.of(ColorComponent.INSTANCE);
+        }
+
+        @Override
+        protected long getBudgetNanos() {
+            return 0;
+        }
+
+        @Override
+        public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
+            processed++;
+        }
+
+    }
+
+    @Test
+    public void testFixedStep() throws Exception {
+        Counting system = new Counting();
+        CompEntAssoc assoc = ColumnarCEAFactory.$.build(system);
+        assoc.newEntity(ColorComponent.INSTANCE);
+
+        assoc.tick(25);
+        assertEquals(2, system.steps);
+        assertEquals(0.5, system.getAlpha(), 1e-9);
+
+        assoc.tick(5);
+        assertEquals(3, system.steps);
+        assertEquals(0, system.getAlpha(), 1e-9);
+
+        // capped at 5 steps, the rest is dropped
+        assoc.tick(1003);
+        assertEquals(8, system.steps);
+        assertEquals(0.3, system.getAlpha(), 1e-9);
+    }
+
+    @Test
+    public void testBudgetedSpreadsPass() throws Exception {
+        Spread system = new Spread();
+        CompEntAssoc assoc = ColumnarCEAFactory.$.build(system);
+        for (int i = 0; i < 40; i++) {
+            assoc.newEntity(ColorComponent.INSTANCE);
+        }
+
+        // with no budget, one clock check's worth of entities per tick
+        assoc.tick(1);
+        assertEquals(16, system.processed);
+        assoc.tick(1);
+        assertEquals(32, system.processed);
+        assoc.tick(1);
+        assertEquals(40, system.processed);
+        assertEquals(1, system.getPassProgress(), 1e-9);
+
+        assoc.tick(1);
+        assertEquals(56, system.processed);
+    }
+
+}
@@ -18,6 +18,7 @@ configure<InciseBlueExtension> {
 dependencies {
     "implementation"(project(":api"))
     "implementation"("net.sf.jopt-simple", "jopt-simple", "5.0.4")
+    "implementation"("com.github.luben", "zstd-jni", "1.4.0-1")
 }
 
 tasks.named<Jar>("jar") {
@@ -46,12 +46,14 @@ import com.techshroom.unplanned.baleout.ff2.CalculationOption;
 import com.techshroom.unplanned.baleout.ff2.CalculationOptions;
 import com.techshroom.unplanned.baleout.ff2.CategoryGroupingFF2Calculator;
 import com.techshroom.unplanned.baleout.ff2.FF2Calculator;
+import com.techshroom.unplanned.baleout.ff2.FF2Compression;
 import com.techshroom.unplanned.baleout.ff2.FF2ResourcePackWriter;
 import com.techshroom.unplanned.core.util.Exit;
 import com.techshroom.unplanned.core.util.genericmap.GenericMap;
 import com.techshroom.unplanned.core.util.genericmap.GenericMaps;
 import com.techshroom.unplanned.rp.RId;
 import com.techshroom.unplanned.rp.ff2.FF2Index;
+import com.techshroom.unplanned.rp.ff2.FF2MappedIndex;
 
 import joptsimple.ArgumentAcceptingOptionSpec;
 import joptsimple.OptionParser;
@@ -121,6 +123,24 @@ public class ConsoleFrontend extends BaseFrontend {
                     .withValuesConvertedBy(new PathConverter(PathProperties.DIRECTORY_EXISTING))
                     .defaultsTo(Paths.get("."));
 
+    private static final ArgumentAcceptingOptionSpec<Integer> INDEX_VERSION =
+            PARSER.accepts("index-version", "Index format, 1 for older loaders, 2 for the memory-mapped index, or 3 to allow compression")
+                    .withRequiredArg()
+                    .ofType(Integer.class)
+                    .defaultsTo(FF2MappedIndex.VERSION);
+
+    private static final ArgumentAcceptingOptionSpec<Integer> COMPRESSION_LEVEL =
+            PARSER.accepts("compression-level", "zstd level for each resource, 0 to store them uncompressed. Ignored before index version 3")
+                    .withRequiredArg()
+                    .ofType(Integer.class)
+                    .defaultsTo(FF2Compression.DEFAULT_LEVEL);
+
+    private static final ArgumentAcceptingOptionSpec<Integer> DICTIONARY_SIZE =
+            PARSER.accepts("dictionary-size", "Size of the zstd dictionary trained for each category, 0 for none")
+                    .withRequiredArg()
+                    .ofType(Integer.class)
+                    .defaultsTo(FF2Compression.DEFAULT_DICTIONARY_SIZE);
+
     @Override
     public String getId() {
         return "console";
@@ -154,7 +174,12 @@ public class ConsoleFrontend extends BaseFrontend {
 
         Map<RId, Path> res = gatherResources(domain, resourcesDir);
         FF2Index index = calc.calculate(res, options);
-        new FF2ResourcePackWriter(outputDir).write(index, k -> Files.newInputStream(res.get(k)));
+        int indexVersion = opts.valueOf(INDEX_VERSION);
+        int level = opts.valueOf(COMPRESSION_LEVEL);
+        FF2Compression compression = indexVersion < FF2MappedIndex.VERSION || level == 0
+                ? FF2Compression.none()
+                : FF2Compression.create(level, opts.valueOf(DICTIONARY_SIZE));
+        new FF2ResourcePackWriter(outputDir, indexVersion, compression).write(index, k -> Files.newInputStream(res.get(k)));
     }
 
     private Map<RId, Path> gatherResources(String domain, Path resourcesDir) throws IOException {
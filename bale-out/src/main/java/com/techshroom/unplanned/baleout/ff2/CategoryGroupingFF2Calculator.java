@@ -41,7 +41,11 @@ import com.techshroom.unplanned.rp.ff2.FF2Index;
  */
 public class CategoryGroupingFF2Calculator implements FF2Calculator {
 
-    private static String key(RId id) {
+    /**
+     * @return the group of the resource, also used to pick its compression
+     *         dictionary
+     */
+    static String category(RId id) {
         return id.getDomain() + ":" + id.getCategory();
     }
 
@@ -49,7 +53,7 @@ public class CategoryGroupingFF2Calculator implements FF2Calculator {
     public FF2Index calculate(Map<RId, Path> resources, CalculationOptions options) throws IOException {
         Map<String, CalcGroup.Builder> groups = new HashMap<>();
         for (Entry<RId, Path> p : resources.entrySet()) {
-            CalcGroup.Builder b = groups.computeIfAbsent(key(p.getKey()), k -> CalcGroup.builder());
+            CalcGroup.Builder b = groups.computeIfAbsent(category(p.getKey()), k -> CalcGroup.builder());
             b.addResource(Resource.fromPath(p.getKey(), p.getValue()));
         }
         return FF2GroupIndexer.makeIndexFromGroups(groups.values().stream().map(b -> b.build()).iterator(), options);
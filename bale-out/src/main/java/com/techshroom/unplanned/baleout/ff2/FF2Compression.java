@@ -0,0 +1,80 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.baleout.ff2;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * How {@link FF2ResourcePackWriter} compresses resources. Each resource is
+ * compressed with zstd on its own, and kept as-is if that doesn't make it
+ * smaller.
+ */
+@AutoValue
+public abstract class FF2Compression {
+
+    /**
+     * zstd's own default level.
+     */
+    public static final int DEFAULT_LEVEL = 3;
+    /**
+     * zstd's own default dictionary size, 110 KiB.
+     */
+    public static final int DEFAULT_DICTIONARY_SIZE = 110 * 1024;
+
+    private static final FF2Compression NONE = create(0, 0);
+
+    public static FF2Compression none() {
+        return NONE;
+    }
+
+    /**
+     * @param level
+     *            - the zstd level, 1 to 22, or 0 for no compression
+     * @param dictionarySize
+     *            - the size of the dictionary trained for each category, or
+     *            0 for no dictionaries
+     */
+    public static FF2Compression create(int level, int dictionarySize) {
+        checkArgument(level >= 0 && level <= 22, "level must be between 0 and 22");
+        checkArgument(dictionarySize >= 0, "dictionary size must not be negative");
+        checkArgument(level > 0 || dictionarySize == 0, "dictionaries need compression");
+        return new AutoValue_FF2Compression(level, dictionarySize);
+    }
+
+    FF2Compression() {
+    }
+
+    public abstract int getLevel();
+
+    public abstract int getDictionarySize();
+
+    public final boolean isEnabled() {
+        return getLevel() > 0;
+    }
+
+}
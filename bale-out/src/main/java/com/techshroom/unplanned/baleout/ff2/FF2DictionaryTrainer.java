@@ -0,0 +1,126 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.baleout.ff2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+
+import com.github.luben.zstd.Zstd;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.techshroom.unplanned.core.util.IOFunction;
+import com.techshroom.unplanned.core.util.Logging;
+import com.techshroom.unplanned.rp.RId;
+import com.techshroom.unplanned.rp.ff2.FF2Index;
+
+/**
+ * Trains a zstd dictionary for each category of resources, as grouped by
+ * {@link CategoryGroupingFF2Calculator}. Similar resources, e.g. all the
+ * shaders or all the JSON models, share a lot of structure that small
+ * resources are too short to take advantage of on their own.
+ */
+final class FF2DictionaryTrainer {
+
+    private static final Logger LOGGER = Logging.getLogger();
+
+    // zstd wants around 100 times the dictionary size in samples
+    private static final int SAMPLE_FACTOR = 100;
+    // fewer samples than this don't train anything useful
+    private static final int MIN_SAMPLES = 8;
+
+    private final int dictionarySize;
+    private final List<byte[]> dictionaries = new ArrayList<>();
+    private final Map<String, Integer> categoryDictionaries = new LinkedHashMap<>();
+
+    FF2DictionaryTrainer(int dictionarySize) {
+        this.dictionarySize = dictionarySize;
+    }
+
+    void train(Iterable<RId> ids, IOFunction<RId, InputStream> resStream) throws IOException {
+        Map<String, List<RId>> categories = new LinkedHashMap<>();
+        for (RId id : ids) {
+            categories.computeIfAbsent(CategoryGroupingFF2Calculator.category(id), k -> new ArrayList<>()).add(id);
+        }
+        for (Map.Entry<String, List<RId>> category : categories.entrySet()) {
+            if (category.getValue().size() < MIN_SAMPLES) {
+                continue;
+            }
+            byte[] dictionary = trainCategory(category.getValue(), resStream);
+            if (dictionary == null) {
+                LOGGER.warn("Not enough to train a dictionary for {}, compressing without one", category.getKey());
+                continue;
+            }
+            categoryDictionaries.put(category.getKey(), dictionaries.size());
+            dictionaries.add(dictionary);
+        }
+    }
+
+    @Nullable
+    private byte[] trainCategory(List<RId> ids, IOFunction<RId, InputStream> resStream) throws IOException {
+        List<byte[]> samples = new ArrayList<>();
+        long sampleBytes = 0;
+        long maxSampleBytes = (long) SAMPLE_FACTOR * dictionarySize;
+        for (RId id : ids) {
+            if (sampleBytes >= maxSampleBytes) {
+                break;
+            }
+            byte[] sample;
+            try (InputStream stream = resStream.apply(id)) {
+                sample = ByteStreams.toByteArray(stream);
+            }
+            samples.add(sample);
+            sampleBytes += sample.length;
+        }
+        byte[] dictionary = new byte[dictionarySize];
+        long size = Zstd.trainFromBuffer(samples.toArray(new byte[0][]), dictionary);
+        if (Zstd.isError(size)) {
+            return null;
+        }
+        return size == dictionary.length ? dictionary : Arrays.copyOf(dictionary, (int) size);
+    }
+
+    /**
+     * @return the index of the dictionary for the resource, or
+     *         {@link FF2Index.Value#NO_DICTIONARY} if its category has none
+     */
+    int dictionaryFor(RId id) {
+        return categoryDictionaries.getOrDefault(CategoryGroupingFF2Calculator.category(id), FF2Index.Value.NO_DICTIONARY);
+    }
+
+    ImmutableList<byte[]> getDictionaries() {
+        return ImmutableList.copyOf(dictionaries);
+    }
+
+}
@@ -25,6 +25,7 @@
 
 package com.techshroom.unplanned.baleout.ff2;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 
@@ -38,34 +39,85 @@ import java.nio.file.Path;
 import java.util.Comparator;
 import java.util.Map.Entry;
 
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.io.ByteStreams;
 import com.techshroom.unplanned.core.util.IOFunction;
 import com.techshroom.unplanned.rp.RId;
+import com.techshroom.unplanned.rp.ff2.FF2Codec;
+import com.techshroom.unplanned.rp.ff2.FF2Dictionaries;
 import com.techshroom.unplanned.rp.ff2.FF2Index;
 import com.techshroom.unplanned.rp.ff2.FF2Index.Value;
+import com.techshroom.unplanned.rp.ff2.FF2MappedIndex;
 
 /**
  * Writer for FF2 resource packs.
+ * 
+ * <p>
+ * The index from the {@link FF2Calculator} decides which part file each
+ * resource goes in and in what order. When compressing, the offsets and sizes
+ * are worked out again as the resources are written.
+ * </p>
  */
 public class FF2ResourcePackWriter {
 
     private final Path folderBase;
+    private final int indexVersion;
+    private final FF2Compression compression;
 
     public FF2ResourcePackWriter(Path folderBase) {
+        this(folderBase, FF2MappedIndex.VERSION);
+    }
+
+    public FF2ResourcePackWriter(Path folderBase, int indexVersion) {
+        this(folderBase, indexVersion, FF2Compression.none());
+    }
+
+    /**
+     * @param folderBase
+     *            - the folder to write the pack to
+     * @param indexVersion
+     *            - the index format to write, 1 for packs that must load in
+     *            older versions, 2 for the memory-mapped index, or 3 for the
+     *            memory-mapped index with compression
+     * @param compression
+     *            - how to compress the resources, only supported by the
+     *            version 3 index
+     */
+    public FF2ResourcePackWriter(Path folderBase, int indexVersion, FF2Compression compression) {
+        checkArgument(indexVersion >= 1 && indexVersion <= FF2MappedIndex.VERSION,
+                "unknown index version %s", indexVersion);
+        checkArgument(!compression.isEnabled() || indexVersion == FF2MappedIndex.VERSION,
+                "index version %s cannot hold compressed resources", indexVersion);
         this.folderBase = folderBase;
+        this.indexVersion = indexVersion;
+        this.compression = compression;
     }
 
     public void write(FF2Index index, IOFunction<RId, InputStream> resStream) throws IOException {
-        writeIndex(index);
+        FF2DictionaryTrainer trainer = new FF2DictionaryTrainer(compression.getDictionarySize());
+        if (compression.getDictionarySize() > 0) {
+            trainer.train(index.getDataLookup().keySet(), resStream);
+        }
+
+        FF2Index written = writeResources(index, resStream, trainer);
 
-        writeResources(index, resStream);
+        writeIndex(written);
+        if (!trainer.getDictionaries().isEmpty()) {
+            FF2Dictionaries.write(trainer.getDictionaries(), folderBase);
+        }
     }
 
     private void writeIndex(FF2Index index) throws IOException {
         ImmutableMap<RId, FF2Index.Value> indexMap = index.getDataLookup();
         Path indexFile = folderBase.resolve("index");
+        if (indexVersion > 1) {
+            FF2MappedIndex.write(indexMap, indexFile, indexVersion);
+            return;
+        }
         try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
             data.writeInt(indexMap.size());
             for (Entry<RId, FF2Index.Value> e : indexMap.entrySet()) {
@@ -77,7 +129,24 @@ public class FF2ResourcePackWriter {
         }
     }
 
-    private void writeResources(FF2Index index, IOFunction<RId, InputStream> resStream) throws IOException {
+    private FF2Index writeResources(FF2Index index, IOFunction<RId, InputStream> resStream,
+            FF2DictionaryTrainer trainer) throws IOException {
+        ImmutableList<ZstdDictCompress> dictionaries = trainer.getDictionaries().stream()
+                .map(d -> new ZstdDictCompress(d, compression.getLevel()))
+                .collect(toImmutableList());
+        try {
+            return writeResources(index, resStream, trainer, dictionaries);
+        } finally {
+            // native memory, don't wait for the finalizer
+            for (ZstdDictCompress d : dictionaries) {
+                d.close();
+            }
+        }
+    }
+
+    private FF2Index writeResources(FF2Index index, IOFunction<RId, InputStream> resStream,
+            FF2DictionaryTrainer trainer, ImmutableList<ZstdDictCompress> dictionaries) throws IOException {
+        FF2Index.Builder written = FF2Index.builder();
         int currentIndex = -1;
         long checkOffset = 0;
         OutputStream openStream = null;
@@ -94,20 +163,52 @@ public class FF2ResourcePackWriter {
                     checkOffset = 0;
                 }
 
+                if (compression.isEnabled()) {
+                    Value value = writeCompressed(e.getKey(), e.getValue(), checkOffset, resStream, trainer, dictionaries, openStream);
+                    written.putValue(e.getKey(), value);
+                    checkOffset += value.getSize();
+                    continue;
+                }
+
                 checkState(checkOffset == e.getValue().getOffset(), "offset failure for resource %s (info: %s)", e.getKey(), e.getValue());
 
-                checkOffset += ByteStreams.copy(resStream.apply(e.getKey()), openStream);
+                try (InputStream stream = resStream.apply(e.getKey())) {
+                    checkOffset += ByteStreams.copy(stream, openStream);
+                }
+                written.putValue(e.getKey(), e.getValue());
             }
         } finally {
             if (openStream != null) {
                 openStream.close();
             }
         }
+        return written.build();
+    }
+
+    private Value writeCompressed(RId id, Value layout, long offset, IOFunction<RId, InputStream> resStream,
+            FF2DictionaryTrainer trainer, ImmutableList<ZstdDictCompress> dictionaries,
+            OutputStream out) throws IOException {
+        byte[] raw;
+        try (InputStream stream = resStream.apply(id)) {
+            raw = ByteStreams.toByteArray(stream);
+        }
+        int dictionary = trainer.dictionaryFor(id);
+        byte[] compressed = dictionary == Value.NO_DICTIONARY
+                ? Zstd.compress(raw, compression.getLevel())
+                : Zstd.compress(raw, dictionaries.get(dictionary));
+        if (compressed.length >= raw.length) {
+            // not worth decompressing
+            out.write(raw);
+            return Value.create(layout.getIndex(), offset, raw.length);
+        }
+        out.write(compressed);
+        return Value.create(layout.getIndex(), offset, compressed.length, FF2Codec.ZSTD, raw.length, dictionary);
     }
 
     private Iterable<Entry<RId, Value>> sortByFileIndex(ImmutableSet<Entry<RId, Value>> entrySet) {
         return entrySet.stream()
-                .sorted(Comparator.comparingInt(e -> e.getValue().getIndex()))
+                .sorted(Comparator.<Entry<RId, Value>> comparingInt(e -> e.getValue().getIndex())
+                        .thenComparingLong(e -> e.getValue().getOffset()))
                 .collect(toImmutableList());
     }
 
@@ -0,0 +1,146 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.baleout.ff2;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.techshroom.unplanned.rp.RId;
+import com.techshroom.unplanned.rp.ResourcePack;
+import com.techshroom.unplanned.rp.ff2.FF2Codec;
+import com.techshroom.unplanned.rp.ff2.FF2Dictionaries;
+import com.techshroom.unplanned.rp.ff2.FF2Index;
+import com.techshroom.unplanned.rp.ff2.FF2MappedIndex;
+import com.techshroom.unplanned.rp.ff2.FF2ResourcePackLoader;
+
+public class FF2ResourcePackWriterTest {
+
+    private static final RId TINY = RId.parse("test:misc/tiny");
+
+    private final Map<RId, byte[]> resources = new LinkedHashMap<>();
+    private final FF2Index.Builder layout = FF2Index.builder();
+    private final long[] partSizes = new long[2];
+
+    private void add(RId id, String content, int part) {
+        byte[] data = content.getBytes(UTF_8);
+        resources.put(id, data);
+        layout.putValue(id, FF2Index.Value.create((byte) part, partSizes[part], data.length));
+        partSizes[part] += data.length;
+    }
+
+    private Path write(FF2Compression compression) throws Exception {
+        Path pack = Files.createTempDirectory("ff2");
+        new FF2ResourcePackWriter(pack, FF2MappedIndex.VERSION, compression)
+                .write(layout.build(), id -> new ByteArrayInputStream(resources.get(id)));
+        return pack;
+    }
+
+    @Test
+    public void testCompressedRoundTrip() throws Exception {
+        for (int i = 0; i < 40; i++) {
+            add(RId.parse("test:models/model" + i), "{\"parent\": \"block/cube_all\", \"textures\": "
+                    + "{\"all\": \"blocks/stone_" + i + "\", \"particle\": \"blocks/stone_" + i + "\"}}", i % 2);
+            add(RId.parse("test:shaders/shader" + i), "#version 330 core\nuniform mat4 projection;\n"
+                    + "in vec3 position;\nvoid main() {\n    gl_Position = projection * vec4(position * " + i
+                    + ".0, 1.0);\n}\n", i % 2);
+        }
+        add(TINY, "x", 1);
+        Path pack = write(FF2Compression.create(3, 1024));
+
+        FF2MappedIndex index = FF2MappedIndex.open(pack.resolve("index"));
+        assertEquals(2, FF2Dictionaries.read(pack).size());
+
+        // one dictionary per category
+        int models = index.getData(RId.parse("test:models/model0")).getDictionary();
+        int shaders = index.getData(RId.parse("test:shaders/shader0")).getDictionary();
+        assertNotEquals(models, shaders);
+        List<FF2Index.Value> parts = new ArrayList<>();
+        for (RId id : resources.keySet()) {
+            FF2Index.Value value = index.getData(id);
+            parts.add(value);
+            if (id.equals(TINY)) {
+                // compressing a single byte only makes it larger
+                assertEquals(FF2Codec.NONE, value.getCodec());
+                assertEquals(FF2Index.Value.NO_DICTIONARY, value.getDictionary());
+                assertEquals(1, value.getSize());
+                continue;
+            }
+            assertEquals(FF2Codec.ZSTD, value.getCodec());
+            assertEquals(resources.get(id).length, value.getRawSize());
+            assertTrue(value.getSize() < value.getRawSize());
+            assertEquals(id.getCategory().equals("models") ? models : shaders, value.getDictionary());
+        }
+
+        // the offsets follow the compressed sizes, with no gaps
+        parts.sort(Comparator.<FF2Index.Value> comparingInt(FF2Index.Value::getIndex)
+                .thenComparingLong(FF2Index.Value::getOffset));
+        long[] ends = new long[partSizes.length];
+        for (FF2Index.Value value : parts) {
+            assertEquals(ends[value.getIndex()], value.getOffset());
+            ends[value.getIndex()] += value.getSize();
+        }
+        for (int part = 0; part < ends.length; part++) {
+            assertEquals(ends[part], Files.size(pack.resolve(String.valueOf(part))));
+            assertTrue(ends[part] < partSizes[part]);
+        }
+
+        ResourcePack rp = new FF2ResourcePackLoader().load(pack);
+        for (Map.Entry<RId, byte[]> e : resources.entrySet()) {
+            assertArrayEquals(e.getKey().toString(), e.getValue(), rp.loadResource(e.getKey()).asBytes());
+        }
+    }
+
+    @Test
+    public void testUncompressedKeepsLayout() throws Exception {
+        add(RId.parse("test:text/hello"), "hello", 0);
+        add(RId.parse("test:text/world"), "world", 0);
+        add(TINY, "x", 1);
+        Path pack = write(FF2Compression.none());
+
+        FF2MappedIndex index = FF2MappedIndex.open(pack.resolve("index"));
+        assertEquals(layout.build().getDataLookup().get(TINY), index.getData(TINY));
+        assertTrue(Files.notExists(pack.resolve(FF2Dictionaries.FILE_NAME)));
+        ResourcePack rp = new FF2ResourcePackLoader().load(pack);
+        for (Map.Entry<RId, byte[]> e : resources.entrySet()) {
+            assertArrayEquals(e.getKey().toString(), e.getValue(), rp.loadResource(e.getKey()).asBytes());
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.benchmarks;
+
+import java.util.Map;
+
+import com.techshroom.unplanned.ecs.BooleanComponentField;
+import com.techshroom.unplanned.ecs.ByteComponentField;
+import com.techshroom.unplanned.ecs.CFType;
+import com.techshroom.unplanned.ecs.Component;
+import com.techshroom.unplanned.ecs.ComponentBase;
+import com.techshroom.unplanned.ecs.ComponentField;
+import com.techshroom.unplanned.ecs.IntComponentField;
+import com.techshroom.unplanned.ecs.LongComponentField;
+import com.techshroom.unplanned.ecs.ShortComponentField;
+
+/**
+ * Components shared by the benchmarks, shaped after the ones in Snek.
+ */
+final class Components {
+
+    private Components() {
+    }
+
+    static final class Position extends ComponentBase {
+
+        static final Position INSTANCE = new Position();
+
+        final IntComponentField x = IntComponentField.createNoId(getId(), "x");
+        final IntComponentField y = IntComponentField.createNoId(getId(), "y");
+        private final Map<String, ComponentField<?>> fields = Component.makeFieldMap(x, y);
+
+        @Override
+        public Map<String, ComponentField<?>> getFields() {
+            return fields;
+        }
+
+    }
+
+    static final class Velocity extends ComponentBase {
+
+        static final Velocity INSTANCE = new Velocity();
+
+        final IntComponentField dx = IntComponentField.createNoId(getId(), "dx");
+        final IntComponentField dy = IntComponentField.createNoId(getId(), "dy");
+        private final Map<String, ComponentField<?>> fields = Component.makeFieldMap(dx, dy);
+
+        @Override
+        public Map<String, ComponentField<?>> getFields() {
+            return fields;
+        }
+
+    }
+
+    static final class Head extends ComponentBase {
+
+        static final Head INSTANCE = new Head();
+
+        final BooleanComponentField alive = BooleanComponentField.createNoId(getId(), "alive");
+        private final Map<String, ComponentField<?>> fields = Component.makeFieldMap(alive);
+
+        @Override
+        public Map<String, ComponentField<?>> getFields() {
+            return fields;
+        }
+
+    }
+
+    /**
+     * One field of every {@link CFType}.
+     */
+    static final class AllTypes extends ComponentBase {
+
+        static final AllTypes INSTANCE = new AllTypes();
+
+        final BooleanComponentField bool = BooleanComponentField.createNoId(getId(), "bool");
+        final ByteComponentField byteField = ByteComponentField.createNoId(getId(), "byte");
+        final ShortComponentField shortField = ShortComponentField.createNoId(getId(), "short");
+        final IntComponentField intField = IntComponentField.createNoId(getId(), "int");
+        final LongComponentField longField = LongComponentField.createNoId(getId(), "long");
+        final ComponentField<String> string = ComponentField.createNoId(getId(), "string", CFType.STRING);
+        private final Map<String, ComponentField<?>> fields = Component.makeFieldMap(bool, byteField, shortField,
+                intField, longField, string);
+
+        @Override
+        public Map<String, ComponentField<?>> getFields() {
+            return fields;
+        }
+
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.benchmarks;
+
+import static com.techshroom.unplanned.benchmarks.Storages.ARCHETYPE;
+import static com.techshroom.unplanned.benchmarks.Storages.COLUMNAR;
+import static com.techshroom.unplanned.benchmarks.Storages.OBJECT;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.techshroom.unplanned.benchmarks.Components.Position;
+import com.techshroom.unplanned.benchmarks.Components.Velocity;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+import com.techshroom.unplanned.ecs.Prefab;
+
+/**
+ * Time to fill an empty CEA with {@code entities} entities, one at a time, in
+ * bulk, through its command buffer, or from a prefab.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EntityCreationBenchmark {
+
+    @Param({ OBJECT, COLUMNAR, ARCHETYPE })
+    public String storage;
+
+    @Param({ "1000", "100000", "1000000" })
+    public int entities;
+
+    private final Prefab moving = Prefab.builder(Position.INSTANCE, Velocity.INSTANCE)
+            .set(Velocity.INSTANCE.dx, 1)
+            .set(Velocity.INSTANCE.dy, 1)
+            .build();
+    private CompEntAssoc assoc;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        assoc = Storages.build(storage, Position.INSTANCE, Velocity.INSTANCE);
+    }
+
+    @Benchmark
+    public CompEntAssoc create() {
+        for (int i = 0; i < entities; i++) {
+            assoc.newEntity(Position.INSTANCE, Velocity.INSTANCE);
+        }
+        return assoc;
+    }
+
+    @Benchmark
+    public int[] createBulk() {
+        return assoc.newEntities(entities, Position.INSTANCE, Velocity.INSTANCE);
+    }
+
+    @Benchmark
+    public CompEntAssoc createAndSet() {
+        for (int i = 0; i < entities; i++) {
+            int e = assoc.newEntity(Position.INSTANCE, Velocity.INSTANCE);
+            assoc.setInt(e, Velocity.INSTANCE.dx, 1);
+            assoc.setInt(e, Velocity.INSTANCE.dy, 1);
+        }
+        return assoc;
+    }
+
+    @Benchmark
+    public CompEntAssoc instantiate() {
+        for (int i = 0; i < entities; i++) {
+            assoc.instantiate(moving);
+        }
+        return assoc;
+    }
+
+    @Benchmark
+    public int[] instantiateBulk() {
+        return assoc.instantiate(moving, entities);
+    }
+
+    @Benchmark
+    public CompEntAssoc createDeferred() {
+        for (int i = 0; i < entities; i++) {
+            assoc.commands().create(Position.INSTANCE, Velocity.INSTANCE);
+        }
+        assoc.playbackCommands();
+        return assoc;
+    }
+
+}
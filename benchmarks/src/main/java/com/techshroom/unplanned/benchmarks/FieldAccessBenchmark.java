@@ -0,0 +1,145 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.benchmarks;
+
+import static com.techshroom.unplanned.benchmarks.Storages.ARCHETYPE;
+import static com.techshroom.unplanned.benchmarks.Storages.COLUMNAR;
+import static com.techshroom.unplanned.benchmarks.Storages.OBJECT;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.techshroom.unplanned.benchmarks.Components.AllTypes;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+
+/**
+ * Single field reads and writes for every {@code CFType}, cycling through a
+ * few thousand entities so the storage can't keep everything in registers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldAccessBenchmark {
+
+    private static final int ENTITIES = 4096;
+    private static final String[] STRINGS = { "snek", "food", "wall", "body" };
+
+    @Param({ OBJECT, COLUMNAR, ARCHETYPE })
+    public String storage;
+
+    private final AllTypes all = AllTypes.INSTANCE;
+    private CompEntAssoc assoc;
+    private final int[] ids = new int[ENTITIES];
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        assoc = Storages.build(storage, all);
+        for (int i = 0; i < ENTITIES; i++) {
+            ids[i] = assoc.newEntity(all);
+        }
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (ENTITIES - 1);
+        return ids[cursor];
+    }
+
+    @Benchmark
+    public boolean getBoolean() {
+        return assoc.getBoolean(next(), all.bool);
+    }
+
+    @Benchmark
+    public void setBoolean() {
+        assoc.setBoolean(next(), all.bool, (cursor & 1) == 0);
+    }
+
+    @Benchmark
+    public byte getByte() {
+        return assoc.getByte(next(), all.byteField);
+    }
+
+    @Benchmark
+    public void setByte() {
+        assoc.setByte(next(), all.byteField, (byte) cursor);
+    }
+
+    @Benchmark
+    public short getShort() {
+        return assoc.getShort(next(), all.shortField);
+    }
+
+    @Benchmark
+    public void setShort() {
+        assoc.setShort(next(), all.shortField, (short) cursor);
+    }
+
+    @Benchmark
+    public int getInt() {
+        return assoc.getInt(next(), all.intField);
+    }
+
+    @Benchmark
+    public void setInt() {
+        assoc.setInt(next(), all.intField, cursor);
+    }
+
+    @Benchmark
+    public long getLong() {
+        return assoc.getLong(next(), all.longField);
+    }
+
+    @Benchmark
+    public void setLong() {
+        assoc.setLong(next(), all.longField, cursor);
+    }
+
+    @Benchmark
+    public String getString() {
+        return assoc.get(next(), all.string);
+    }
+
+    @Benchmark
+    public void setString() {
+        assoc.set(next(), all.string, STRINGS[cursor & 3]);
+    }
+
+}
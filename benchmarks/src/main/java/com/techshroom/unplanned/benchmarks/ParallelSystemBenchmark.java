@@ -0,0 +1,127 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.benchmarks;
+
+import static com.techshroom.unplanned.benchmarks.Storages.ARCHETYPE;
+import static com.techshroom.unplanned.benchmarks.Storages.COLUMNAR;
+import static com.techshroom.unplanned.benchmarks.Storages.OBJECT;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableSet;
+import com.techshroom.unplanned.benchmarks.Components.Position;
+import com.techshroom.unplanned.ecs.CSystem;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+import com.techshroom.unplanned.ecs.Component;
+import com.techshroom.unplanned.ecs.ParallelCSystem;
+
+/**
+ * The same CPU-heavy system run serially and as a {@link ParallelCSystem},
+ * one tick per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelSystemBenchmark {
+
+    private static class Drift implements CSystem {
+
+        private final Position pos = Position.INSTANCE;
+
+        @Override
+        public Set<Component> getComponents() {
+            return ImmutableSet.of(pos);
+        }
+
+        @Override
+        public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
+            int x = assoc.getInt(entityId, pos.x);
+            // a bit of busy work to stand in for real physics
+            double acc = x;
+            for (int i = 0; i < 32; i++) {
+                acc = Math.sqrt(acc * acc + i);
+            }
+            assoc.setInt(entityId, pos.x, (x + 1) & 0xFF);
+            assoc.setInt(entityId, pos.y, (int) acc & 0xFF);
+        }
+
+    }
+
+    private static final class ParallelDrift extends Drift implements ParallelCSystem {
+    }
+
+    @Param({ OBJECT, COLUMNAR, ARCHETYPE })
+    public String storage;
+
+    @Param({ "100000", "500000" })
+    public int entities;
+
+    private CompEntAssoc serial;
+    private CompEntAssoc parallel;
+
+    @Setup
+    public void setUp() {
+        serial = populate(new Drift());
+        parallel = populate(new ParallelDrift());
+    }
+
+    private CompEntAssoc populate(CSystem system) {
+        CompEntAssoc assoc = Storages.factory(storage).build(system);
+        for (int i = 0; i < entities; i++) {
+            assoc.newEntity(Position.INSTANCE);
+        }
+        return assoc;
+    }
+
+    @Benchmark
+    public CompEntAssoc serial() {
+        serial.tick(0);
+        return serial;
+    }
+
+    @Benchmark
+    public CompEntAssoc parallel() {
+        parallel.tick(0);
+        return parallel;
+    }
+
+}
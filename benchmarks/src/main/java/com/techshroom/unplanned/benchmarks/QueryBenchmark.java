@@ -0,0 +1,112 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.benchmarks;
+
+import static com.techshroom.unplanned.benchmarks.Storages.ARCHETYPE;
+import static com.techshroom.unplanned.benchmarks.Storages.COLUMNAR;
+import static com.techshroom.unplanned.benchmarks.Storages.OBJECT;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.ImmutableSet;
+import com.techshroom.unplanned.benchmarks.Components.Head;
+import com.techshroom.unplanned.benchmarks.Components.Position;
+import com.techshroom.unplanned.benchmarks.Components.Velocity;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+import com.techshroom.unplanned.ecs.Component;
+
+/**
+ * Multi-component queries over a mixed population: every entity has a
+ * {@link Position}, half also move, and one in sixteen is a {@link Head}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+    private static final Component[] MOVING = { Position.INSTANCE, Velocity.INSTANCE };
+    private static final Component[] MOVING_HEADS = { Position.INSTANCE, Velocity.INSTANCE, Head.INSTANCE };
+
+    @Param({ OBJECT, COLUMNAR, ARCHETYPE })
+    public String storage;
+
+    @Param({ "1000", "100000", "1000000" })
+    public int entities;
+
+    private final Set<Component> moving = ImmutableSet.copyOf(MOVING);
+    private final Set<Component> movingHeads = ImmutableSet.copyOf(MOVING_HEADS);
+    private CompEntAssoc assoc;
+
+    @Setup
+    public void setUp() {
+        // systems using these queries, as a game would have
+        assoc = Storages.factory(storage).build(Storages.idle(MOVING), Storages.idle(MOVING_HEADS));
+        for (int i = 0; i < entities; i++) {
+            if (i % 16 == 0) {
+                assoc.newEntity(Position.INSTANCE, Velocity.INSTANCE, Head.INSTANCE);
+            } else if (i % 2 == 0) {
+                assoc.newEntity(Position.INSTANCE, Velocity.INSTANCE);
+            } else {
+                assoc.newEntity(Position.INSTANCE);
+            }
+        }
+    }
+
+    @Benchmark
+    public int getEntities() {
+        return assoc.getEntities(moving).size();
+    }
+
+    @Benchmark
+    public void forEachMoving(Blackhole bh) {
+        Position pos = Position.INSTANCE;
+        assoc.forEachEntity(moving, e -> bh.consume(assoc.getInt(e, pos.x)));
+    }
+
+    @Benchmark
+    public void forEachMovingHead(Blackhole bh) {
+        Position pos = Position.INSTANCE;
+        assoc.forEachEntity(movingHeads, e -> bh.consume(assoc.getInt(e, pos.x)));
+    }
+
+}
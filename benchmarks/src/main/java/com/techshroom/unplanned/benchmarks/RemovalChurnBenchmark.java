@@ -0,0 +1,101 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.benchmarks;
+
+import static com.techshroom.unplanned.benchmarks.Storages.ARCHETYPE;
+import static com.techshroom.unplanned.benchmarks.Storages.COLUMNAR;
+import static com.techshroom.unplanned.benchmarks.Storages.OBJECT;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.techshroom.unplanned.benchmarks.Components.Position;
+import com.techshroom.unplanned.benchmarks.Components.Velocity;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+
+/**
+ * Steady-state churn: each operation replaces the oldest entity with a new
+ * one, or moves an entity out of and back into a component, keeping the
+ * population constant.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RemovalChurnBenchmark {
+
+    @Param({ OBJECT, COLUMNAR, ARCHETYPE })
+    public String storage;
+
+    @Param({ "1000", "100000" })
+    public int entities;
+
+    private CompEntAssoc assoc;
+    private int[] ids;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        assoc = Storages.build(storage, Position.INSTANCE, Velocity.INSTANCE);
+        ids = new int[entities];
+        for (int i = 0; i < entities; i++) {
+            ids[i] = assoc.newEntity(Position.INSTANCE, Velocity.INSTANCE);
+        }
+    }
+
+    private int advance() {
+        cursor = cursor + 1 == ids.length ? 0 : cursor + 1;
+        return cursor;
+    }
+
+    @Benchmark
+    public int replaceEntity() {
+        int slot = advance();
+        assoc.remove(ids[slot]);
+        return ids[slot] = assoc.newEntity(Position.INSTANCE, Velocity.INSTANCE);
+    }
+
+    @Benchmark
+    public void detachAttach() {
+        int e = ids[advance()];
+        assoc.removeComponent(e, Velocity.INSTANCE);
+        assoc.addComponent(e, Velocity.INSTANCE);
+    }
+
+}
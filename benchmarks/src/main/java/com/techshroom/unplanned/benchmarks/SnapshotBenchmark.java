@@ -0,0 +1,112 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.benchmarks;
+
+import static com.techshroom.unplanned.benchmarks.Storages.ARCHETYPE;
+import static com.techshroom.unplanned.benchmarks.Storages.COLUMNAR;
+import static com.techshroom.unplanned.benchmarks.Storages.OBJECT;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.techshroom.unplanned.benchmarks.Components.Head;
+import com.techshroom.unplanned.benchmarks.Components.Position;
+import com.techshroom.unplanned.ecs.CEASnapshots;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+
+/**
+ * Writing and restoring a {@link CEASnapshots snapshot}. Restoring needs a
+ * new CEA each time, so building an empty one is part of that measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    @Param({ OBJECT, COLUMNAR, ARCHETYPE })
+    public String storage;
+
+    @Param({ "100000", "1000000" })
+    public int entities;
+
+    private CompEntAssoc assoc;
+    private Path out;
+    private Path snapshot;
+
+    @Setup
+    public void setUp() throws IOException {
+        Position pos = Position.INSTANCE;
+        assoc = Storages.build(storage, pos, Head.INSTANCE);
+        for (int i = 0; i < entities; i++) {
+            int e = i % 16 == 0
+                    ? assoc.newEntity(pos, Head.INSTANCE)
+                    : assoc.newEntity(pos);
+            assoc.setInt(e, pos.x, i & 0xFF);
+            assoc.setInt(e, pos.y, i >> 8);
+        }
+        out = Files.createTempFile("snapshot", ".bin");
+        snapshot = Files.createTempFile("snapshot", ".bin");
+        CEASnapshots.write(assoc, snapshot);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(out);
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public Path write() throws IOException {
+        CEASnapshots.write(assoc, out);
+        return out;
+    }
+
+    @Benchmark
+    public CompEntAssoc restore() throws IOException {
+        CompEntAssoc target = Storages.build(storage, Position.INSTANCE, Head.INSTANCE);
+        CEASnapshots.read(snapshot, target);
+        return target;
+    }
+
+}
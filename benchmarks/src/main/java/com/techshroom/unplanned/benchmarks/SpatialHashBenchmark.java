@@ -0,0 +1,132 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.benchmarks;
+
+import static com.techshroom.unplanned.benchmarks.Storages.ARCHETYPE;
+import static com.techshroom.unplanned.benchmarks.Storages.COLUMNAR;
+import static com.techshroom.unplanned.benchmarks.Storages.OBJECT;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.techshroom.unplanned.benchmarks.Components.Position;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+import com.techshroom.unplanned.ecs.SpatialHash;
+
+/**
+ * {@link SpatialHash} radius queries, compared to scanning every entity the
+ * way collision checks worked before, and the cost of keeping the hash in
+ * sync with moving entities. Entities are spread at random over a square
+ * world.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpatialHashBenchmark {
+
+    private static final int WORLD_SIZE = 2048;
+    private static final int RADIUS = 4;
+
+    @Param({ OBJECT, COLUMNAR, ARCHETYPE })
+    public String storage;
+
+    @Param({ "10000", "100000" })
+    public int entities;
+
+    private final Position pos = Position.INSTANCE;
+    private final Random random = new Random(42);
+    private final int[] out = new int[64];
+    private CompEntAssoc assoc;
+    private SpatialHash hash;
+    private int[] ids;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        assoc = Storages.build(storage, pos);
+        ids = new int[entities];
+        for (int i = 0; i < entities; i++) {
+            ids[i] = assoc.newEntity(pos);
+            assoc.setInt(ids[i], pos.x, random.nextInt(WORLD_SIZE));
+            assoc.setInt(ids[i], pos.y, random.nextInt(WORLD_SIZE));
+        }
+        hash = SpatialHash.create(assoc, pos, pos.x, pos.y, RADIUS * 2);
+        // index everything before measuring
+        hash.size();
+    }
+
+    private int next() {
+        cursor = cursor + 1 == ids.length ? 0 : cursor + 1;
+        return ids[cursor];
+    }
+
+    @Benchmark
+    public int queryRadius() {
+        int e = next();
+        return hash.queryRadius(assoc.getInt(e, pos.x), assoc.getInt(e, pos.y), RADIUS, out);
+    }
+
+    @Benchmark
+    public int scan() {
+        int e = next();
+        int x = assoc.getInt(e, pos.x);
+        int y = assoc.getInt(e, pos.y);
+        int[] found = new int[1];
+        assoc.getEntities(pos).forEach(other -> {
+            int dx = assoc.getInt(other, pos.x) - x;
+            int dy = assoc.getInt(other, pos.y) - y;
+            if (dx * dx + dy * dy <= RADIUS * RADIUS) {
+                found[0]++;
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Moves one entity and brings the hash up to date.
+     */
+    @Benchmark
+    public int moveAndSync() {
+        assoc.setInt(next(), pos.x, random.nextInt(WORLD_SIZE));
+        return hash.size();
+    }
+
+}
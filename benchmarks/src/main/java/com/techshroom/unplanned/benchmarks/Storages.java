@@ -0,0 +1,105 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.benchmarks;
+
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+import com.techshroom.unplanned.ecs.ArchetypeCEAFactory;
+import com.techshroom.unplanned.ecs.CEAFactory;
+import com.techshroom.unplanned.ecs.CSystem;
+import com.techshroom.unplanned.ecs.ColumnarCEAFactory;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+import com.techshroom.unplanned.ecs.Component;
+import com.techshroom.unplanned.ecs.ObjectCEAFactory;
+
+/**
+ * Maps the {@code storage} parameter of the benchmarks to a
+ * {@link CEAFactory}. New factories should be added here and to the
+ * {@code @Param} lists.
+ */
+final class Storages {
+
+    static final String OBJECT = "object";
+    static final String COLUMNAR = "columnar";
+    static final String ARCHETYPE = "archetype";
+
+    private Storages() {
+    }
+
+    /**
+     * A system that never does anything, to make its components part of a
+     * CEA and register its query.
+     */
+    private static final class Idle implements CSystem {
+
+        private final Set<Component> components;
+
+        Idle(Component... components) {
+            this.components = ImmutableSet.copyOf(components);
+        }
+
+        @Override
+        public Set<Component> getComponents() {
+            return components;
+        }
+
+        @Override
+        public void processList(CompEntAssoc assoc, long nanoDiff) {
+        }
+
+        @Override
+        public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
+        }
+
+    }
+
+    static CSystem idle(Component... components) {
+        return new Idle(components);
+    }
+
+    /**
+     * Builds a CEA with no working systems that knows about the given
+     * components.
+     */
+    static CompEntAssoc build(String name, Component... components) {
+        return factory(name).build(idle(components));
+    }
+
+    static CEAFactory factory(String name) {
+        switch (name) {
+            case OBJECT:
+                return ObjectCEAFactory.$;
+            case COLUMNAR:
+                return ColumnarCEAFactory.$;
+            case ARCHETYPE:
+                return ArchetypeCEAFactory.$;
+            default:
+                throw new IllegalArgumentException("Unknown storage " + name);
+        }
+    }
+
+}
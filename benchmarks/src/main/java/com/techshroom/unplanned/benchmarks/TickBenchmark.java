@@ -0,0 +1,162 @@
+/*
+ * This file is part of unplanned-descent, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) TechShroom Studios <https://techshroom.com>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.techshroom.unplanned.benchmarks;
+
+import static com.techshroom.unplanned.benchmarks.Storages.ARCHETYPE;
+import static com.techshroom.unplanned.benchmarks.Storages.COLUMNAR;
+import static com.techshroom.unplanned.benchmarks.Storages.OBJECT;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableSet;
+import com.techshroom.unplanned.benchmarks.Components.Head;
+import com.techshroom.unplanned.benchmarks.Components.Position;
+import com.techshroom.unplanned.benchmarks.Components.Velocity;
+import com.techshroom.unplanned.ecs.CSystem;
+import com.techshroom.unplanned.ecs.CompEntAssoc;
+import com.techshroom.unplanned.ecs.Component;
+import com.techshroom.unplanned.ecs.SpatialHash;
+
+/**
+ * A full tick of Snek-like systems: everything with a {@link Velocity} moves
+ * on a wrapping grid, then every {@link Head} looks up what it ran into
+ * through a {@link SpatialHash}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickBenchmark {
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+
+    private static final class Movement implements CSystem {
+
+        private final Position pos = Position.INSTANCE;
+        private final Velocity vel = Velocity.INSTANCE;
+        private final int size;
+
+        Movement(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public Set<Component> getComponents() {
+            return ImmutableSet.of(pos, vel);
+        }
+
+        @Override
+        public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
+            int x = assoc.getInt(entityId, pos.x) + assoc.getInt(entityId, vel.dx);
+            int y = assoc.getInt(entityId, pos.y) + assoc.getInt(entityId, vel.dy);
+            assoc.setInt(entityId, pos.x, Math.floorMod(x, size));
+            assoc.setInt(entityId, pos.y, Math.floorMod(y, size));
+        }
+
+    }
+
+    private static final class Collision implements CSystem {
+
+        private final Position pos = Position.INSTANCE;
+        private final Head head = Head.INSTANCE;
+        private SpatialHash positions;
+        private int[] hits = new int[8];
+
+        @Override
+        public Set<Component> getComponents() {
+            return ImmutableSet.of(pos, head);
+        }
+
+        @Override
+        public void processList(CompEntAssoc assoc, long nanoDiff) {
+            if (positions == null) {
+                positions = SpatialHash.create(assoc, pos, pos.x, pos.y, 1);
+            }
+            CSystem.super.processList(assoc, nanoDiff);
+        }
+
+        @Override
+        public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
+            int x = assoc.getInt(entityId, pos.x);
+            int y = assoc.getInt(entityId, pos.y);
+            int count;
+            while ((count = positions.queryPoint(x, y, hits)) > hits.length) {
+                hits = new int[count];
+            }
+            // anything besides ourselves is a collision
+            assoc.setBoolean(entityId, head.alive, count <= 1);
+        }
+
+    }
+
+    @Param({ OBJECT, COLUMNAR, ARCHETYPE })
+    public String storage;
+
+    @Param({ "1000", "100000", "1000000" })
+    public int entities;
+
+    private CompEntAssoc assoc;
+
+    @Setup
+    public void setUp() {
+        // about one entity per four cells
+        int size = (int) Math.ceil(Math.sqrt(entities * 4.0));
+        assoc = Storages.factory(storage).build(new Movement(size), new Collision());
+        Position pos = Position.INSTANCE;
+        Velocity vel = Velocity.INSTANCE;
+        for (int i = 0; i < entities; i++) {
+            int e = i % 64 == 0
+                    ? assoc.newEntity(pos, vel, Head.INSTANCE)
+                    : assoc.newEntity(pos, vel);
+            assoc.setInt(e, pos.x, i % size);
+            assoc.setInt(e, pos.y, i / size);
+            assoc.setInt(e, vel.dx, i % 3 - 1);
+            assoc.setInt(e, vel.dy, i % 5 == 0 ? 1 : 0);
+        }
+    }
+
+    @Benchmark
+    public CompEntAssoc tick() {
+        assoc.tick(TICK_NANOS);
+        return assoc;
+    }
+
+}
@@ -67,7 +67,7 @@ project(":api") {
         "api"("com.flowpowered", "flow-math", "1.0.3")
         "api"("com.google.guava", "guava", "23.0")
         "implementation"("net.java.dev.jna", "jna", "4.5.0")
-        "implementation"("com.github.luben", "zstd-jni", "1.3.2-2")
+        "implementation"("com.github.luben", "zstd-jni", "1.4.0-1")
         commonLib("org.eclipse.collections", "eclipse-collections", "9.0.0") {
             "api"(lib("api"))
             "implementation"(lib())
@@ -117,3 +117,26 @@ project(":examples") {
         }
     }
 }
+
+project(":benchmarks") {
+    dependencies {
+        "implementation"(project(":api"))
+        commonLib("org.openjdk.jmh", "jmh", "1.21") {
+            "implementation"(lib("core"))
+            "annotationProcessor"(lib("generator-annprocess"))
+        }
+    }
+    // run with e.g. `gradle :benchmarks:jmh -Pjmh="TickBenchmark -p entities=1000"`
+    tasks.register<JavaExec>("jmh") {
+        group = "verification"
+        description = "Runs the JMH benchmarks, writing the results as JSON."
+        val results = file("$buildDir/reports/jmh/results.json")
+        classpath = project.the<SourceSetContainer>()["main"].runtimeClasspath
+        main = "org.openjdk.jmh.Main"
+        args = (project.findProperty("jmh")?.toString()?.split(" ")?.filter { it.isNotEmpty() } ?: listOf()) +
+            listOf("-rf", "json", "-rff", results.path)
+        doFirst {
+            results.parentFile.mkdirs()
+        }
+    }
+}
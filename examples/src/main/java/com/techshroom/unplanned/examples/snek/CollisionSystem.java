@@ -35,10 +35,12 @@ import com.techshroom.unplanned.core.util.Color;
 import com.techshroom.unplanned.ecs.CSystem;
 import com.techshroom.unplanned.ecs.CompEntAssoc;
 import com.techshroom.unplanned.ecs.Component;
+import com.techshroom.unplanned.ecs.SpatialHash;
 import com.techshroom.unplanned.ecs.defaults.Removed;
 
 /**
- * Handles collisions with body and {@link Edible}.
+ * Handles collisions with body and {@link Edible}. Looks up what is at the
+ * head's position through a {@link SpatialHash}.
  */
 @AutoValue
 public abstract class CollisionSystem implements CSystem {
@@ -56,6 +58,19 @@ public abstract class CollisionSystem implements CSystem {
         return ImmutableSet.of(GridPosition.INSTANCE, PrevGridPosition.INSTANCE, SnekBodyParts.INSTANCE, SnekHeadMarker.INSTANCE);
     }
 
+    private SpatialHash positions;
+    private int[] hits = new int[4];
+
+    @Override
+    public void processList(CompEntAssoc assoc, long nanoDiff) {
+        if (positions == null) {
+            // one cell per grid square, the only queries are single squares
+            positions = SpatialHash.create(assoc, GridPosition.INSTANCE,
+                    GridPosition.INSTANCE.getX(), GridPosition.INSTANCE.getY(), 1);
+        }
+        CSystem.super.processList(assoc, nanoDiff);
+    }
+
     @Override
     public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
         // we only process collisions using the head
@@ -93,16 +108,23 @@ public abstract class CollisionSystem implements CSystem {
         int newBody = SnekBodyPlan.start()
                 .color(Color.GREEN)
                 .gridPosition(PrevGridPosition.INSTANCE.get(assoc, tail))
-                .build(assoc);
+                .build(assoc.commands());
         assoc.set(tail, SnekBodyParts.INSTANCE.getPrev(), newBody);
     }
 
     private int hit(int originator, Component comp, CompEntAssoc assoc) {
         Vector2i ourPos = GridPosition.INSTANCE.get(assoc, originator);
-        return assoc.getEntities(comp).detectIfNone(ent -> {
-            Vector2i theirPos = GridPosition.INSTANCE.get(assoc, ent);
-            return ent != originator && ourPos.equals(theirPos);
-        }, 0);
+        int count;
+        while ((count = positions.queryPoint(ourPos.getX(), ourPos.getY(), hits)) > hits.length) {
+            hits = new int[count];
+        }
+        for (int i = 0; i < count; i++) {
+            int ent = hits[i];
+            if (ent != originator && assoc.hasComponent(ent, comp)) {
+                return ent;
+            }
+        }
+        return 0;
     }
 
     private boolean outOfBounds(Vector2i pos) {
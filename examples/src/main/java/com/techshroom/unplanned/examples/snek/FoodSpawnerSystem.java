@@ -28,6 +28,8 @@ package com.techshroom.unplanned.examples.snek;
 import java.util.Random;
 import java.util.Set;
 
+import org.eclipse.collections.api.list.primitive.IntList;
+
 import com.google.auto.value.AutoValue;
 import com.google.auto.value.extension.memoized.Memoized;
 import com.google.common.collect.ImmutableSet;
@@ -35,9 +37,14 @@ import com.techshroom.unplanned.core.util.Color;
 import com.techshroom.unplanned.ecs.CSystem;
 import com.techshroom.unplanned.ecs.CompEntAssoc;
 import com.techshroom.unplanned.ecs.Component;
+import com.techshroom.unplanned.ecs.ComponentObserver;
 
+/**
+ * Keeps one piece of food on the board, spawning a new one when the last is
+ * eaten.
+ */
 @AutoValue
-public abstract class FoodSpawnerSystem implements CSystem {
+public abstract class FoodSpawnerSystem implements CSystem, ComponentObserver {
 
     public static FoodSpawnerSystem create() {
         return new AutoValue_FoodSpawnerSystem();
@@ -56,8 +63,26 @@ public abstract class FoodSpawnerSystem implements CSystem {
     public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
     }
 
+    @Override
+    public Set<Component> getObservedComponents() {
+        return getComponents();
+    }
+
+    private boolean seeded;
+
     @Override
     public void processList(CompEntAssoc assoc, long nanoDiff) {
+        // only needed for the first food, the rest is spawned on removal
+        if (!seeded) {
+            seeded = true;
+            if (assoc.getEntities(Edible.INSTANCE).isEmpty()) {
+                spawnFood(assoc);
+            }
+        }
+    }
+
+    @Override
+    public void onDestroyed(CompEntAssoc assoc, Component component, IntList entities) {
         if (assoc.getEntities(Edible.INSTANCE).isEmpty()) {
             spawnFood(assoc);
         }
@@ -47,6 +47,14 @@ public abstract class GridPosition extends ComplexComponent<Vector2i> {
     GridPosition() {
     }
 
+    public ComponentField<Integer> getX() {
+        return x;
+    }
+
+    public ComponentField<Integer> getY() {
+        return y;
+    }
+
     @Override
     public void set(CompEntAssoc assoc, int entityId, Vector2i value) {
         assoc.set(entityId, x, value.getX());
@@ -26,6 +26,7 @@
 package com.techshroom.unplanned.examples.snek;
 
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import com.flowpowered.math.vector.Vector2i;
 import com.google.auto.value.AutoValue;
@@ -33,10 +34,10 @@ import com.google.auto.value.extension.memoized.Memoized;
 import com.google.common.collect.ImmutableSet;
 import com.techshroom.unplanned.ecs.CompEntAssoc;
 import com.techshroom.unplanned.ecs.Component;
-import com.techshroom.unplanned.ecs.defaults.IntervalCSystem;
+import com.techshroom.unplanned.ecs.defaults.FixedStepCSystem;
 
 @AutoValue
-public abstract class MovementSystem extends IntervalCSystem {
+public abstract class MovementSystem extends FixedStepCSystem {
 
     public static MovementSystem create() {
         return new AutoValue_MovementSystem();
@@ -52,12 +53,20 @@ public abstract class MovementSystem extends IntervalCSystem {
     }
 
     @Override
-    protected int getInterval() {
-        return 10;
+    protected long getStepNanos() {
+        // what 11 frames at 60fps used to be
+        return TimeUnit.MILLISECONDS.toNanos(180);
     }
 
     @Override
-    public void processInterval(int entityId, CompEntAssoc assoc, long nanoDiff) {
+    protected int getMaxStepsPerTick() {
+        // collisions are only checked once per tick, so moving more than one
+        // cell at a time could pass through food or the body
+        return 1;
+    }
+
+    @Override
+    public void process(int entityId, CompEntAssoc assoc, long nanoDiff) {
         Vector2i dirVec = Direction.INSTANCE.get(assoc, entityId).unit;
         Vector2i currentLoc = GridPosition.INSTANCE.get(assoc, entityId);
         Vector2i newLoc = dirVec.add(currentLoc);
@@ -1,2 +1,2 @@
 rootProject.name = "unplanned-descent"
-include("ap", "api", "implementation", "examples", "bale-out")
+include("ap", "api", "implementation", "examples", "bale-out", "benchmarks")